@@ -3,6 +3,10 @@ package chromosome;
 
 
 import numbers.ALifeRandom;
+import java.lang.ref.Reference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Random;
 
@@ -24,12 +28,35 @@ import java.util.Random;
  * ["1001011...1101"]
  * and this will also construct the chromosome.
  * 
+ * Each row is packed 64 bits to a long so that two chromosomes can be
+ * compared a word at a time. A 64-bit hash of the contents is computed
+ * when the chromosome is built and kept up to date as bits are set or
+ * flipped, so hashing a chromosome never has to look at its bits.
+ * 
+ * The rows can instead be kept off the heap in a GenomeArena slot, once 
+ * the chromosome has been moved into one. Its clones are then made in the
+ * same arena while there is room.
+ * 
  * @author Zach Winchell, Allan Dancer
  *
  */
 public class BitArrayChromosome implements Chromosome 
 {
-	private int[][] theChromosome;
+	//the bits of each row, packed 64 to a long, or null while the bits
+	//are kept in an arena.
+	private long[][] theChromosome;
+	
+	//the arena the bits are kept in, or null if they are on the heap, and
+	//the index of the first long of the chromosome's slot.
+	private GenomeArena arena = null;
+	private int base;
+	
+	//the number of bits in each row.
+	private int[] rowLengths;
+	
+	//the hash of the contents. Every set bit contributes its own key
+	//so flipping a bit only has to xor that key in or out.
+	private long contentHash;
 	
 	/**
 	 * This method will take in a 2D array of data and a boolean. If
@@ -44,23 +71,24 @@ public class BitArrayChromosome implements Chromosome
 	 */
 	public BitArrayChromosome(int[][] data, boolean isTemplate)
 	{
+		allocateRows(data.length);
+		
 		if (isTemplate)
 		{
 			//retrieves the static instance of random for use in this class.
 			Random randNumGen = ALifeRandom.getRandomNumberGenerator();
-			this.theChromosome = new int[data.length][];
 
 			//System.out.println("Creating an array.");
 			//System.out.println("Begin randomizing.");
 			//instantiates theChromosome
-			//all bits in the BitSet are defaulted to 0.
+			//all bits in the rows are defaulted to 0.
 			for (int i=0; i<data.length; i++)
 			{
-				this.theChromosome[i] = new int[data[i].length];
+				allocateRow(i, data[i].length);
 				//System.out.print(i+ ":   |");
 				for (int j=0; j<data[i].length; j++)
 				{
-					this.theChromosome[i][j] = randNumGen.nextInt(2);
+					this.setBit(i, j, randNumGen.nextInt(2));
 					//System.out.print(theChromosome[i][j] + "|");
 				}
 				//System.out.println("");
@@ -68,7 +96,15 @@ public class BitArrayChromosome implements Chromosome
 		}
 		else
 		{
-			this.theChromosome = data;
+			//packs the given data into the rows.
+			for (int i=0; i<data.length; i++)
+			{
+				allocateRow(i, data[i].length);
+				for (int j=0; j<data[i].length; j++)
+				{
+					this.setBit(i, j, data[i][j]);
+				}
+			}
 		}
 	}	
 	
@@ -82,31 +118,209 @@ public class BitArrayChromosome implements Chromosome
 	{
 		super();
 		
-		this.theChromosome = new int[bits.length][];
+		allocateRows(bits.length);
 		
 		for(int i=0; i<this.theChromosome.length; i++)
 		{
-			this.theChromosome[i] = new int[bits[i].length()];
+			allocateRow(i, bits[i].length());
 			for (int j=0; j<bits[i].length(); j++)
 			{
-				theChromosome[i][j] = 0;
 				if(bits[i].charAt(j) == '1')
 				{
 					//changes the bit at this location to a 1.
-					theChromosome[i][j] = 1;
+					this.setBit(i, j, 1);
 				}					
 			}
 		}
 	}
+	
+	/**
+	 * Creates a chromosome straight from packed rows, 64 bits to a long
+	 * with bit 0 of each row in the lowest bit of its first long. The
+	 * arrays are used as they are, not copied.
+	 * 
+	 * @param words is the packed bits of each row.
+	 * 
+	 * @param rowLengths is the number of bits in each row.
+	 */
+	BitArrayChromosome(long[][] words, int[] rowLengths)
+	{
+		this.theChromosome = words;
+		this.rowLengths = rowLengths;
+		this.contentHash = 0L;
 		
+		//adds in the key of every set bit
+		for (int i=0; i<words.length; i++)
+		{
+			for (int j=0; j<words[i].length; j++)
+			{
+				long word = words[i][j];
+				while (word != 0L)
+				{
+					int bit = Long.numberOfTrailingZeros(word);
+					contentHash ^= bitKey(i, (j << 6) + bit);
+					word &= word - 1;
+				}
+			}
+		}
+	}
+	
 	/**
-	 * Returns an exact replica of the BitChromosome.
+	 * Creates the arrays that hold the given number of rows.
+	 */
+	private void allocateRows(int numRows)
+	{
+		this.theChromosome = new long[numRows][];
+		this.rowLengths = new int[numRows];
+		this.contentHash = 0L;
+	}
+	
+	/**
+	 * Creates an empty row that can hold the given number of bits.
+	 */
+	private void allocateRow(int row, int length)
+	{
+		this.theChromosome[row] = new long[(length + 63) >>> 6];
+		this.rowLengths[row] = length;
+	}
+		
+	/**
+	 * Copies the rows and hash of another chromosome.
+	 * 
+	 * @param original is the chromosome to copy.
+	 */
+	private BitArrayChromosome(BitArrayChromosome original)
+	{
+		allocateRows(original.rowLengths.length);
+		for (int i=0; i<theChromosome.length; i++)
+		{
+			allocateRow(i, original.rowLengths[i]);
+			for (int j=0; j<theChromosome[i].length; j++)
+			{
+				this.theChromosome[i][j] = original.getWord(i, j);
+			}
+		}
+		this.contentHash = original.contentHash;
+	}
+	
+	/**
+	 * Creates a chromosome with the given hash that has no bits yet, for a
+	 * copy made in an arena.
+	 */
+	private BitArrayChromosome(long contentHash)
+	{
+		this.contentHash = contentHash;
+	}
+	
+	/**
+	 * Returns an exact replica of the BitChromosome. The copy of a
+	 * chromosome in an arena is put in the same arena if it has room.
 	 */
 	public Object clone()
 	{		
-		return new BitArrayChromosome(this.toStringArray());	
+		if (arena != null)
+		{
+			BitArrayChromosome copy = new BitArrayChromosome(contentHash);
+			int copyBase = arena.allocate(copy);
+			if (copyBase >= 0)
+			{
+				arena.copy(base, copyBase);
+				copy.useArena(arena, copyBase);
+				
+				//the slot must not be freed while it is being copied
+				Reference.reachabilityFence(this);
+				return copy;
+			}
+		}
+		return new BitArrayChromosome(this);	
 	}	
 	
+	/**
+	 * Moves the bits of this chromosome into a slot of an arena, where
+	 * they are kept from then on.
+	 * 
+	 * @param arena is the arena.
+	 * 
+	 * @return true if the chromosome was moved, false if it is already in
+	 * an arena, its rows do not fit the arena's or the arena is full.
+	 */
+	public boolean moveInto(GenomeArena arena)
+	{
+		if (this.arena != null || !arena.fits(rowLengths))
+		{
+			return false;
+		}
+		int slotBase = arena.allocate(this);
+		if (slotBase < 0)
+		{
+			return false;
+		}
+		for (int i=0; i<theChromosome.length; i++)
+		{
+			for (int j=0; j<theChromosome[i].length; j++)
+			{
+				arena.put(slotBase, i, j, theChromosome[i][j]);
+			}
+		}
+		useArena(arena, slotBase);
+		return true;
+	}
+	
+	/**
+	 * Switches to keeping the bits in an arena slot that already holds 
+	 * them, and lets go of the rows on the heap.
+	 */
+	private void useArena(GenomeArena arena, int slotBase)
+	{
+		this.arena = arena;
+		this.base = slotBase;
+		this.rowLengths = arena.getRowLengths();
+		this.theChromosome = null;
+	}
+	
+	/**
+	 * Returns true if the bits are kept in an arena.
+	 */
+	public boolean isInArena()
+	{
+		return arena != null;
+	}
+	
+	/**
+	 * Returns a long of the packed bits of a row.
+	 */
+	private long getWord(int row, int word)
+	{
+		if (arena != null)
+		{
+			return arena.get(base, row, word);
+		}
+		return theChromosome[row][word];
+	}
+	
+	/**
+	 * Sets a long of the packed bits of a row.
+	 */
+	private void setWord(int row, int word, long value)
+	{
+		if (arena != null)
+		{
+			arena.put(base, row, word, value);
+		}
+		else
+		{
+			theChromosome[row][word] = value;
+		}
+	}
+	
+	/**
+	 * Returns the number of longs the given row is packed into.
+	 */
+	int getWordCount(int row)
+	{
+		return (rowLengths[row] + 63) >>> 6;
+	}
+	
 	/**
 	 * Returns the String[] representation of the data inside
 	 * the chromosome.  This string returns all ones and zeros
@@ -119,16 +333,14 @@ public class BitArrayChromosome implements Chromosome
 	 */
 	public String[] toStringArray()
 	{
-			String[] theString = new String[this.theChromosome.length];
+			String[] theString = new String[this.rowLengths.length];
 			//traverses the length of theChromosome
 			
-			for(int i=0; i<theChromosome.length; i++)
+			for(int i=0; i<rowLengths.length; i++)
 			{
-				theString[i]="";
-				for (int j=0; j<theChromosome[i].length; j++)
-				{
-					theString[i]+=""+ theChromosome[i][j];
-				}
+				char[] row = new char[rowLengths[i]];
+				writeRow(i, row, 0);
+				theString[i] = new String(row);
 			}
 			
 			return theString;
@@ -142,53 +354,183 @@ public class BitArrayChromosome implements Chromosome
 	 */
 	public String toString()
 	{
-			String theString = "";
+			//every bit plus one "|" for each row
+			int size = rowLengths.length;
+			for(int i=0; i<rowLengths.length; i++)
+			{
+				size += rowLengths[i];
+			}
+			char[] theString = new char[size];
 			
 			//traverses the length of theChromosome
-			for(int i=0; i<theChromosome.length; i++)
+			int index = 0;
+			for(int i=0; i<rowLengths.length; i++)
 			{
-				for (int j=0; j<theChromosome[i].length; j++)
-				{
-					theString+="" + theChromosome[i][j];
-				}
-				theString+="|";
+				index = writeRow(i, theString, index);
+				theString[index] = '|';
+				index++;
 			}
-			return theString;
+			return new String(theString);
 	}
 	
 	/**
-	 * Determines if two BitChromosomes are the same.
-	 * This will return true if the string representation
-	 * of the two BitChromosomes and the two objects being the
-	 * same class.
+	 * Writes the given row as '0' and '1' characters into the array.
+	 * 
+	 * @param row is the row to write.
+	 * 
+	 * @param chars is the array to write into.
+	 * 
+	 * @param index is where in the array to start writing.
+	 * 
+	 * @return the index just past the last character written.
+	 */
+	private int writeRow(int row, char[] chars, int index)
+	{
+		for (int j=0; j<rowLengths[row]; j++)
+		{
+			chars[index] = (char)('0' + ((getWord(row, j >>> 6) >>> (j & 63)) & 1L));
+			index++;
+		}
+		return index;
+	}
+	
+	/**
+	 * Determines if two BitArrayChromosomes are the same.
+	 * This will return true if the two objects are the same
+	 * class and hold the same bits in rows of the same lengths.
+	 * The cached hashes are compared first so most chromosomes
+	 * that differ are told apart without looking at their bits,
+	 * and the rest are compared a long at a time.
 	 */
 	public boolean equals(Object o)
 	{
-		boolean sameClass = false;
-		boolean sameString = false;
-		
+		if(this == o)
+		{
+			return true;
+		}
+
 		//checks to see if the two objects are of
 		//the same class
-		if(this.getClass().equals(o.getClass()))
+		if(o == null || !this.getClass().equals(o.getClass()))
 		{
-			sameClass = true;
+			return false;
 		}
-		
-		//checks to see if the two objects have 
-		//the same toString values
-		if(this.toString().equals(o.toString()))
+
+		BitArrayChromosome other = (BitArrayChromosome)o;
+
+		//chromosomes with different contents almost always
+		//have different hashes.
+		if(this.contentHash != other.contentHash)
+		{
+			return false;
+		}
+
+		if(!Arrays.equals(this.rowLengths, other.rowLengths))
 		{
-			sameString = true;
+			return false;
 		}
-		
-		if(sameClass && sameString)
+
+		//checks every row a word at a time
+		for(int i=0; i<rowLengths.length; i++)
 		{
-			return true;
+			for(int j=0; j<getWordCount(i); j++)
+			{
+				if(this.getWord(i, j) != other.getWord(i, j))
+				{
+					return false;
+				}
+			}
 		}
-		else
+		return true;
+	}
+
+	/**
+	 * Returns a hash code that agrees with equals. It is taken
+	 * from the cached 64-bit hash so it costs nothing to compute.
+	 */
+	public int hashCode()
+	{
+		return (int)(contentHash ^ (contentHash >>> 32));
+	}
+
+	/**
+	 * Returns the full 64-bit hash of the chromosome's contents.
+	 * It is kept up to date as bits change and is the same from
+	 * one run to the next, so it can be used as a key for caching
+	 * fitness values or counting distinct genomes.
+	 *
+	 * @return the 64-bit content hash.
+	 */
+	public long longHashCode()
+	{
+		return contentHash;
+	}
+
+	/**
+	 * Returns a SHA-256 digest of the row lengths and bits of the
+	 * chromosome. Unlike the 64-bit hash, two different chromosomes
+	 * will practically never have the same digest, so it can be used
+	 * to identify a genome across runs and processes.
+	 *
+	 * @return the 32 byte digest.
+	 */
+	public byte[] digest()
+	{
+		MessageDigest sha;
+		try
 		{
-			return false;
+			sha = MessageDigest.getInstance("SHA-256");
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			//every Java platform is required to support SHA-256
+			throw new IllegalStateException(e.getMessage());
 		}
+
+		byte[] word = new byte[8];
+		for(int i=0; i<rowLengths.length; i++)
+		{
+			putLong(word, rowLengths[i]);
+			sha.update(word);
+			for(int j=0; j<getWordCount(i); j++)
+			{
+				putLong(word, getWord(i, j));
+				sha.update(word);
+			}
+		}
+		return sha.digest();
+	}
+
+	/**
+	 * Writes the long into the array, most significant byte first.
+	 */
+	private static void putLong(byte[] bytes, long value)
+	{
+		for(int i=7; i>=0; i--)
+		{
+			bytes[i] = (byte)value;
+			value >>>= 8;
+		}
+	}
+
+	/**
+	 * Returns the hash key of the bit at the given row and index.
+	 * A chromosome's hash is the xor of the keys of all its set bits.
+	 * The keys are mixed from the position alone (splitmix64) so they
+	 * are the same in every run. BitChromosome uses row 0.
+	 *
+	 * @param row is the row of the bit.
+	 *
+	 * @param col is the index of the bit in the row.
+	 *
+	 * @return the hash key of that bit.
+	 */
+	static long bitKey(int row, int col)
+	{
+		long z = (((long)row << 32) | (col & 0xffffffffL)) + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
 	}
 
 	/**
@@ -226,7 +568,7 @@ public class BitArrayChromosome implements Chromosome
 		BitSet theBitSet = new BitSet(length); 
 		for (int i = start; i<end; i++)
 		{
-			if (this.theChromosome[row][i] == 1)
+			if (this.getBit(row, i) == 1)
 			{
 				theBitSet.set(i-start);
 			}
@@ -245,14 +587,71 @@ public class BitArrayChromosome implements Chromosome
 	 */
 	public int[] length()
 	{
-		int[] lengths = new int[theChromosome.length];
-		for (int i=0; i<theChromosome.length; i++)
+		return rowLengths.clone();
+	}
+	
+	/**
+	 * Returns the number of rows in the chromosome.
+	 */
+	public int getNumRows()
+	{
+		return rowLengths.length;
+	}
+	
+	/**
+	 * Returns the number of bits in the given row.
+	 * 
+	 * @param rowIndex is the row.
+	 */
+	public int getRowLength(int rowIndex)
+	{
+		return rowLengths[rowIndex];
+	}
+	
+	/**
+	 * Returns the bit at the given row and index.
+	 *
+	 * @param rowIndex is the row of the bit.
+	 *
+	 * @param colIndex is the index of the bit in that row.
+	 *
+	 * @return the bit, either a 0 or a 1.
+	 */
+	public int getBit(int rowIndex, int colIndex)
+	{
+		checkIndex(rowIndex, colIndex);
+		return (int)((getWord(rowIndex, colIndex >>> 6) >>> (colIndex & 63)) & 1L);
+	}
+	
+	/**
+	 * Returns a long of the packed bits of the given row, 64 to a long
+	 * with bit 0 of the row in the lowest bit of the first long.
+	 *
+	 * @param rowIndex is the row.
+	 *
+	 * @param wordIndex is the long in the row, from 0 to
+	 * getWordCount(rowIndex)-1.
+	 *
+	 * @return the packed bits.
+	 */
+	long getRowWord(int rowIndex, int wordIndex)
+	{
+		return getWord(rowIndex, wordIndex);
+	}
+	
+	/**
+	 * Throws an exception if the index is past the end of the row.
+	 * The rows are padded out to whole longs, so the array bounds
+	 * check alone would not catch it.
+	 */
+	private void checkIndex(int rowIndex, int colIndex)
+	{
+		if (colIndex < 0 || colIndex >= rowLengths[rowIndex])
 		{
-			lengths[i] = theChromosome[i].length;
+			throw new ArrayIndexOutOfBoundsException(colIndex);
 		}
-		return lengths;
 	}
-	
+
 	/**
 	 * Takes an index and an int value and sets that index
 	 * to be that int value in the chromosome at the given row.
@@ -266,7 +665,117 @@ public class BitArrayChromosome implements Chromosome
 	 */
 	public void setBit(int rowIndex, int colIndex, int value)
 	{
-		theChromosome[rowIndex][colIndex] = value;
+		int newBit = 0;
+		if (value == 1)
+		{
+			newBit = 1;
+		}
+		
+		if (getBit(rowIndex, colIndex) != newBit)
+		{
+			flipBit(rowIndex, colIndex);
+		}
+	}
+	
+	/**
+	 * Sets a row to the bits before the split point of one chromosome 
+	 * followed by the bits from the split point on of another, a long at 
+	 * a time. All three must have rows of the same length. Either of the 
+	 * two may be this chromosome.
+	 * 
+	 * @param rowIndex is the row to set.
+	 * 
+	 * @param first gives the bits before the split point.
+	 * 
+	 * @param second gives the bits from the split point on.
+	 * 
+	 * @param split is the index of the first bit taken from second.
+	 */
+	public void spliceRow(int rowIndex, BitArrayChromosome first, 
+		BitArrayChromosome second, int split)
+	{
+		if (first.rowLengths[rowIndex] != rowLengths[rowIndex] ||
+			second.rowLengths[rowIndex] != rowLengths[rowIndex])
+		{
+			throw new IllegalArgumentException("The rows must be the same length.");
+		}
+		if (split < 0 || split > rowLengths[rowIndex])
+		{
+			throw new ArrayIndexOutOfBoundsException(split);
+		}
+		
+		for (int j=0; j<getWordCount(rowIndex); j++)
+		{
+			//the bits of this long that come from first
+			long fromFirst;
+			int bitsBefore = split - (j << 6);
+			if (bitsBefore >= 64)
+			{
+				fromFirst = -1L;
+			}
+			else if (bitsBefore <= 0)
+			{
+				fromFirst = 0L;
+			}
+			else
+			{
+				fromFirst = (1L << bitsBefore) - 1;
+			}
+			long word = (first.getWord(rowIndex, j) & fromFirst) 
+				| (second.getWord(rowIndex, j) & ~fromFirst);
+			
+			//keeps the hash up to date with the bits that changed
+			long changed = getWord(rowIndex, j) ^ word;
+			while (changed != 0L)
+			{
+				int bit = Long.numberOfTrailingZeros(changed);
+				contentHash ^= bitKey(rowIndex, (j << 6) + bit);
+				changed &= changed - 1;
+			}
+			setWord(rowIndex, j, word);
+		}
+	}
+	
+	/**
+	 * Returns true if the given chromosome has as many rows as this one,
+	 * each the same length, so one can be copied into the other.
+	 * 
+	 * @param other is the chromosome to compare with.
+	 */
+	public boolean hasSameLayout(BitArrayChromosome other)
+	{
+		return Arrays.equals(rowLengths, other.rowLengths);
+	}
+	
+	/**
+	 * Overwrites this chromosome with the bits of another with the same
+	 * layout, without allocating, so a chromosome that is no longer used
+	 * can be reused for a new one.
+	 * 
+	 * @param original is the chromosome to copy.
+	 */
+	public void copyFrom(BitArrayChromosome original)
+	{
+		if (!hasSameLayout(original))
+		{
+			throw new IllegalArgumentException("The chromosomes must have the same rows.");
+		}
+		if (arena != null && arena == original.arena)
+		{
+			arena.copy(original.base, base);
+		}
+		else
+		{
+			for (int i=0; i<rowLengths.length; i++)
+			{
+				for (int j=0; j<getWordCount(i); j++)
+				{
+					setWord(i, j, original.getWord(i, j));
+				}
+			}
+		}
+		contentHash = original.contentHash;
+		Reference.reachabilityFence(original);
 	}
 	
 	/**
@@ -281,13 +790,9 @@ public class BitArrayChromosome implements Chromosome
 	 */
 	public void flipBit(int rowIndex, int colIndex)
 	{
-		if (theChromosome[rowIndex][colIndex] == 1)
-		{
-			theChromosome[rowIndex][colIndex] = 0;
-		}
-		else
-		{
-			theChromosome[rowIndex][colIndex] = 1;
-		}
+		checkIndex(rowIndex, colIndex);
+		int word = colIndex >>> 6;
+		setWord(rowIndex, word, getWord(rowIndex, word) ^ (1L << (colIndex & 63)));
+		contentHash ^= bitKey(rowIndex, colIndex);
 	}
 }
@@ -5,6 +5,7 @@ package chromosome;
 import numbers.ALifeRandom;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Random;
 
@@ -23,6 +24,9 @@ public class BitChromosome implements Chromosome
 	private BitSet theChromosome;
 	private int chromosomeLength;
 	
+	//the hash of the contents, kept up to date as bits change.
+	private long contentHash;
+	
 	/**
 	 * Instantiates and assigns a random BitSet
 	 * of the specified length to the instance variable
@@ -53,6 +57,7 @@ public class BitChromosome implements Chromosome
 				//sets the bit of the specified
 				//index to 1.
 				theChromosome.set(i);
+				contentHash ^= BitArrayChromosome.bitKey(0, i);
 			}
 		}
 	}
@@ -68,6 +73,13 @@ public class BitChromosome implements Chromosome
 	{
 		this.theChromosome = theChromosome;
 		this.chromosomeLength = chromosomeLength;
+		
+		//adds in the hash key of every set bit
+		for(int i = theChromosome.nextSetBit(0); i >= 0; 
+			i = theChromosome.nextSetBit(i + 1))
+		{
+			contentHash ^= BitArrayChromosome.bitKey(0, i);
+		}
 	}
 	
 	/**
@@ -91,6 +103,7 @@ public class BitChromosome implements Chromosome
 				//changes the bit at this location to
 				//a 1.
 				theChromosome.set(i);
+				contentHash ^= BitArrayChromosome.bitKey(0, i);
 			}
 		}
 	}
@@ -100,7 +113,7 @@ public class BitChromosome implements Chromosome
 	 */
 	public Object clone()
 	{		
-		return new BitChromosome(this.toString());	
+		return new BitChromosome((BitSet)theChromosome.clone(), chromosomeLength);	
 	}	
 	
 	/**
@@ -110,61 +123,63 @@ public class BitChromosome implements Chromosome
 	 */
 	public String toString()
 	{
-			String theString = "";
-			//traverses the length of theChromosome
-			for(int i = 0; i < chromosomeLength; i++)
-			{
-				boolean theBoolean = theChromosome.get(i);
+			//starts out all zeros and the ones are filled in
+			char[] theString = new char[chromosomeLength];
+			Arrays.fill(theString, '0');
 			
-				//if the bitset returns true then we add a one
-				//to our string
-				if(theBoolean == true)
-				{
-					theString += 1;
-				}
-				//if we failed to add a one we must
-				//add a zero
-				else
-				{
-					theString += 0;
-				}
+			//traverses the set bits of theChromosome
+			for(int i = theChromosome.nextSetBit(0); 
+				i >= 0 && i < chromosomeLength; i = theChromosome.nextSetBit(i + 1))
+			{
+				theString[i] = '1';
 			}
-			return theString;
+			return new String(theString);
 	}
 	
 	/**
 	 * Determines if two BitChromosomes are the same.
-	 * This will return true if the string representation
-	 * of the two BitChromosomes and the two objects being the
-	 * same class.
+	 * This will return true if the two objects are the same
+	 * class and have the same length and bits. The cached hashes
+	 * are compared first and then the BitSets, which compare a
+	 * word at a time.
 	 */
 	public boolean equals(Object o)
 	{
-		boolean sameClass = false;
-		boolean sameString = false;
-		
-		//checks to see if the two objects are of
-		//the same class
-		if(this.getClass().equals(o.getClass()))
-		{
-			sameClass = true;
-		}
-		
-		//checks to see if the two objects have 
-		//the same toString values
-		if(this.toString().equals(o.toString()))
-		{
-			sameString = true;
-		}
-		
-		if(sameClass && sameString)
+		if(this == o)
 		{
 			return true;
 		}
-		else
+		
+		//checks to see if the two objects are of
+		//the same class
+		if(o == null || !this.getClass().equals(o.getClass()))
 		{
 			return false;
 		}
+		
+		BitChromosome other = (BitChromosome)o;
+		return this.contentHash == other.contentHash
+			&& this.chromosomeLength == other.chromosomeLength
+			&& this.theChromosome.equals(other.theChromosome);
+	}
+	
+	/**
+	 * Returns a hash code that agrees with equals. It is taken
+	 * from the cached 64-bit hash so it costs nothing to compute.
+	 */
+	public int hashCode()
+	{
+		return (int)(contentHash ^ (contentHash >>> 32));
+	}
+	
+	/**
+	 * Returns the full 64-bit hash of the chromosome's contents.
+	 * @return - the 64-bit content hash, the same from one run to
+	 * the next.
+	 */
+	public long longHashCode()
+	{
+		return contentHash;
 	}
 	
 	/**
@@ -201,7 +216,10 @@ public class BitChromosome implements Chromosome
 	 */
 	public void setBit(int index, boolean bool)
 	{
-		theChromosome.set(index, bool);
+		if(theChromosome.get(index) != bool)
+		{
+			flipBit(index);
+		}
 	}
 	
 	/**
@@ -213,6 +231,7 @@ public class BitChromosome implements Chromosome
 	public void flipBit(int index)
 	{
 		theChromosome.flip(index);
+		contentHash ^= BitArrayChromosome.bitKey(0, index);
 	}
 	
 	/**
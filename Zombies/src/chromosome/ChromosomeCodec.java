@@ -0,0 +1,168 @@
+package chromosome;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes BitArrayChromosomes into ByteBuffers and reads them back. The
+ * encoded form is a header of the number of rows and the length of each
+ * row (all ints) followed by the bits of every row packed 64 to a long,
+ * bit 0 of a row in the lowest bit of its first long. Writing and reading
+ * take time linear in the number of longs, so whole populations can be
+ * written for checkpoints or sent between worker processes.
+ *
+ * Values are written in the byte order of the buffer, so the reader must
+ * use the same order as the writer (the ByteBuffer default is big endian).
+ *
+ * To look at an encoded genome without copying it out of the buffer use
+ * a ChromosomeView.
+ */
+public class ChromosomeCodec
+{
+	//private constructor, only static methods
+	private ChromosomeCodec()
+	{
+		super();
+	}
+
+	/**
+	 * Returns the number of bytes the chromosome takes when encoded.
+	 *
+	 * @param chromosome - the chromosome that will be encoded.
+	 * @return - the encoded size in bytes.
+	 */
+	public static int encodedSize(BitArrayChromosome chromosome)
+	{
+		return encodedSize(chromosome.length());
+	}
+
+	/**
+	 * Returns the number of bytes a chromosome with the given row
+	 * lengths takes when encoded.
+	 *
+	 * @param rowLengths - the number of bits in each row.
+	 * @return - the encoded size in bytes.
+	 */
+	public static int encodedSize(int[] rowLengths)
+	{
+		int size = 4 + 4 * rowLengths.length;
+		for(int i = 0; i < rowLengths.length; i++)
+		{
+			size += 8 * ((rowLengths[i] + 63) >>> 6);
+		}
+		return size;
+	}
+
+	/**
+	 * Writes the chromosome at the buffer's position and moves the
+	 * position past it.
+	 *
+	 * @param chromosome - the chromosome to write.
+	 * @param out - the buffer to write into. It must have at least
+	 * encodedSize(chromosome) bytes remaining.
+	 */
+	public static void write(BitArrayChromosome chromosome, ByteBuffer out)
+	{
+		int numRows = chromosome.getNumRows();
+
+		//the header
+		out.putInt(numRows);
+		for(int i = 0; i < numRows; i++)
+		{
+			out.putInt(chromosome.getRowLength(i));
+		}
+
+		//the packed bits
+		for(int i = 0; i < numRows; i++)
+		{
+			for(int j = 0; j < chromosome.getWordCount(i); j++)
+			{
+				out.putLong(chromosome.getRowWord(i, j));
+			}
+		}
+	}
+
+	/**
+	 * Reads a chromosome from the buffer's position and moves the
+	 * position past it.
+	 *
+	 * @param in - the buffer holding an encoded chromosome.
+	 * @return - a new chromosome with the encoded bits.
+	 * @throws IllegalArgumentException - if the header is not valid or
+	 * the buffer ends before the last row.
+	 */
+	public static BitArrayChromosome read(ByteBuffer in)
+	{
+		int[] rowLengths = readHeader(in);
+
+		long[][] words = new long[rowLengths.length][];
+		for(int i = 0; i < rowLengths.length; i++)
+		{
+			words[i] = new long[(rowLengths[i] + 63) >>> 6];
+			for(int j = 0; j < words[i].length; j++)
+			{
+				words[i][j] = in.getLong();
+			}
+
+			//clears anything past the end of the row so the
+			//padding never shows up in equals or the hash.
+			int extraBits = rowLengths[i] & 63;
+			if(extraBits != 0)
+			{
+				words[i][words[i].length - 1] &= (1L << extraBits) - 1;
+			}
+		}
+
+		return new BitArrayChromosome(words, rowLengths);
+	}
+
+	/**
+	 * Reads the number of rows and the row lengths from the buffer's
+	 * position and moves the position past them.
+	 *
+	 * @param in - the buffer holding an encoded chromosome.
+	 * @return - the length of each row.
+	 * @throws IllegalArgumentException - if the header is not valid or
+	 * the buffer is too short to hold the rows it describes.
+	 */
+	static int[] readHeader(ByteBuffer in)
+	{
+		if(in.remaining() < 4)
+		{
+			throw new IllegalArgumentException("Not an encoded chromosome: " +
+			"the buffer ends before the header.");
+		}
+		int numRows = in.getInt();
+		if(numRows < 0 || numRows > in.remaining() / 4)
+		{
+			throw new IllegalArgumentException("Not an encoded chromosome: " +
+			numRows + " rows.");
+		}
+
+		//checks every row length, and that all the rows fit in what is
+		//left of the buffer, before anything is allocated for them.
+		int start = in.position();
+		long rowBytes = 0;
+		for(int i = 0; i < numRows; i++)
+		{
+			int rowLength = in.getInt(start + 4 * i);
+			if(rowLength < 0)
+			{
+				throw new IllegalArgumentException("Not an encoded chromosome: " +
+				"row " + i + " has length " + rowLength + ".");
+			}
+			rowBytes += 8L * ((rowLength + 63L) >>> 6);
+		}
+		if(rowBytes > in.remaining() - 4L * numRows)
+		{
+			throw new IllegalArgumentException("Not an encoded chromosome: " +
+			"the buffer ends before the end of its " + numRows + " rows.");
+		}
+
+		int[] rowLengths = new int[numRows];
+		for(int i = 0; i < numRows; i++)
+		{
+			rowLengths[i] = in.getInt();
+		}
+		return rowLengths;
+	}
+}
@@ -0,0 +1,146 @@
+package chromosome;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only look at a chromosome that was written into a ByteBuffer by
+ * ChromosomeCodec. The bits are read straight out of the buffer, so a
+ * genome that arrived from a checkpoint file or another process can be
+ * examined without building a BitArrayChromosome for it. Call
+ * toChromosome when a real chromosome is needed.
+ *
+ * The view holds on to the buffer, so the bytes it covers must not be
+ * changed while it is in use.
+ */
+public class ChromosomeView
+{
+	//the buffer holding the encoded chromosome
+	private ByteBuffer buffer;
+
+	//where the encoded chromosome starts in the buffer
+	private int start;
+
+	//the number of bits in each row
+	private int[] rowLengths;
+
+	//the absolute index in the buffer of each row's first long
+	private int[] rowStarts;
+
+	//the total number of bytes of the encoded chromosome
+	private int encodedSize;
+
+	/**
+	 * Creates a view of the encoded chromosome that starts at the
+	 * buffer's position. The buffer's position is not changed.
+	 *
+	 * @param buffer - the buffer holding an encoded chromosome.
+	 * @throws IllegalArgumentException - if the header is not valid or
+	 * the buffer is too short to hold all the rows.
+	 */
+	public ChromosomeView(ByteBuffer buffer)
+	{
+		this(buffer, buffer.position());
+	}
+
+	/**
+	 * Creates a view of the encoded chromosome that starts at the given
+	 * index in the buffer. The buffer's position is not changed.
+	 *
+	 * @param buffer - the buffer holding an encoded chromosome.
+	 * @param start - the index of the first byte of the chromosome.
+	 * @throws IllegalArgumentException - if the header is not valid or
+	 * the buffer is too short to hold all the rows.
+	 */
+	public ChromosomeView(ByteBuffer buffer, int start)
+	{
+		this.buffer = buffer;
+		this.start = start;
+
+		//reads the header through a duplicate so the caller's
+		//position is left alone.
+		ByteBuffer header = buffer.duplicate();
+		header.order(buffer.order());
+		header.position(start);
+		this.rowLengths = ChromosomeCodec.readHeader(header);
+
+		this.rowStarts = new int[rowLengths.length];
+		int index = header.position();
+		for(int i = 0; i < rowLengths.length; i++)
+		{
+			rowStarts[i] = index;
+			index += 8 * ((rowLengths[i] + 63) >>> 6);
+		}
+
+		if(index > buffer.limit())
+		{
+			throw new IllegalArgumentException("The buffer ends before the " +
+			"end of the encoded chromosome.");
+		}
+		this.encodedSize = index - start;
+	}
+
+	/**
+	 * Returns the bit at the given row and index.
+	 *
+	 * @param row - the row of the bit.
+	 * @param col - the index of the bit in that row.
+	 * @return - the bit, either a 0 or a 1.
+	 */
+	public int getBit(int row, int col)
+	{
+		if(col < 0 || col >= rowLengths[row])
+		{
+			throw new ArrayIndexOutOfBoundsException(col);
+		}
+		long word = buffer.getLong(rowStarts[row] + 8 * (col >>> 6));
+		return (int)((word >>> (col & 63)) & 1L);
+	}
+
+	/**
+	 * Returns the number of rows in the chromosome.
+	 */
+	public int getNumRows()
+	{
+		return rowLengths.length;
+	}
+
+	/**
+	 * Returns the number of bits in the given row.
+	 *
+	 * @param row - the row.
+	 */
+	public int getRowLength(int row)
+	{
+		return rowLengths[row];
+	}
+
+	/**
+	 * Returns the number of bytes the encoded chromosome takes, so
+	 * that the next one in the buffer starts at getStart() + this.
+	 */
+	public int getEncodedSize()
+	{
+		return encodedSize;
+	}
+
+	/**
+	 * Returns the index in the buffer where the chromosome starts.
+	 */
+	public int getStart()
+	{
+		return start;
+	}
+
+	/**
+	 * Copies the viewed bits into a new chromosome.
+	 *
+	 * @return - a BitArrayChromosome with the same bits as the view.
+	 */
+	public BitArrayChromosome toChromosome()
+	{
+		ByteBuffer in = buffer.duplicate();
+		in.order(buffer.order());
+		in.position(start);
+		return ChromosomeCodec.read(in);
+	}
+}
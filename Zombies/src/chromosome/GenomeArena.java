@@ -0,0 +1,215 @@
+package chromosome;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Genome Arena class
+ * keeps the bits of BitArrayChromosomes off the Java heap. Every genome
+ * in an arena has the same rows (in the Zombie simulation 1, 275 and 45
+ * bits), so each is kept in a fixed-stride slot of longs in one direct
+ * buffer and addressed by its slot index. A 321 bit genome takes 7 longs
+ * instead of an array of three long arrays and their headers.
+ *
+ * A chromosome moved into the arena with BitArrayChromosome.moveInto
+ * reads and writes its bits in its slot from then on, and its clones are
+ * given slots of their own, so once the starting population has been
+ * moved in, the children and turned zombies made from it are kept here
+ * as well. When the arena is full, clones are made on the heap.
+ *
+ * Chromosomes are shared between critters, caches and snapshots, so a
+ * slot is not freed when a critter dies but when its chromosome is
+ * garbage collected, through a Cleaner. Freed slots are linked into a
+ * free list through their own first long and are handed out again first.
+ */
+public class GenomeArena
+{
+	//frees the slots of the chromosomes that have been collected
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	//no slot, the end of the free list
+	private static final int NONE = -1;
+
+	//the number of bits in each row of every genome held here, and where
+	//each row starts in a slot, in longs
+	private int[] rowLengths;
+	private int[] rowStarts;
+
+	//the number of longs in a slot
+	private int stride;
+
+	private int capacity;
+	private LongBuffer words;
+
+	//the first free slot, and every slot below highWater has been used
+	private int freeHead = NONE;
+	private int highWater = 0;
+	private int used = 0;
+
+	/**
+	 * Creates an arena for genomes with the given rows.
+	 *
+	 * @param rowLengths - the number of bits in each row.
+	 * @param capacity - the most genomes the arena holds.
+	 */
+	public GenomeArena(int[] rowLengths, int capacity)
+	{
+		if (capacity < 1)
+		{
+			throw new IllegalArgumentException("The capacity must be positive.");
+		}
+		this.rowLengths = rowLengths.clone();
+		this.rowStarts = new int[rowLengths.length];
+		long longs = 0;
+		for (int i=0; i<rowLengths.length; i++)
+		{
+			if (rowLengths[i] < 0)
+			{
+				throw new IllegalArgumentException("A row can not have a negative length.");
+			}
+			rowStarts[i] = (int)longs;
+			longs += (rowLengths[i] + 63L) >>> 6;
+		}
+		if (longs == 0 || longs * capacity * 8 > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("The arena must hold between 1 byte and 2GB.");
+		}
+		this.stride = (int)longs;
+		this.capacity = capacity;
+		this.words = ByteBuffer.allocateDirect(stride * capacity * 8)
+			.order(ByteOrder.nativeOrder()).asLongBuffer();
+	}
+
+	/**
+	 * Returns true if a chromosome with the given rows can be kept here.
+	 */
+	boolean fits(int[] rowLengths)
+	{
+		return Arrays.equals(this.rowLengths, rowLengths);
+	}
+
+	/**
+	 * Returns the rows of the genomes held here. The array is shared by
+	 * every chromosome in the arena, so it must not be changed.
+	 */
+	int[] getRowLengths()
+	{
+		return rowLengths;
+	}
+
+	/**
+	 * Takes a free slot for a chromosome, to be given back when the
+	 * chromosome is garbage collected.
+	 *
+	 * @param chromosome - the chromosome that will use the slot.
+	 * @return - the index of the slot's first long, or -1 if the arena is
+	 * full.
+	 */
+	synchronized int allocate(BitArrayChromosome chromosome)
+	{
+		int slot;
+		if (freeHead != NONE)
+		{
+			slot = freeHead;
+			freeHead = (int)words.get(slot * stride);
+		}
+		else if (highWater < capacity)
+		{
+			slot = highWater;
+			highWater++;
+		}
+		else
+		{
+			return NONE;
+		}
+		used++;
+		CLEANER.register(chromosome, new Release(this, slot));
+		return slot * stride;
+	}
+
+	/**
+	 * Puts a slot back on the free list.
+	 */
+	private synchronized void release(int slot)
+	{
+		words.put(slot * stride, freeHead);
+		freeHead = slot;
+		used--;
+	}
+
+	/**
+	 * Returns a long of a genome.
+	 *
+	 * @param base - the index of the slot's first long.
+	 * @param row - the row.
+	 * @param word - the long in the row.
+	 */
+	long get(int base, int row, int word)
+	{
+		return words.get(base + rowStarts[row] + word);
+	}
+
+	/**
+	 * Sets a long of a genome.
+	 *
+	 * @param base - the index of the slot's first long.
+	 * @param row - the row.
+	 * @param word - the long in the row.
+	 * @param value - the bits.
+	 */
+	void put(int base, int row, int word, long value)
+	{
+		words.put(base + rowStarts[row] + word, value);
+	}
+
+	/**
+	 * Copies a whole genome from one slot to another.
+	 */
+	void copy(int fromBase, int toBase)
+	{
+		for (int i=0; i<stride; i++)
+		{
+			words.put(toBase + i, words.get(fromBase + i));
+		}
+	}
+
+	/**
+	 * Returns the number of genomes in the arena.
+	 */
+	public synchronized int getUsed()
+	{
+		return used;
+	}
+
+	/**
+	 * Returns the most genomes the arena holds.
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Frees a collected chromosome's slot. It must not refer to the
+	 * chromosome, or the chromosome would never be collected.
+	 */
+	private static class Release implements Runnable
+	{
+		private GenomeArena arena;
+		private int slot;
+
+		Release(GenomeArena arena, int slot)
+		{
+			this.arena = arena;
+			this.slot = slot;
+		}
+
+		public void run()
+		{
+			arena.release(slot);
+		}
+	}
+}
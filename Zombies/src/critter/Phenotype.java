@@ -5,7 +5,6 @@
 package critter;
 
 import java.util.*;
-import java.util.Observable;
 
 import chromosome.*;
 /**
@@ -15,7 +14,7 @@ import chromosome.*;
  * generations as possible.
  * @author Allan Dancer and Zach Winchell
  */
-public class Phenotype extends Observable
+public class Phenotype
 {
 	private double strength;
 	
@@ -39,7 +38,23 @@ public class Phenotype extends Observable
 	//stores the length of the theta genes in the
 	//nural net.
 	private int thetaGeneLength;
-	
+
+	//stores this phenotype's id in the tick scheduler while it is
+	//asleep, or -1 while it is awake.
+	private int schedulerId = -1;
+
+	//stores this phenotype's place in the tick scheduler's list of awake
+	//critters, or -1 while it is not on the list.
+	private int awakeIndex = -1;
+
+	//stores the last tick this phenotype moved on, or -1 if it has
+	//not moved yet.
+	private int moveTick = -1;
+
+	//stores the move for each way the cells around this phenotype can be
+	//empty or not, or null if it has not been compiled.
+	private byte[] moveTable = null;
+
 	/**
 	 * Creates a Phenotype.  Instantiates the phenotype's chromosome
 	 * to the chromosome passed in and initializes the phenotype's 
@@ -92,6 +107,7 @@ public class Phenotype extends Observable
 	public void setChromosome(Chromosome myChromosome)
 	{
 		this.myChromosome = myChromosome;
+		this.moveTable = null;
 	}
 	
 	/**
@@ -206,4 +222,124 @@ public class Phenotype extends Observable
 	{
 		this.strength=strength;
 	}
+
+	/**
+	 * Retrieves and returns this phenotype's id in the tick scheduler.
+	 * @return
+	 * 		The id, or -1 if the phenotype is awake.
+	 */
+	public int getSchedulerId()
+	{
+		return this.schedulerId;
+	}
+
+	/**
+	 * Sets this phenotype's id in the tick scheduler.
+	 * @param schedulerId
+	 * 		The id, or -1 if the phenotype is awake.
+	 */
+	public void setSchedulerId(int schedulerId)
+	{
+		this.schedulerId = schedulerId;
+	}
+
+	/**
+	 * Retrieves and returns this phenotype's place in the tick scheduler's
+	 * list of awake critters.
+	 * @return
+	 * 		The place, or -1 if the phenotype is not on the list.
+	 */
+	public int getAwakeIndex()
+	{
+		return this.awakeIndex;
+	}
+
+	/**
+	 * Sets this phenotype's place in the tick scheduler's list of awake
+	 * critters.
+	 * @param awakeIndex
+	 * 		The place, or -1 if the phenotype is not on the list.
+	 */
+	public void setAwakeIndex(int awakeIndex)
+	{
+		this.awakeIndex = awakeIndex;
+	}
+
+	/**
+	 * Retrieves and returns the last tick this phenotype moved on.
+	 * @return
+	 * 		The tick, or -1 if the phenotype has not moved yet.
+	 */
+	public int getMoveTick()
+	{
+		return this.moveTick;
+	}
+
+	/**
+	 * Sets the last tick this phenotype moved on.
+	 * @param moveTick
+	 * 		The tick.
+	 */
+	public void setMoveTick(int moveTick)
+	{
+		this.moveTick = moveTick;
+	}
+
+	/**
+	 * Retrieves and returns this phenotype's compiled moves.
+	 * @return
+	 * 		The move table, or null if it has not been compiled.
+	 */
+	public byte[] getMoveTable()
+	{
+		return this.moveTable;
+	}
+
+	/**
+	 * Sets this phenotype's compiled moves. Set it to null whenever the
+	 * chromosome is changed in place.
+	 * @param moveTable
+	 * 		The move table, or null.
+	 */
+	public void setMoveTable(byte[] moveTable)
+	{
+		this.moveTable = moveTable;
+	}
+
+	/**
+	 * Called when this phenotype is born again out of a PhenotypePool.
+	 * Sets it up as the constructor would a new one with the same
+	 * arguments, clearing everything left from its last life.
+	 * @param myChromosome
+	 * 		The chromosome of the new critter.
+	 * @param xloc
+	 * 		The x coordinate it is born at.
+	 * @param yloc
+	 * 		The y coordinate it is born at.
+	 * @param strength
+	 * 		The strength it starts with.
+	 */
+	public void onBirth(Chromosome myChromosome, int xloc, int yloc, double strength)
+	{
+		setChromosome(myChromosome);
+		this.xloc = xloc;
+		this.yloc = yloc;
+		this.strength = strength;
+		this.fitness = 0;
+		this.weightGeneLenght = 0;
+		this.thetaGeneLength = 0;
+		this.schedulerId = -1;
+		this.awakeIndex = -1;
+		this.moveTick = -1;
+	}
+
+	/**
+	 * Called when this phenotype has been taken out of the simulation
+	 * and is given back to a PhenotypePool. Lets go of its chromosome so
+	 * it is not kept alive while the phenotype waits to be reused.
+	 */
+	public void onDeath()
+	{
+		setChromosome(null);
+	}
 }
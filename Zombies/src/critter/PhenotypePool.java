@@ -0,0 +1,235 @@
+package critter;
+
+import chromosome.BitArrayChromosome;
+import chromosome.Chromosome;
+
+/**
+ * Phenotype Pool class
+ * keeps the humans, zombies and chromosomes taken out of the simulation
+ * so births and conversions can reuse them instead of allocating new
+ * ones. A critter that dies is buried, and it is only given back to the
+ * pool by recycle at the end of the tick, as the rest of the tick may
+ * still be holding on to it. Then its onDeath hook lets go of its
+ * chromosome, and when it is taken again its onBirth hook sets it up as
+ * a new critter.
+ *
+ * A dead critter's chromosome is only kept if whoever buried it knows no
+ * other critter shares it. A kept chromosome is reused for a child by
+ * copying a parent into it, if it has the parent's layout.
+ *
+ * Only Phenotype and ZombiePhenotype themselves are pooled; other
+ * subclasses are left to the garbage collector. Each kind of object is
+ * kept up to the pool's capacity, and the rest are let go.
+ */
+public class PhenotypePool
+{
+	private int capacity;
+
+	//the humans and zombies ready to be born again
+	private Phenotype[] humans = new Phenotype[16];
+	private int humanCount = 0;
+	private ZombiePhenotype[] zombies = new ZombiePhenotype[16];
+	private int zombieCount = 0;
+
+	//the chromosomes ready to be reused
+	private BitArrayChromosome[] chromosomes = new BitArrayChromosome[16];
+	private int chromosomeCount = 0;
+
+	//the critters that died this tick, and whether each one's chromosome
+	//can be reused
+	private Phenotype[] buried = new Phenotype[16];
+	private boolean[] chromosomeFree = new boolean[16];
+	private int buriedCount = 0;
+
+	//the number of objects made new and the number reused
+	private long created = 0;
+	private long reused = 0;
+
+	/**
+	 * Creates an empty pool.
+	 *
+	 * @param capacity - the most humans, zombies and chromosomes each that
+	 * the pool keeps.
+	 */
+	public PhenotypePool(int capacity)
+	{
+		if (capacity < 1)
+		{
+			throw new IllegalArgumentException("The capacity must be positive.");
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Gets a human, reused if the pool has one.
+	 *
+	 * @param chromosome - its chromosome.
+	 * @param xloc - the x coordinate it is born at.
+	 * @param yloc - the y coordinate it is born at.
+	 * @param strength - the strength it starts with.
+	 * @return - the human.
+	 */
+	public Phenotype takeHuman(Chromosome chromosome, int xloc, int yloc, double strength)
+	{
+		if (humanCount == 0)
+		{
+			created++;
+			return new Phenotype(chromosome, xloc, yloc, strength);
+		}
+		humanCount--;
+		Phenotype human = humans[humanCount];
+		humans[humanCount] = null;
+		human.onBirth(chromosome, xloc, yloc, strength);
+		reused++;
+		return human;
+	}
+
+	/**
+	 * Gets a zombie, reused if the pool has one. Its chromosome has its
+	 * race gene set to zero, as ZombiePhenotype's constructor does.
+	 *
+	 * @param chromosome - its chromosome.
+	 * @param xloc - the x coordinate it is born at.
+	 * @param yloc - the y coordinate it is born at.
+	 * @param strength - the strength it starts with.
+	 * @return - the zombie.
+	 */
+	public ZombiePhenotype takeZombie(Chromosome chromosome, int xloc, int yloc, double strength)
+	{
+		if (zombieCount == 0)
+		{
+			created++;
+			return new ZombiePhenotype(chromosome, xloc, yloc, strength);
+		}
+		zombieCount--;
+		ZombiePhenotype zombie = zombies[zombieCount];
+		zombies[zombieCount] = null;
+		zombie.onBirth(chromosome, xloc, yloc, strength);
+		reused++;
+		return zombie;
+	}
+
+	/**
+	 * Gets a copy of a chromosome, written into a reused one if the pool
+	 * has one with the same layout.
+	 *
+	 * @param original - the chromosome to copy.
+	 * @return - the copy.
+	 */
+	public BitArrayChromosome copyChromosome(BitArrayChromosome original)
+	{
+		if (chromosomeCount == 0 || !chromosomes[chromosomeCount - 1].hasSameLayout(original))
+		{
+			created++;
+			return (BitArrayChromosome)original.clone();
+		}
+		chromosomeCount--;
+		BitArrayChromosome copy = chromosomes[chromosomeCount];
+		chromosomes[chromosomeCount] = null;
+		copy.copyFrom(original);
+		reused++;
+		return copy;
+	}
+
+	/**
+	 * Buries a critter that has been taken out of the simulation. It goes
+	 * back into the pool when recycle is called.
+	 *
+	 * @param critter - the dead critter.
+	 * @param chromosomeFree - true if no other critter shares its
+	 * chromosome, so the chromosome can be reused too.
+	 */
+	public void bury(Phenotype critter, boolean chromosomeFree)
+	{
+		if (buriedCount == buried.length)
+		{
+			Phenotype[] biggerBuried = new Phenotype[2 * buriedCount];
+			boolean[] biggerFree = new boolean[2 * buriedCount];
+			System.arraycopy(buried, 0, biggerBuried, 0, buriedCount);
+			System.arraycopy(this.chromosomeFree, 0, biggerFree, 0, buriedCount);
+			buried = biggerBuried;
+			this.chromosomeFree = biggerFree;
+		}
+		buried[buriedCount] = critter;
+		this.chromosomeFree[buriedCount] = chromosomeFree;
+		buriedCount++;
+	}
+
+	/**
+	 * Gives the critters buried this tick back to the pool. Call it once
+	 * the tick is over and nothing refers to them any more.
+	 */
+	public void recycle()
+	{
+		for (int i=0; i<buriedCount; i++)
+		{
+			Phenotype critter = buried[i];
+			buried[i] = null;
+			Chromosome chromosome = critter.getChromosome();
+			critter.onDeath();
+
+			if (chromosomeFree[i] && chromosome instanceof BitArrayChromosome
+				&& chromosomeCount < capacity)
+			{
+				if (chromosomeCount == chromosomes.length)
+				{
+					BitArrayChromosome[] bigger = new BitArrayChromosome[
+						Math.min(2 * chromosomeCount, capacity)];
+					System.arraycopy(chromosomes, 0, bigger, 0, chromosomeCount);
+					chromosomes = bigger;
+				}
+				chromosomes[chromosomeCount] = (BitArrayChromosome)chromosome;
+				chromosomeCount++;
+			}
+
+			if (critter.getClass() == Phenotype.class && humanCount < capacity)
+			{
+				if (humanCount == humans.length)
+				{
+					Phenotype[] bigger = new Phenotype[Math.min(2 * humanCount, capacity)];
+					System.arraycopy(humans, 0, bigger, 0, humanCount);
+					humans = bigger;
+				}
+				humans[humanCount] = critter;
+				humanCount++;
+			}
+			else if (critter.getClass() == ZombiePhenotype.class && zombieCount < capacity)
+			{
+				if (zombieCount == zombies.length)
+				{
+					ZombiePhenotype[] bigger = new ZombiePhenotype[Math.min(2 * zombieCount, capacity)];
+					System.arraycopy(zombies, 0, bigger, 0, zombieCount);
+					zombies = bigger;
+				}
+				zombies[zombieCount] = (ZombiePhenotype)critter;
+				zombieCount++;
+			}
+		}
+		buriedCount = 0;
+	}
+
+	/**
+	 * Returns the number of humans, zombies and chromosomes waiting in the
+	 * pool.
+	 */
+	public int getFree()
+	{
+		return humanCount + zombieCount + chromosomeCount;
+	}
+
+	/**
+	 * Returns the number of objects the pool has had to make new.
+	 */
+	public long getCreated()
+	{
+		return created;
+	}
+
+	/**
+	 * Returns the number of objects the pool has reused.
+	 */
+	public long getReused()
+	{
+		return reused;
+	}
+}
@@ -52,5 +52,15 @@ public class ZombiePhenotype extends Phenotype
 		chrom.setBit(0,0,0);
 	}
 	
+	/**
+	 * Born again out of a PhenotypePool, the zombie has its race gene
+	 * set to zero just as a new one does.
+	 */
+	public void onBirth(Chromosome myChromosome, int xloc, int yloc, double strength)
+	{
+		super.onBirth(myChromosome, xloc, yloc, strength);
+		((BitArrayChromosome)myChromosome).setBit(0,0,0);
+	}
+	
 	
 }
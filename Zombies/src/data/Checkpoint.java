@@ -0,0 +1,578 @@
+package data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import chromosome.BitArrayChromosome;
+import chromosome.ChromosomeCodec;
+import critter.HumanPhenotype;
+import critter.Phenotype;
+import critter.Population;
+import critter.ZombiePhenotype;
+import numbers.ALifeRandom;
+
+/**
+ * Checkpoint class
+ * saves the state of a running simulation to a file and restores it
+ * again so that a long run can pick up where it left off after a crash.
+ * A snapshot holds the tick it was taken at, the food, human and zombie
+ * count grids of the Environment, the state of the ALifeRandom generator,
+ * the centres of the FoodField's clusters or patches if there is one, and
+ * every critter of both populations (its kind, location, strength,
+ * fitness and chromosome).
+ *
+ * The file starts with a magic number and a format version. Everything
+ * after that is written with ChromosomeCodec and plain ByteBuffer puts.
+ *
+ * Taking a snapshot is split in two. On the simulation thread the state
+ * is only copied: the rows of the grids and each critter's kind,
+ * location, strength and fitness go into arrays kept from snapshot to
+ * snapshot, and each chromosome is copied with copyFrom into a spare
+ * chromosome of the same layout, so after the first snapshot nothing is
+ * allocated. A background thread then encodes the copy into a reusable
+ * buffer and writes it to the file with a FileChannel. The snapshot goes
+ * to a temporary file first, is forced to the disk and is moved over the
+ * old one once it is complete, so a crash while writing never leaves a
+ * half written checkpoint. If the previous snapshot is still being
+ * written the new one is skipped rather than making the simulation wait.
+ */
+public class Checkpoint
+{
+	//"ZGAS" at the start of every checkpoint file
+	public static final int MAGIC = 0x5A474153;
+
+	//the version of the file layout written by this class
+	public static final int VERSION = 2;
+
+	//the kinds of phenotype that can be saved
+	private static final byte PLAIN_PHENOTYPE = 0;
+	private static final byte HUMAN_PHENOTYPE = 1;
+	private static final byte ZOMBIE_PHENOTYPE = 2;
+
+	//the bytes written for a critter besides its chromosome:
+	//kind, x, y, strength and fitness
+	private static final int CRITTER_HEADER_BYTES = 1 + 4 + 4 + 8 + 8;
+
+	//the file the checkpoint is written to
+	private File file;
+
+	//the copy of the state taken on the simulation thread, and the
+	//buffer the writer encodes it into. Reused between snapshots and
+	//only touched by one thread at a time.
+	private int tick;
+	private int[][] food = new int[0][];
+	private int[][] humans = new int[0][];
+	private int[][] zombies = new int[0][];
+	private byte[] randomState;
+	private int[] foodCentres = new int[0];
+	private Capture humanCapture = new Capture();
+	private Capture zombieCapture = new Capture();
+	private ByteBuffer buffer = null;
+
+	//the food field centres read by the last restore, or null if it had none
+	private int[] restoredFoodCentres = null;
+
+	//the thread writing the last snapshot, or null if there is none.
+	private Thread writer = null;
+
+	//the problem the last write ran into, if any
+	private volatile IOException writeProblem = null;
+
+	/**
+	 * Creates a checkpoint that saves to and restores from the given file.
+	 * @param file - the checkpoint file
+	 */
+	public Checkpoint(File file)
+	{
+		this.file = file;
+	}
+
+	/**
+	 * Takes a snapshot of the simulation and hands it to a background
+	 * thread to be encoded and written. Only the copy of the state is
+	 * made on the calling thread.
+	 *
+	 * @param tick - the number of the tick that has just finished
+	 * @param humanPop - the human population
+	 * @param zombiePop - the zombie population
+	 * @param environment - the environment
+	 * @param foodField - the food field, or null if there is none
+	 * @return - true if the snapshot was taken, false if it was skipped
+	 * because the previous one is still being written.
+	 * @throws IOException - if the previous write failed.
+	 */
+	public boolean save(int tick, Population humanPop, Population zombiePop,
+		Environment environment, FoodField foodField) throws IOException
+	{
+		if (writer != null && writer.isAlive())
+		{
+			return false;
+		}
+		checkWriteProblem();
+
+		this.tick = tick;
+		food = copyGrid(environment.getFoodEnvironment(), food);
+		humans = copyGrid(environment.getHumanEnvironment(), humans);
+		zombies = copyGrid(environment.getZombieEnvironment(), zombies);
+		randomState = saveRandom(ALifeRandom.getRandomNumberGenerator());
+		foodCentres = foodField == null ? new int[0] : foodField.getCentres();
+		humanCapture.copy(humanPop);
+		zombieCapture.copy(zombiePop);
+
+		writer = new Thread("checkpoint writer")
+		{
+			public void run()
+			{
+				try
+				{
+					writeToFile(encode());
+				}
+				catch (IOException e)
+				{
+					writeProblem = e;
+				}
+			}
+		};
+		writer.setDaemon(true);
+		writer.start();
+		return true;
+	}
+
+	/**
+	 * Waits for the snapshot being written (if any) to reach the file.
+	 * @throws IOException - if the write failed.
+	 */
+	public void waitForWrite() throws IOException
+	{
+		if (writer != null)
+		{
+			try
+			{
+				writer.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		checkWriteProblem();
+	}
+
+	/**
+	 * Throws, and clears, the problem the last write ran into.
+	 */
+	private void checkWriteProblem() throws IOException
+	{
+		IOException problem = writeProblem;
+		if (problem != null)
+		{
+			writeProblem = null;
+			throw problem;
+		}
+	}
+
+	/**
+	 * Copies a grid into the given copy, reusing its rows if the grid is
+	 * the same size.
+	 * @return - the copy
+	 */
+	private static int[][] copyGrid(int[][] grid, int[][] copy)
+	{
+		if (copy.length != grid.length || copy[0].length != grid[0].length)
+		{
+			copy = new int[grid.length][grid[0].length];
+		}
+		for (int i=0; i<grid.length; i++)
+		{
+			System.arraycopy(grid[i], 0, copy[i], 0, grid[i].length);
+		}
+		return copy;
+	}
+
+	/**
+	 * Encodes the copy of the state into the reusable buffer. Called on
+	 * the writer thread.
+	 * @return - the buffer, flipped and ready to be written
+	 */
+	private ByteBuffer encode()
+	{
+		int width = food.length;
+		int length = food[0].length;
+
+		//works out the size so the buffer only grows when it has to
+		int size = 4 * 5 + 3 * 4 * width * length + 4 + randomState.length;
+		size += 4 + 4 * foodCentres.length + 8;
+		size += humanCapture.bytes() + zombieCapture.bytes();
+		if (buffer == null || buffer.capacity() < size)
+		{
+			buffer = ByteBuffer.allocateDirect(size + size / 4);
+		}
+		buffer.clear();
+
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(tick);
+		buffer.putInt(width);
+		buffer.putInt(length);
+		putGrid(food);
+		putGrid(humans);
+		putGrid(zombies);
+
+		buffer.putInt(randomState.length);
+		buffer.put(randomState);
+
+		buffer.putInt(foodCentres.length);
+		for (int i=0; i<foodCentres.length; i++)
+		{
+			buffer.putInt(foodCentres[i]);
+		}
+
+		humanCapture.put(buffer);
+		zombieCapture.put(buffer);
+
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Writes a grid into the buffer row by row.
+	 */
+	private void putGrid(int[][] grid)
+	{
+		for (int i=0; i<grid.length; i++)
+		{
+			buffer.asIntBuffer().put(grid[i]);
+			buffer.position(buffer.position() + 4 * grid[i].length);
+		}
+	}
+
+	/**
+	 * Writes the snapshot into a temporary file and forces it to the disk,
+	 * then moves it over the checkpoint file.
+	 */
+	private void writeToFile(ByteBuffer snapshot) throws IOException
+	{
+		File temp = new File(file.getPath() + ".tmp");
+		FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+			StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try
+		{
+			while (snapshot.hasRemaining())
+			{
+				channel.write(snapshot);
+			}
+			channel.force(true);
+		}
+		finally
+		{
+			channel.close();
+		}
+
+		Files.move(temp.toPath(), file.toPath(),
+			StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Returns true if there is a checkpoint file to restore from.
+	 */
+	public boolean exists()
+	{
+		return file.isFile();
+	}
+
+	/**
+	 * Restores the simulation from the checkpoint file. The populations
+	 * are emptied and refilled with the saved critters, the saved grids are
+	 * copied into the environment's arrays and the ALifeRandom generator is
+	 * replaced with the saved one. Callers holding on to the old generator
+	 * must get it again. The saved food field centres are kept to be read
+	 * with getFoodCentres.
+	 *
+	 * @param humanPop - the human population to refill
+	 * @param zombiePop - the zombie population to refill
+	 * @param environment - the environment whose grids are overwritten.
+	 * They must be the same size as the saved ones.
+	 * @return - the tick the checkpoint was taken at
+	 * @throws IOException - if the file can not be read or is not a
+	 * checkpoint this class can restore.
+	 */
+	public int restore(Population humanPop, Population zombiePop,
+		Environment environment) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try
+		{
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+			{
+				throw new IOException("The checkpoint " + file + " is too large.");
+			}
+			ByteBuffer snapshot = ByteBuffer.allocate((int)size);
+			while (snapshot.hasRemaining())
+			{
+				if (channel.read(snapshot) < 0)
+				{
+					throw new IOException("The checkpoint " + file + " ended early.");
+				}
+			}
+			snapshot.flip();
+			return decode(snapshot, humanPop, zombiePop, environment);
+		}
+		catch (RuntimeException e)
+		{
+			//anything wrong with the contents shows up as a
+			//buffer underflow or a bad chromosome header
+			throw new IOException("The checkpoint " + file + " is damaged: " + e);
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads a snapshot back into the simulation.
+	 */
+	private int decode(ByteBuffer snapshot, Population humanPop, Population zombiePop,
+		Environment environment) throws IOException
+	{
+		if (snapshot.getInt() != MAGIC)
+		{
+			throw new IOException(file + " is not a checkpoint file.");
+		}
+		int version = snapshot.getInt();
+		if (version != VERSION)
+		{
+			throw new IOException(file + " is checkpoint version " + version +
+				" but only version " + VERSION + " can be restored.");
+		}
+
+		int tick = snapshot.getInt();
+		int width = snapshot.getInt();
+		int length = snapshot.getInt();
+		int[][] food = environment.getFoodEnvironment();
+		if (food.length != width || food[0].length != length)
+		{
+			throw new IOException("The checkpoint is for a " + width + " by " +
+				length + " world but the environment is " + food.length +
+				" by " + food[0].length + ".");
+		}
+		getGrid(snapshot, food);
+		getGrid(snapshot, environment.getHumanEnvironment());
+		getGrid(snapshot, environment.getZombieEnvironment());
+
+		byte[] randomState = new byte[snapshot.getInt()];
+		snapshot.get(randomState);
+		ALifeRandom.setRandomNumberGenerator(loadRandom(randomState));
+
+		int[] centres = new int[snapshot.getInt()];
+		for (int i=0; i<centres.length; i++)
+		{
+			centres[i] = snapshot.getInt();
+		}
+		restoredFoodCentres = centres.length == 0 ? null : centres;
+
+		getPopulation(snapshot, humanPop);
+		getPopulation(snapshot, zombiePop);
+
+		return tick;
+	}
+
+	/**
+	 * Returns the centres of the food field saved in the checkpoint restored
+	 * last, or null if the run had no food field.
+	 */
+	public int[] getFoodCentres()
+	{
+		return restoredFoodCentres;
+	}
+
+	/**
+	 * Reads a grid out of the snapshot into the given array.
+	 */
+	private static void getGrid(ByteBuffer snapshot, int[][] grid)
+	{
+		for (int i=0; i<grid.length; i++)
+		{
+			snapshot.asIntBuffer().get(grid[i]);
+			snapshot.position(snapshot.position() + 4 * grid[i].length);
+		}
+	}
+
+	/**
+	 * Empties the population and fills it with the saved critters.
+	 */
+	private static void getPopulation(ByteBuffer snapshot, Population population)
+	{
+		population.clear();
+
+		int size = snapshot.getInt();
+		for (int i=0; i<size; i++)
+		{
+			byte kind = snapshot.get();
+			int xloc = snapshot.getInt();
+			int yloc = snapshot.getInt();
+			double strength = snapshot.getDouble();
+			double fitness = snapshot.getDouble();
+			BitArrayChromosome chromosome = ChromosomeCodec.read(snapshot);
+
+			Phenotype critter;
+			if (kind == HUMAN_PHENOTYPE)
+			{
+				critter = new HumanPhenotype(chromosome, xloc, yloc, strength);
+			}
+			else if (kind == ZOMBIE_PHENOTYPE)
+			{
+				critter = new ZombiePhenotype(chromosome, xloc, yloc, strength);
+			}
+			else
+			{
+				critter = new Phenotype(chromosome, xloc, yloc, strength);
+			}
+
+			//the constructor may move critters that are outside the
+			//default world, so the saved location is set again.
+			critter.setXloc(xloc);
+			critter.setYloc(yloc);
+			critter.setFitness(fitness);
+			population.addPhenotype(critter);
+		}
+	}
+
+	/**
+	 * Returns the serialized form of the generator, which holds its seed.
+	 */
+	private static byte[] saveRandom(Random random) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(random);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Rebuilds a generator from its serialized form.
+	 */
+	private static Random loadRandom(byte[] state) throws IOException
+	{
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(state));
+		try
+		{
+			return (Random)in.readObject();
+		}
+		catch (ClassNotFoundException e)
+		{
+			throw new IOException("The saved random number generator is a " +
+				"class that can not be found: " + e.getMessage());
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * The copy of one population taken for a snapshot. Its arrays and
+	 * chromosomes are kept for the next snapshot and only grow.
+	 */
+	private static class Capture
+	{
+		private int size = 0;
+		private byte[] kinds = new byte[0];
+		private int[] xlocs = new int[0];
+		private int[] ylocs = new int[0];
+		private double[] strengths = new double[0];
+		private double[] fitnesses = new double[0];
+		private BitArrayChromosome[] chromosomes = new BitArrayChromosome[0];
+
+		/**
+		 * Copies every critter of the population.
+		 */
+		void copy(Population population)
+		{
+			size = population.size();
+			if (kinds.length < size)
+			{
+				int capacity = Math.max(size, 2 * kinds.length);
+				kinds = new byte[capacity];
+				xlocs = new int[capacity];
+				ylocs = new int[capacity];
+				strengths = new double[capacity];
+				fitnesses = new double[capacity];
+				BitArrayChromosome[] bigger = new BitArrayChromosome[capacity];
+				System.arraycopy(chromosomes, 0, bigger, 0, chromosomes.length);
+				chromosomes = bigger;
+			}
+
+			for (int i=0; i<size; i++)
+			{
+				Phenotype critter = population.getPhenotype(i);
+
+				kinds[i] = PLAIN_PHENOTYPE;
+				if (critter instanceof HumanPhenotype)
+				{
+					kinds[i] = HUMAN_PHENOTYPE;
+				}
+				else if (critter instanceof ZombiePhenotype)
+				{
+					kinds[i] = ZOMBIE_PHENOTYPE;
+				}
+				xlocs[i] = critter.getXloc();
+				ylocs[i] = critter.getYloc();
+				strengths[i] = critter.getStrength();
+				fitnesses[i] = critter.getFitness();
+
+				BitArrayChromosome chromosome = (BitArrayChromosome)critter.getChromosome();
+				if (chromosomes[i] != null && chromosomes[i].hasSameLayout(chromosome))
+				{
+					chromosomes[i].copyFrom(chromosome);
+				}
+				else
+				{
+					chromosomes[i] = (BitArrayChromosome)chromosome.clone();
+				}
+			}
+		}
+
+		/**
+		 * Returns the number of bytes the copied critters take.
+		 */
+		int bytes()
+		{
+			int bytes = 0;
+			for (int i=0; i<size; i++)
+			{
+				bytes += CRITTER_HEADER_BYTES + ChromosomeCodec.encodedSize(chromosomes[i]);
+			}
+			return bytes;
+		}
+
+		/**
+		 * Writes the number of critters and then every copied critter.
+		 */
+		void put(ByteBuffer buffer)
+		{
+			buffer.putInt(size);
+			for (int i=0; i<size; i++)
+			{
+				buffer.put(kinds[i]);
+				buffer.putInt(xlocs[i]);
+				buffer.putInt(ylocs[i]);
+				buffer.putDouble(strengths[i]);
+				buffer.putDouble(fitnesses[i]);
+				ChromosomeCodec.write(chromosomes[i], buffer);
+			}
+		}
+	}
+}
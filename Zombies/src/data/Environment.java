@@ -13,6 +13,19 @@ import critter.Phenotype;
  * making the humans move according to their food finding evolution
  * The environments act as markers and placeholders for x and y coordinates
  * 
+ * Every critter is added once and then stays in the environment, the 
+ * move methods take it from its old cell to its new one. With change 
+ * tracking on, the cells that changed can be read back so only they 
+ * have to be redrawn.
+ * 
+ * With bitplanes on, the environment also keeps one bit per cell for 
+ * whether it holds any food, humans or zombies, packed 64 cells to a 
+ * long along each row. Cell y of a row is bit y+1, bit 0 is a copy of 
+ * the last cell and the bit after the last cell is a copy of the first, 
+ * so the 3 cells around any y are always 3 bits next to each other and 
+ * the 8 cells around a critter can be read with shifts and ands, without
+ * any wrap around checks.
+ * 
  * @author Zach Winchell
  */
 public class Environment 
@@ -25,6 +38,21 @@ public class Environment
 	//Phenotype environments
 	private ArrayList[][] humanPhenoEnvironment = null;
 	private ArrayList[][] zombiePhenoEnvironment = null;
+	
+	//the cells changed since the last clearChanges, each as 
+	//x * length + y and each listed once. Only kept while 
+	//trackChanges is on.
+	private boolean trackChanges = false;
+	private int[] changedCells = null;
+	private boolean[] cellChanged = null;
+	private int changedCount = 0;
+	
+	//the presence bitplanes, one long[] per x, or null when they are 
+	//not kept. Each row has a spare long at the end so 3 bits can 
+	//always be read from two longs.
+	private long[][] foodBits = null;
+	private long[][] humanBits = null;
+	private long[][] zombieBits = null;
 
 	/**
 	 * Default contructor that sets the passed in environments
@@ -69,6 +97,7 @@ public class Environment
 	public void addFood(int x, int y)
 	{
 		foodEnvironment[x][y]++;
+		markChanged(x, y);
 	}
 	/**
 	 * Add human to an environment
@@ -78,7 +107,7 @@ public class Environment
 	public void addHuman(int x, int y)
 	{
 		humanEnvironment[x][y]++;
-		
+		markChanged(x, y);
 	}
 	/**
 	 * Add zombie to an environment
@@ -88,6 +117,7 @@ public class Environment
 	public void addZombie(int x, int y)
 	{
 		zombieEnvironment[x][y]++;
+		markChanged(x, y);
 	}
 	/**
 	 * Add a human phenotype to an environment array
@@ -225,6 +255,7 @@ public class Environment
 	public void subtractFood(int x, int y)
 	{
 		foodEnvironment[x][y]--;
+		markChanged(x, y);
 	}
 	/**
 	 * Subtract a human from the current human environment at
@@ -236,6 +267,7 @@ public class Environment
 	{
 		System.out.println("SUBTRACTING A HUMAN AT X: " + x + " Y: " +y);
 		humanEnvironment[x][y]--;
+		markChanged(x, y);
 	}
 	/**
 	 * Subtract a zombie from the current zombie environment at
@@ -246,9 +278,12 @@ public class Environment
 	public void subtractZombie(int x, int y)
 	{
 		zombieEnvironment[x][y]--;
+		markChanged(x, y);
 	}
 	/**
-	 * Subtracts a human phenotype from the x and y coordinates
+	 * Subtracts a human phenotype from the x and y coordinates. The 
+	 * passed in phenotype is the one removed, so critters that stay in 
+	 * a cell across ticks keep their own entries.
 	 * @param human - Phenotype to be removed
 	 * @param x - x coordinate
 	 * @param y - y coordinate
@@ -256,17 +291,427 @@ public class Environment
 	public void subtractHumanPhenotype(Phenotype human, int x, int y)
 	{
 		System.out.println("INDEX OF HUMAN PHENO ENVIRONMENT: " + (humanEnvironment[x][y]-1));
-		humanPhenoEnvironment[x][y].remove(humanEnvironment[x][y]-1);
+		humanPhenoEnvironment[x][y].remove(human);
 	}
 	/**
-	 * Subtracts a zombie phenotype from the x and y coordinates
+	 * Subtracts a zombie phenotype from the x and y coordinates. The 
+	 * passed in phenotype is the one removed.
 	 * @param zombie - Phenotype to be removed
 	 * @param x - x coordinate
 	 * @param y - y coordinate
 	 */
 	public void subtractZombiePhenotype(Phenotype zombie, int x, int y)
 	{
-		zombiePhenoEnvironment[x][y].remove(zombieEnvironment[x][y]-1);
+		zombiePhenoEnvironment[x][y].remove(zombie);
+	}
+	
+	/**
+	 * Moves a human phenotype from its old cell to the cell it is at 
+	 * now. Nothing happens if it stayed in the same cell.
+	 * @param human - the human, already at its new x and y coordinates
+	 * @param oldX - x coordinate it moved from
+	 * @param oldY - y coordinate it moved from
+	 */
+	public void moveHuman(Phenotype human, int oldX, int oldY)
+	{
+		int x = human.getXloc();
+		int y = human.getYloc();
+		if (x == oldX && y == oldY)
+		{
+			return;
+		}
+		humanEnvironment[oldX][oldY]--;
+		humanPhenoEnvironment[oldX][oldY].remove(human);
+		markChanged(oldX, oldY);
+		humanEnvironment[x][y]++;
+		humanPhenoEnvironment[x][y].add(human);
+		markChanged(x, y);
+	}
+	
+	/**
+	 * Moves a zombie phenotype from its old cell to the cell it is at 
+	 * now. Nothing happens if it stayed in the same cell.
+	 * @param zombie - the zombie, already at its new x and y coordinates
+	 * @param oldX - x coordinate it moved from
+	 * @param oldY - y coordinate it moved from
+	 */
+	public void moveZombie(Phenotype zombie, int oldX, int oldY)
+	{
+		int x = zombie.getXloc();
+		int y = zombie.getYloc();
+		if (x == oldX && y == oldY)
+		{
+			return;
+		}
+		zombieEnvironment[oldX][oldY]--;
+		zombiePhenoEnvironment[oldX][oldY].remove(zombie);
+		markChanged(oldX, oldY);
+		zombieEnvironment[x][y]++;
+		zombiePhenoEnvironment[x][y].add(zombie);
+		markChanged(x, y);
+	}
+	
+	/**
+	 * Getter for all the human phenotypes at the x and y coordinates
+	 * @param x - x coordinate
+	 * @param y - y coordinate
+	 * @return - the list of human phenotypes at the x and y coordinates
+	 */
+	public ArrayList getHumanPhenotypes(int x, int y)
+	{
+		return humanPhenoEnvironment[x][y];
+	}
+	
+	/**
+	 * Getter for all the zombie phenotypes at the x and y coordinates
+	 * @param x - x coordinate
+	 * @param y - y coordinate
+	 * @return - the list of zombie phenotypes at the x and y coordinates
+	 */
+	public ArrayList getZombiePhenotypes(int x, int y)
+	{
+		return zombiePhenoEnvironment[x][y];
+	}
+	
+	/**
+	 * Takes every human and zombie out of the environment, leaving 
+	 * the food
+	 */
+	public void clearCritters()
+	{
+		for (int x=0; x<humanEnvironment.length; x++)
+		{
+			for (int y=0; y<humanEnvironment[x].length; y++)
+			{
+				boolean changed = humanEnvironment[x][y] != 0 || zombieEnvironment[x][y] != 0;
+				humanEnvironment[x][y] = 0;
+				zombieEnvironment[x][y] = 0;
+				if (changed)
+				{
+					markChanged(x, y);
+				}
+				if (humanPhenoEnvironment != null)
+				{
+					humanPhenoEnvironment[x][y].clear();
+				}
+				if (zombiePhenoEnvironment != null)
+				{
+					zombiePhenoEnvironment[x][y].clear();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Turns the record of changed cells on or off. Turning it off 
+	 * also forgets the changes recorded so far.
+	 * @param trackChanges - true to record the cells that change
+	 */
+	public void setTrackChanges(boolean trackChanges)
+	{
+		if (trackChanges && changedCells == null)
+		{
+			int cells = getWidth() * getLength();
+			changedCells = new int[cells];
+			cellChanged = new boolean[cells];
+		}
+		if (!trackChanges)
+		{
+			clearChanges();
+		}
+		this.trackChanges = trackChanges;
+	}
+	
+	/**
+	 * Returns true if changed cells are being recorded.
+	 */
+	public boolean isTrackingChanges()
+	{
+		return trackChanges;
+	}
+	
+	/**
+	 * Records that a cell changed, and updates its bits if bitplanes 
+	 * are kept. The add and subtract methods call this themselves, code 
+	 * that writes the arrays directly should call it too.
+	 * @param x - x coordinate
+	 * @param y - y coordinate
+	 */
+	public void markChanged(int x, int y)
+	{
+		if (foodBits != null)
+		{
+			updateBits(x, y);
+		}
+		if (!trackChanges)
+		{
+			return;
+		}
+		int cell = x * foodEnvironment[0].length + y;
+		if (!cellChanged[cell])
+		{
+			cellChanged[cell] = true;
+			changedCells[changedCount] = cell;
+			changedCount++;
+		}
+	}
+	
+	/**
+	 * Getter for the number of cells changed since the last clearChanges
+	 * @return - the number of changed cells
+	 */
+	public int getChangedCount()
+	{
+		return changedCount;
+	}
+	
+	/**
+	 * Getter for a changed cell
+	 * @param index - from 0 to getChangedCount()-1
+	 * @return - the cell as x * getLength() + y
+	 */
+	public int getChangedCell(int index)
+	{
+		return changedCells[index];
+	}
+	
+	/**
+	 * Forgets the changed cells recorded so far
+	 */
+	public void clearChanges()
+	{
+		for (int i=0; i<changedCount; i++)
+		{
+			cellChanged[changedCells[i]] = false;
+		}
+		changedCount = 0;
+	}
+	
+	/**
+	 * Getter for the number of columns (x values)
+	 * @return - the width of the environment
+	 */
+	public int getWidth()
+	{
+		return foodEnvironment.length;
+	}
+	
+	/**
+	 * Getter for the number of rows (y values)
+	 * @return - the length of the environment
+	 */
+	public int getLength()
+	{
+		return foodEnvironment[0].length;
+	}
+	
+	/**
+	 * Turns the presence bitplanes on or off. Turning them on builds 
+	 * them from the count arrays, from then on markChanged keeps them 
+	 * up to date.
+	 * @param bitplanes - true to keep the bitplanes
+	 */
+	public void setBitplanes(boolean bitplanes)
+	{
+		if (!bitplanes)
+		{
+			foodBits = null;
+			humanBits = null;
+			zombieBits = null;
+			return;
+		}
+		
+		//the cells, the two copies and the spare long
+		int words = (getLength() + 2 + 63) / 64 + 1;
+		foodBits = new long[getWidth()][words];
+		humanBits = new long[getWidth()][words];
+		zombieBits = new long[getWidth()][words];
+		for (int x=0; x<getWidth(); x++)
+		{
+			for (int y=0; y<getLength(); y++)
+			{
+				updateBits(x, y);
+			}
+		}
+	}
+	
+	/**
+	 * Returns true if the presence bitplanes are kept.
+	 */
+	public boolean hasBitplanes()
+	{
+		return foodBits != null;
+	}
+	
+	/**
+	 * Getter for which of the 8 cells around a cell hold food. Needs 
+	 * the bitplanes.
+	 * @param x - x coordinate
+	 * @param y - y coordinate
+	 * @return - a mask with bit i set if neighbour i holds food, from 
+	 * 0 (x-1, y-1) clockwise to 7 (x-1, y), the order Interaction 
+	 * reads them in
+	 */
+	public int getFoodMask(int x, int y)
+	{
+		return neighbourMask(foodBits, x, y);
+	}
+	
+	/**
+	 * Getter for which of the 8 cells around a cell hold humans. Needs 
+	 * the bitplanes.
+	 * @param x - x coordinate
+	 * @param y - y coordinate
+	 * @return - a mask with bit i set if neighbour i holds a human
+	 */
+	public int getHumanMask(int x, int y)
+	{
+		return neighbourMask(humanBits, x, y);
+	}
+	
+	/**
+	 * Getter for which of the 8 cells around a cell hold zombies. Needs 
+	 * the bitplanes.
+	 * @param x - x coordinate
+	 * @param y - y coordinate
+	 * @return - a mask with bit i set if neighbour i holds a zombie
+	 */
+	public int getZombieMask(int x, int y)
+	{
+		return neighbourMask(zombieBits, x, y);
+	}
+	
+	/**
+	 * Getter for the food masks of a whole row at once. Needs the 
+	 * bitplanes.
+	 * @param x - x coordinate of the row
+	 * @param masks - filled with the mask of each y, at least getLength() long
+	 */
+	public void getFoodMasks(int x, int[] masks)
+	{
+		rowMasks(foodBits, x, masks);
+	}
+	
+	/**
+	 * Getter for the human masks of a whole row at once. Needs the 
+	 * bitplanes.
+	 * @param x - x coordinate of the row
+	 * @param masks - filled with the mask of each y, at least getLength() long
+	 */
+	public void getHumanMasks(int x, int[] masks)
+	{
+		rowMasks(humanBits, x, masks);
+	}
+	
+	/**
+	 * Getter for the zombie masks of a whole row at once. Needs the 
+	 * bitplanes.
+	 * @param x - x coordinate of the row
+	 * @param masks - filled with the mask of each y, at least getLength() long
+	 */
+	public void getZombieMasks(int x, int[] masks)
+	{
+		rowMasks(zombieBits, x, masks);
+	}
+	
+	/**
+	 * Sets a cell's bits, and their copy if it is the first or last 
+	 * cell of its row, from the count arrays
+	 * @param x - x coordinate
+	 * @param y - y coordinate
+	 */
+	private void updateBits(int x, int y)
+	{
+		int length = getLength();
+		setBit(foodBits[x], y + 1, foodEnvironment[x][y] > 0);
+		setBit(humanBits[x], y + 1, humanEnvironment[x][y] > 0);
+		setBit(zombieBits[x], y + 1, zombieEnvironment[x][y] > 0);
+		if (y == 0)
+		{
+			setBit(foodBits[x], length + 1, foodEnvironment[x][y] > 0);
+			setBit(humanBits[x], length + 1, humanEnvironment[x][y] > 0);
+			setBit(zombieBits[x], length + 1, zombieEnvironment[x][y] > 0);
+		}
+		if (y == length - 1)
+		{
+			setBit(foodBits[x], 0, foodEnvironment[x][y] > 0);
+			setBit(humanBits[x], 0, humanEnvironment[x][y] > 0);
+			setBit(zombieBits[x], 0, zombieEnvironment[x][y] > 0);
+		}
+	}
+	
+	/**
+	 * Sets or clears one bit of a row
+	 */
+	private static void setBit(long[] row, int bit, boolean on)
+	{
+		if (on)
+		{
+			row[bit >>> 6] |= 1L << bit;
+		}
+		else
+		{
+			row[bit >>> 6] &= ~(1L << bit);
+		}
+	}
+	
+	/**
+	 * Reads the 3 bits of a row for the cells y-1, y and y+1, as bits 
+	 * 0, 1 and 2. Bit y of the row is cell y-1.
+	 */
+	private static int threeBits(long[] row, int y)
+	{
+		int word = y >>> 6;
+		int shift = y & 63;
+		
+		//the second shift is split in two so a shift of 0 gives 0, 
+		//where a single shift by 64 would not shift at all
+		long bits = (row[word] >>> shift) | ((row[word + 1] << (63 - shift)) << 1);
+		return (int)bits & 7;
+	}
+	
+	/**
+	 * Builds a neighbour mask from the rows above, at and below x
+	 */
+	private static int combine(int above, int at, int below)
+	{
+		return (above & 1) 
+			| (at & 1) << 1 
+			| (below & 1) << 2 
+			| (below & 2) << 2 
+			| (below & 4) << 2 
+			| (at & 4) << 3 
+			| (above & 4) << 4 
+			| (above & 2) << 6;
+	}
+	
+	/**
+	 * Reads the neighbour mask of one cell from a bitplane
+	 */
+	private int neighbourMask(long[][] plane, int x, int y)
+	{
+		int width = plane.length;
+		long[] above = plane[x == 0 ? width - 1 : x - 1];
+		long[] below = plane[x == width - 1 ? 0 : x + 1];
+		return combine(threeBits(above, y), threeBits(plane[x], y), 
+			threeBits(below, y));
+	}
+	
+	/**
+	 * Reads the neighbour masks of a whole row from a bitplane
+	 */
+	private void rowMasks(long[][] plane, int x, int[] masks)
+	{
+		int width = plane.length;
+		long[] above = plane[x == 0 ? width - 1 : x - 1];
+		long[] at = plane[x];
+		long[] below = plane[x == width - 1 ? 0 : x + 1];
+		int length = getLength();
+		for (int y=0; y<length; y++)
+		{
+			masks[y] = combine(threeBits(above, y), threeBits(at, y), 
+				threeBits(below, y));
+		}
 	}
 	
 }
@@ -0,0 +1,356 @@
+package data;
+
+import java.util.Arrays;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Flow Field class
+ * works out, once per tick, how far every cell of the grid is from the
+ * nearest human, so all the zombies can head towards humans they can not
+ * see without each of them searching on its own. The distance is the
+ * number of moves a critter needs when it can move to any of its 8
+ * neighbours (the largest of the x and y distances), and the grid wraps
+ * around in both directions as it does in Interaction.
+ *
+ * The distances are a distance transform done in two passes, each taking
+ * time in proportion to the number of cells. The first pass finds, along
+ * each row x, the distance in y to the nearest human in that row. The
+ * second pass goes down each column y and, for each x, takes the best of
+ * those row distances with the x distance to that row (the lower envelope
+ * of Meijster, Roerdink and Hesselink's linear time algorithm). The
+ * column is read three times over so the nearest human may be on the
+ * other side of the wrap.
+ *
+ * Every row of the first pass and every column of the second is
+ * independent, so each pass is split into bands, one per thread. The
+ * threads are started once and wait on a barrier between ticks, and the
+ * calling thread works on the first band itself.
+ */
+public class FlowField
+{
+	//the distance of a cell with no human anywhere in the grid
+	public static final int UNREACHED = Integer.MAX_VALUE / 4;
+
+	private int width;
+	private int length;
+
+	//the distances of the first pass, then of both
+	private int[][] rowDistance;
+	private int[][] distance;
+
+	//the human counts being read while the passes run
+	private int[][] humans;
+
+	//the lower envelope of each band's column, 3 times the width long
+	private int[][] columnValues;
+	private int[][] envelope;
+	private int[][] envelopeStart;
+
+	//the threads working on the bands after the first
+	private Thread[] workers;
+	private CyclicBarrier barrier;
+	private volatile boolean running = true;
+
+	/**
+	 * Creates a flow field for a grid.
+	 *
+	 * @param width - the number of x values in the environment.
+	 * @param length - the number of y values in the environment.
+	 * @param bands - the number of threads each pass is split between.
+	 */
+	public FlowField(int width, int length, int bands)
+	{
+		if (width < 1 || length < 1)
+		{
+			throw new IllegalArgumentException("The size of the grid must be positive.");
+		}
+		if (bands < 1)
+		{
+			throw new IllegalArgumentException("There must be at least one band.");
+		}
+		this.width = width;
+		this.length = length;
+		bands = Math.min(bands, Math.min(width, length));
+
+		rowDistance = new int[width][length];
+		distance = new int[width][length];
+		columnValues = new int[bands][3 * width];
+		envelope = new int[bands][3 * width];
+		envelopeStart = new int[bands][3 * width];
+		for (int x=0; x<width; x++)
+		{
+			Arrays.fill(distance[x], UNREACHED);
+		}
+
+		workers = new Thread[bands - 1];
+		if (workers.length > 0)
+		{
+			barrier = new CyclicBarrier(bands);
+			for (int k=0; k<workers.length; k++)
+			{
+				final int band = k + 1;
+				workers[k] = new Thread(new Runnable()
+				{
+					public void run()
+					{
+						work(band);
+					}
+				}, "flow field " + band);
+				workers[k].setDaemon(true);
+				workers[k].start();
+			}
+		}
+	}
+
+	/**
+	 * Works out the distances from the humans in the environment as it is
+	 * now. Returns once both passes are done.
+	 *
+	 * @param environment - the environment, the same size as the field.
+	 */
+	public void compute(Environment environment)
+	{
+		if (environment.getWidth() != width || environment.getLength() != length)
+		{
+			throw new IllegalArgumentException("The environment is not the size of the field.");
+		}
+		humans = environment.getHumanEnvironment();
+		if (workers.length == 0)
+		{
+			rowPass(0, width);
+			columnPass(0, 0, length);
+			return;
+		}
+
+		//starts the workers, then meets them between and after the passes
+		await();
+		rowPass(0, bandEnd(0, width));
+		await();
+		columnPass(0, 0, bandEnd(0, length));
+		await();
+	}
+
+	/**
+	 * Getter for the distance from a cell to the nearest human
+	 * @param x - x coordinate
+	 * @param y - y coordinate
+	 * @return - the number of moves, 0 on a human, or UNREACHED if there
+	 * are no humans
+	 */
+	public int getDistance(int x, int y)
+	{
+		return distance[x][y];
+	}
+
+	/**
+	 * Getter for the way towards the nearest humans from a cell
+	 * @param x - x coordinate
+	 * @param y - y coordinate
+	 * @return - a mask with bit i set if neighbour i is nearer to a human
+	 * than the cell, from 0 (x-1, y-1) clockwise to 7 (x-1, y), the order
+	 * Interaction reads neighbours in
+	 */
+	public int getFlowMask(int x, int y)
+	{
+		int here = distance[x][y];
+		int xMinusOne = x == 0 ? width - 1 : x - 1;
+		int xPlusOne = x == width - 1 ? 0 : x + 1;
+		int yMinusOne = y == 0 ? length - 1 : y - 1;
+		int yPlusOne = y == length - 1 ? 0 : y + 1;
+
+		int mask = 0;
+		if (distance[xMinusOne][yMinusOne] < here) mask |= 1;
+		if (distance[x][yMinusOne] < here) mask |= 2;
+		if (distance[xPlusOne][yMinusOne] < here) mask |= 4;
+		if (distance[xPlusOne][y] < here) mask |= 8;
+		if (distance[xPlusOne][yPlusOne] < here) mask |= 16;
+		if (distance[x][yPlusOne] < here) mask |= 32;
+		if (distance[xMinusOne][yPlusOne] < here) mask |= 64;
+		if (distance[xMinusOne][y] < here) mask |= 128;
+		return mask;
+	}
+
+	/**
+	 * Stops the worker threads. The field can not be computed after this.
+	 */
+	public void close()
+	{
+		running = false;
+		for (int k=0; k<workers.length; k++)
+		{
+			workers[k].interrupt();
+		}
+	}
+
+	/**
+	 * The loop of a worker thread: one band of each pass per tick.
+	 */
+	private void work(int band)
+	{
+		while (running)
+		{
+			if (!await())
+			{
+				return;
+			}
+			rowPass(bandStart(band, width), bandEnd(band, width));
+			await();
+			columnPass(band, bandStart(band, length), bandEnd(band, length));
+			await();
+		}
+	}
+
+	/**
+	 * Waits for every thread to reach the barrier.
+	 * @return - false if the field was closed while waiting.
+	 */
+	private boolean await()
+	{
+		try
+		{
+			barrier.await();
+			return true;
+		}
+		catch (InterruptedException e)
+		{
+			return false;
+		}
+		catch (BrokenBarrierException e)
+		{
+			return false;
+		}
+	}
+
+	//the first row or column of a band
+	private int bandStart(int band, int size)
+	{
+		return band * size / (workers.length + 1);
+	}
+
+	//one past the last row or column of a band
+	private int bandEnd(int band, int size)
+	{
+		return (band + 1) * size / (workers.length + 1);
+	}
+
+	/**
+	 * The first pass: the distance along y to the nearest human in the
+	 * same row, for the rows from start up to end.
+	 */
+	private void rowPass(int start, int end)
+	{
+		for (int x=start; x<end; x++)
+		{
+			int[] row = rowDistance[x];
+			int[] count = humans[x];
+			Arrays.fill(row, UNREACHED);
+
+			//twice round the row each way, so the wrap is seen
+			int run = UNREACHED;
+			for (int k=0; k<2*length; k++)
+			{
+				int y = k < length ? k : k - length;
+				run = count[y] > 0 ? 0 : Math.min(run + 1, UNREACHED);
+				if (run < row[y])
+				{
+					row[y] = run;
+				}
+			}
+			run = UNREACHED;
+			for (int k=2*length-1; k>=0; k--)
+			{
+				int y = k < length ? k : k - length;
+				run = count[y] > 0 ? 0 : Math.min(run + 1, UNREACHED);
+				if (run < row[y])
+				{
+					row[y] = run;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The second pass, for the columns from start up to end.
+	 */
+	private void columnPass(int band, int start, int end)
+	{
+		int[] g = columnValues[band];
+		int[] s = envelope[band];
+		int[] t = envelopeStart[band];
+		int n = 3 * width;
+
+		for (int y=start; y<end; y++)
+		{
+			for (int x=0; x<width; x++)
+			{
+				int value = rowDistance[x][y];
+				g[x] = value;
+				g[x + width] = value;
+				g[x + 2 * width] = value;
+			}
+
+			//the rows whose cones make up the lower envelope, and where
+			//each one starts to be the lowest
+			int q = 0;
+			s[0] = 0;
+			t[0] = 0;
+			for (int u=1; u<n; u++)
+			{
+				while (q >= 0 && cone(t[q], s[q], g) > cone(t[q], u, g))
+				{
+					q--;
+				}
+				if (q < 0)
+				{
+					q = 0;
+					s[0] = u;
+				}
+				else
+				{
+					int w = 1 + separation(s[q], u, g);
+					if (w < n)
+					{
+						q++;
+						s[q] = u;
+						t[q] = w;
+					}
+				}
+			}
+
+			//reads the envelope back, keeping the middle copy of the column
+			for (int u=n-1; u>=0; u--)
+			{
+				if (u >= width && u < 2 * width)
+				{
+					distance[u - width][y] = Math.min(cone(u, s[q], g), UNREACHED);
+				}
+				if (u == t[q])
+				{
+					q--;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The distance to x of the humans in the row i
+	 */
+	private static int cone(int x, int i, int[] g)
+	{
+		return Math.max(Math.abs(x - i), g[i]);
+	}
+
+	/**
+	 * The last x (i &lt; u) at which row i's cone is still no higher
+	 * than row u's
+	 */
+	private static int separation(int i, int u, int[] g)
+	{
+		if (g[i] <= g[u])
+		{
+			return Math.max(i + g[u], (i + u) / 2);
+		}
+		return Math.min(u - g[i], (i + u) / 2);
+	}
+}
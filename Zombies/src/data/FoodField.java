@@ -0,0 +1,331 @@
+package data;
+
+import java.util.Random;
+
+/**
+ * Food Field class
+ * decides where food appears each tick and puts it in the Environment.
+ * There are three ways food can appear:
+ *
+ * UNIFORM - up to spawnRate pieces a tick, each on a random cell, as the
+ * simulation has always done.
+ *
+ * CLUSTERED - up to spawnRate pieces a tick, each on a random cell near
+ * one of a few fixed centres, so food is plentiful in some places and
+ * missing from others.
+ *
+ * REGROWING - food only grows in a few fixed patches around the centres.
+ * Each tick every patch cell holding less than the capacity grows one
+ * more piece with the regrowth chance, so a patch that is grazed bare
+ * comes back slowly and one left alone fills up and stops.
+ *
+ * A tick's food is first chosen into a list of cells and then added to
+ * the food grid in one pass. Every cell that gets food is marked changed
+ * in the Environment, so the viewer redraws it with the other changed
+ * cells, and the list can also be read back until the next tick.
+ *
+ * The centres are drawn once, when the field is made. A Checkpoint saves
+ * them, and a resumed run makes its field from the saved centres so the
+ * clusters and patches stay where they were. The food already grown on
+ * the patches is in the saved food grid.
+ */
+public class FoodField
+{
+	//the ways food can appear
+	public static final int UNIFORM = 0;
+	public static final int CLUSTERED = 1;
+	public static final int REGROWING = 2;
+
+	private int width;
+	private int length;
+	private int model;
+	private Random r;
+
+	//the most food that can appear in a tick, for UNIFORM and CLUSTERED
+	private int spawnRate;
+
+	//the centres of the clusters and patches, each as x * length + y,
+	//and how far food appears from them
+	private int[] centres;
+	private int radius;
+
+	//the cells of the patches, each as x * length + y, for REGROWING
+	private int[] patchCells;
+	private int capacity;
+	private double regrowth;
+
+	//the cells that got food this tick, a cell once for each piece
+	private int[] spawned = new int[64];
+	private int spawnedCount = 0;
+
+	/**
+	 * Creates a food field.
+	 *
+	 * @param width - the number of x values in the environment.
+	 * @param length - the number of y values in the environment.
+	 * @param model - UNIFORM, CLUSTERED or REGROWING.
+	 * @param spawnRate - one more than the most food that can appear in a
+	 * tick, for UNIFORM and CLUSTERED.
+	 * @param clusters - the number of clusters or patches.
+	 * @param radius - how far from its centre a cluster or patch reaches.
+	 * @param capacity - the most food a patch cell grows.
+	 * @param regrowth - the chance a patch cell grows a piece in a tick.
+	 * @param r - the random number generator.
+	 */
+	public FoodField(int width, int length, int model, int spawnRate, int clusters,
+		int radius, int capacity, double regrowth, Random r)
+	{
+		this(width, length, model, spawnRate, chooseCentres(width, length, clusters, r),
+			radius, capacity, regrowth, r);
+	}
+
+	/**
+	 * Creates a food field around centres that were chosen before, such as
+	 * those saved in a checkpoint.
+	 *
+	 * @param width - the number of x values in the environment.
+	 * @param length - the number of y values in the environment.
+	 * @param model - UNIFORM, CLUSTERED or REGROWING.
+	 * @param spawnRate - one more than the most food that can appear in a
+	 * tick, for UNIFORM and CLUSTERED.
+	 * @param centres - the centres of the clusters or patches, each as
+	 * x * length + y.
+	 * @param radius - how far from its centre a cluster or patch reaches.
+	 * @param capacity - the most food a patch cell grows.
+	 * @param regrowth - the chance a patch cell grows a piece in a tick.
+	 * @param r - the random number generator.
+	 */
+	public FoodField(int width, int length, int model, int spawnRate, int[] centres,
+		int radius, int capacity, double regrowth, Random r)
+	{
+		if (model != UNIFORM && model != CLUSTERED && model != REGROWING)
+		{
+			throw new IllegalArgumentException("Unknown food model " + model + ".");
+		}
+		if (spawnRate < 1 || centres.length < 1 || radius < 0 || capacity < 1)
+		{
+			throw new IllegalArgumentException("The spawn rate, clusters and capacity " +
+				"must be positive and the radius must not be negative.");
+		}
+		if (regrowth < 0 || regrowth > 1)
+		{
+			throw new IllegalArgumentException("The regrowth must be between 0 and 1.");
+		}
+		this.width = width;
+		this.length = length;
+		this.model = model;
+		this.spawnRate = spawnRate;
+		this.radius = radius;
+		this.capacity = capacity;
+		this.regrowth = regrowth;
+		this.r = r;
+
+		for (int i=0; i<centres.length; i++)
+		{
+			if (centres[i] < 0 || centres[i] >= width * length)
+			{
+				throw new IllegalArgumentException("The centre " + centres[i] +
+					" is outside the environment.");
+			}
+		}
+		this.centres = centres.clone();
+		if (model == REGROWING)
+		{
+			findPatchCells();
+		}
+	}
+
+	/**
+	 * Adds this tick's food to the environment.
+	 *
+	 * @param environment - the environment, the same size as the field.
+	 */
+	public void spawn(Environment environment)
+	{
+		spawnedCount = 0;
+		if (model == REGROWING)
+		{
+			chooseRegrowth(environment.getFoodEnvironment());
+		}
+		else
+		{
+			int count = r.nextInt(spawnRate);
+			for (int i=0; i<count; i++)
+			{
+				add(model == UNIFORM ? r.nextInt(width * length) : nearCentre());
+			}
+		}
+
+		//puts the whole tick's food in at once
+		int[][] food = environment.getFoodEnvironment();
+		for (int i=0; i<spawnedCount; i++)
+		{
+			int x = spawned[i] / length;
+			int y = spawned[i] - x * length;
+			food[x][y]++;
+			environment.markChanged(x, y);
+		}
+	}
+
+	/**
+	 * Getter for the number of pieces of food added by the last spawn
+	 * @return - the number of pieces
+	 */
+	public int getSpawnedCount()
+	{
+		return spawnedCount;
+	}
+
+	/**
+	 * Getter for a cell food was added to by the last spawn
+	 * @param index - from 0 to getSpawnedCount()-1
+	 * @return - the cell as x * length + y
+	 */
+	public int getSpawnedCell(int index)
+	{
+		return spawned[index];
+	}
+
+	/**
+	 * Getter for the centres of the clusters or patches
+	 * @return - a copy of the centres, each as x * length + y
+	 */
+	public int[] getCentres()
+	{
+		return centres.clone();
+	}
+
+	/**
+	 * Getter for the number of patch cells
+	 * @return - the number of cells food regrows on, 0 unless REGROWING
+	 */
+	public int getPatchSize()
+	{
+		return patchCells == null ? 0 : patchCells.length;
+	}
+
+	/**
+	 * Draws the centres of the clusters or patches on random cells
+	 */
+	private static int[] chooseCentres(int width, int length, int clusters, Random r)
+	{
+		if (clusters < 1)
+		{
+			throw new IllegalArgumentException("The clusters must be positive.");
+		}
+		int[] centres = new int[clusters];
+		for (int i=0; i<clusters; i++)
+		{
+			centres[i] = r.nextInt(width) * length + r.nextInt(length);
+		}
+		return centres;
+	}
+
+	/**
+	 * Picks a random cell near a random centre, wrapping around the edges
+	 */
+	private int nearCentre()
+	{
+		int centre = centres[r.nextInt(centres.length)];
+		int x = centre / length + r.nextInt(2 * radius + 1) - radius;
+		int y = centre % length + r.nextInt(2 * radius + 1) - radius;
+		x = ((x % width) + width) % width;
+		y = ((y % length) + length) % length;
+		return x * length + y;
+	}
+
+	/**
+	 * Picks the patch cells that regrow this tick. Rather than drawing a
+	 * random number for every patch cell, it draws how many cells to skip
+	 * until the next one that regrows, so the time taken is in proportion
+	 * to the food grown.
+	 */
+	private void chooseRegrowth(int[][] food)
+	{
+		if (regrowth <= 0)
+		{
+			return;
+		}
+		double logMiss = Math.log(1 - regrowth);
+		int i = -1;
+		while (true)
+		{
+			if (regrowth >= 1)
+			{
+				i++;
+			}
+			else
+			{
+				double skip = Math.floor(Math.log(1 - r.nextDouble()) / logMiss);
+				if (skip >= patchCells.length - i)
+				{
+					return;
+				}
+				i += 1 + (int)skip;
+			}
+			if (i >= patchCells.length)
+			{
+				return;
+			}
+			int cell = patchCells[i];
+			int x = cell / length;
+			if (food[x][cell - x * length] < capacity)
+			{
+				add(cell);
+			}
+		}
+	}
+
+	/**
+	 * Finds the cells within the radius of any centre, each once
+	 */
+	private void findPatchCells()
+	{
+		boolean[] inPatch = new boolean[width * length];
+		int count = 0;
+		for (int c=0; c<centres.length; c++)
+		{
+			int cx = centres[c] / length;
+			int cy = centres[c] % length;
+			for (int dx=-radius; dx<=radius; dx++)
+			{
+				for (int dy=-radius; dy<=radius; dy++)
+				{
+					int x = (((cx + dx) % width) + width) % width;
+					int y = (((cy + dy) % length) + length) % length;
+					if (!inPatch[x * length + y])
+					{
+						inPatch[x * length + y] = true;
+						count++;
+					}
+				}
+			}
+		}
+
+		patchCells = new int[count];
+		count = 0;
+		for (int cell=0; cell<inPatch.length; cell++)
+		{
+			if (inPatch[cell])
+			{
+				patchCells[count] = cell;
+				count++;
+			}
+		}
+	}
+
+	/**
+	 * Adds a cell to this tick's list
+	 */
+	private void add(int cell)
+	{
+		if (spawnedCount == spawned.length)
+		{
+			int[] bigger = new int[2 * spawned.length];
+			System.arraycopy(spawned, 0, bigger, 0, spawnedCount);
+			spawned = bigger;
+		}
+		spawned[spawnedCount] = cell;
+		spawnedCount++;
+	}
+}
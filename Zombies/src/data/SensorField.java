@@ -0,0 +1,211 @@
+package data;
+
+/**
+ * Sensor Field class
+ * lets critters sense further than the 8 cells around them. Each of the
+ * 8 inputs Interaction gives a critter's network becomes the number of
+ * food, humans or zombies in a whole part of the square of cells within
+ * the sensor radius, the part lying in that input's direction: the 4
+ * corner blocks for the diagonals and the 4 strips along the x and y
+ * lines through the critter for the others. Together the 8 parts cover
+ * the square without the critter's own cell, and with a radius of 1
+ * they are just the 8 cells around it.
+ *
+ * Each part is a rectangle, so its count comes from a summed area table
+ * of the grid with 4 look ups however large the radius is. A rectangle
+ * that goes over the edge of the wrapped grid is split into at most 4
+ * that do not. The tables hold the grid as it was when update was last
+ * called, once a tick, so every critter senses the same snapshot. With
+ * the environment's change tracking on, update only rebuilds the table
+ * rows from the first changed x down, as the rows above it are still
+ * right.
+ */
+public class SensorField
+{
+	private int width;
+	private int length;
+	private int radius;
+
+	//the summed area tables, (width + 1) by (length + 1). Entry [x][y]
+	//is the count in all the cells above and to the left of x, y.
+	private int[][] foodTable;
+	private int[][] humanTable;
+	private int[][] zombieTable;
+
+	//false until the tables have been built once
+	private boolean built = false;
+
+	/**
+	 * Creates the tables for a grid.
+	 *
+	 * @param width - the number of x values in the environment.
+	 * @param length - the number of y values in the environment.
+	 * @param radius - how many cells away critters can sense, at least 1.
+	 */
+	public SensorField(int width, int length, int radius)
+	{
+		if (radius < 1)
+		{
+			throw new IllegalArgumentException("The sensor radius must be at least 1.");
+		}
+		if (2 * radius + 1 > width || 2 * radius + 1 > length)
+		{
+			throw new IllegalArgumentException("The sensor square must fit in the grid.");
+		}
+		this.width = width;
+		this.length = length;
+		this.radius = radius;
+		foodTable = new int[width + 1][length + 1];
+		humanTable = new int[width + 1][length + 1];
+		zombieTable = new int[width + 1][length + 1];
+	}
+
+	/**
+	 * Brings the tables up to date with the environment. Call it before
+	 * the environment's changes are cleared, so it can tell which rows
+	 * changed.
+	 *
+	 * @param environment - the environment, the same size as the field.
+	 */
+	public void update(Environment environment)
+	{
+		if (environment.getWidth() != width || environment.getLength() != length)
+		{
+			throw new IllegalArgumentException("The environment is not the size of the field.");
+		}
+
+		int firstRow = 0;
+		if (built && environment.isTrackingChanges())
+		{
+			firstRow = width;
+			for (int i=0; i<environment.getChangedCount(); i++)
+			{
+				firstRow = Math.min(firstRow, environment.getChangedCell(i) / length);
+			}
+		}
+		build(foodTable, environment.getFoodEnvironment(), firstRow);
+		build(humanTable, environment.getHumanEnvironment(), firstRow);
+		build(zombieTable, environment.getZombieEnvironment(), firstRow);
+		built = true;
+	}
+
+	/**
+	 * Fills a critter's 8 inputs with the food around it
+	 * @param x - x coordinate of the critter
+	 * @param y - y coordinate of the critter
+	 * @param inputArray - filled from 0 (towards x-1, y-1) clockwise to
+	 * 7 (towards x-1, y)
+	 */
+	public void getFoodInputs(int x, int y, double[] inputArray)
+	{
+		sense(foodTable, x, y, inputArray);
+	}
+
+	/**
+	 * Fills a critter's 8 inputs with the humans around it
+	 * @param x - x coordinate of the critter
+	 * @param y - y coordinate of the critter
+	 * @param inputArray - filled from 0 (towards x-1, y-1) clockwise to
+	 * 7 (towards x-1, y)
+	 */
+	public void getHumanInputs(int x, int y, double[] inputArray)
+	{
+		sense(humanTable, x, y, inputArray);
+	}
+
+	/**
+	 * Fills a critter's 8 inputs with the zombies around it
+	 * @param x - x coordinate of the critter
+	 * @param y - y coordinate of the critter
+	 * @param inputArray - filled from 0 (towards x-1, y-1) clockwise to
+	 * 7 (towards x-1, y)
+	 */
+	public void getZombieInputs(int x, int y, double[] inputArray)
+	{
+		sense(zombieTable, x, y, inputArray);
+	}
+
+	/**
+	 * Getter for the sensor radius
+	 * @return - how many cells away critters can sense
+	 */
+	public int getRadius()
+	{
+		return radius;
+	}
+
+	/**
+	 * Rebuilds a table from a row on
+	 */
+	private void build(int[][] table, int[][] counts, int firstRow)
+	{
+		for (int x=firstRow; x<width; x++)
+		{
+			int[] above = table[x];
+			int[] row = table[x + 1];
+			int[] count = counts[x];
+			int rowSum = 0;
+			for (int y=0; y<length; y++)
+			{
+				rowSum += count[y];
+				row[y + 1] = above[y + 1] + rowSum;
+			}
+		}
+	}
+
+	/**
+	 * Fills the 8 inputs from one table
+	 */
+	private void sense(int[][] table, int x, int y, double[] inputArray)
+	{
+		int r = radius;
+		inputArray[0] = sum(table, x - r, y - r, r, r);
+		inputArray[1] = sum(table, x, y - r, 1, r);
+		inputArray[2] = sum(table, x + 1, y - r, r, r);
+		inputArray[3] = sum(table, x + 1, y, r, 1);
+		inputArray[4] = sum(table, x + 1, y + 1, r, r);
+		inputArray[5] = sum(table, x, y + 1, 1, r);
+		inputArray[6] = sum(table, x - r, y + 1, r, r);
+		inputArray[7] = sum(table, x - r, y, r, 1);
+	}
+
+	/**
+	 * The count in a rectangle of the wrapped grid
+	 * @param x - first x, may be off either edge
+	 * @param y - first y, may be off either edge
+	 * @param rows - the number of x values, no more than the width
+	 * @param columns - the number of y values, no more than the length
+	 */
+	private int sum(int[][] table, int x, int y, int rows, int columns)
+	{
+		x = ((x % width) + width) % width;
+		y = ((y % length) + length) % length;
+
+		//splits the rectangle where it goes over the edges
+		int rowsBefore = Math.min(rows, width - x);
+		int columnsBefore = Math.min(columns, length - y);
+		int total = block(table, x, y, rowsBefore, columnsBefore);
+		if (rowsBefore < rows)
+		{
+			total += block(table, 0, y, rows - rowsBefore, columnsBefore);
+		}
+		if (columnsBefore < columns)
+		{
+			total += block(table, x, 0, rowsBefore, columns - columnsBefore);
+			if (rowsBefore < rows)
+			{
+				total += block(table, 0, 0, rows - rowsBefore, columns - columnsBefore);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * The count in a rectangle that is inside the grid
+	 */
+	private static int block(int[][] table, int x, int y, int rows, int columns)
+	{
+		return table[x + rows][y + columns] - table[x][y + columns]
+			- table[x + rows][y] + table[x][y];
+	}
+}
@@ -22,5 +22,100 @@ public final class BioVariables
 	public static final int GRAPHICS_WIDTH = 20;
 	public static final int GRAPHICS_LENGTH = 20;
 	public static final int GRAPHICS_DELAY = 10;
+
+	public static final int CHECKPOINT_INTERVAL = 0;
+	public static final String CHECKPOINT_FILE = "zombies.checkpoint";
+
+	//file the per generation statistics are appended to, null for none
+	public static final String METRICS_FILE = null;
+
+	//the number of recent generations whose statistics are kept for
+	//live readers such as the window title, 0 for none
+	public static final int HISTORY_SIZE = 0;
+
+	//the fewest milliseconds between two updates of the window title
+	public static final int TITLE_INTERVAL = 250;
+
+	//directory of PNG frames (or file of raw RGB frames) saved every so
+	//many generations, null for none, and the size of a cell in pixels
+	public static final String FRAME_FILE = null;
+	public static final boolean FRAME_PNG = true;
+	public static final int FRAME_INTERVAL = 10;
+	public static final int FRAME_CELL_SIZE = 4;
+
+	//times the phases of every generation, and how often to print them
+	public static final boolean PHASE_TIMING = false;
+	public static final int PHASE_SUMMARY_INTERVAL = 100;
+
+	//islands evolved side by side, migrating the best few every so often
+	public static final int ISLAND_COUNT = 4;
+	public static final int MIGRATION_INTERVAL = 10;
+	public static final int MIGRANTS = 2;
+
+	//how each island evolves (0 the factory's strategy, 1 steady state,
+	//2 mu + lambda), the critters steady state replaces each generation
+	//and the children mu + lambda makes, 0 for as many as there are parents
+	public static final int ISLAND_STRATEGY = 0;
+	public static final int STEADY_STATE_REPLACEMENTS = 10;
+	public static final int MU_PLUS_LAMBDA_CHILDREN = 0;
+
+	//keeps the critters' genomes off the heap, in an arena of so many slots
+	public static final boolean GENOME_ARENA = false;
+	public static final int GENOME_ARENA_CAPACITY = 1000000;
+
+	//lets critters with nothing around them sleep, for at most so many ticks
+	public static final boolean EVENT_SCHEDULER = false;
+	public static final int SCHEDULER_MAX_SLEEP = 32;
+
+	//runs each genome's network once for every neighbourhood and keeps
+	//the moves in a table instead of running it every tick
+	public static final boolean COMPILED_BEHAVIOUR = false;
+	public static final int MOVE_TABLE_CAPACITY = 100000;
+
+	//keeps packed presence bits of every cell, so compiled moves read
+	//a critter's 8 neighbours with a few shifts
+	public static final boolean BITPLANE_SENSING = false;
+
+	//zombies with no human next to them follow the distances to the
+	//nearest humans, worked out once a tick by so many threads
+	public static final boolean FLOW_FIELD = false;
+	public static final int FLOW_FIELD_BANDS = 4;
+
+	//how many cells away critters can sense food and humans, 1 for
+	//just the cells next to them
+	public static final int SENSOR_RADIUS = 1;
+
+	//puts each tick's food in through a FoodField, in one of its models
+	//(0 uniform, 1 clustered, 2 regrowing patches). Clusters and patches
+	//reach so far from their centres, and patch cells grow up to the
+	//capacity, a piece at a time with the regrowth chance.
+	public static final boolean FOOD_FIELD = false;
+	public static final int FOOD_MODEL = 0;
+	public static final int FOOD_CLUSTERS = 4;
+	public static final int FOOD_CLUSTER_RADIUS = 2;
+	public static final int FOOD_CAPACITY = 3;
+	public static final double FOOD_REGROWTH = 0.05;
+
+	//fights all the duels of a tick once everyone has moved, cell by
+	//cell, instead of each zombie fighting as it moves
+	public static final boolean BATCHED_DUELS = false;
+
+	//breeds the humans that met at the end of the tick, reusing the
+	//crossover and writing the children's genomes a long at a time
+	public static final boolean BATCHED_BIRTHS = false;
+
+	//culls the critters over these caps at the end of each tick, for
+	//each species and for each species in one cell (Integer.MAX_VALUE
+	//for no cap), choosing the weakest (0), at random (1) or the oldest (2)
+	public static final boolean CARRYING_CAPACITY = false;
+	public static final int HUMAN_CAP = 5000;
+	public static final int ZOMBIE_CAP = 5000;
+	public static final int CELL_CAP = 8;
+	public static final int CULL_POLICY = 0;
+
+	//reuses the critters and chromosomes that die for the ones that are
+	//born, keeping up to so many of each kind
+	public static final boolean PHENOTYPE_POOL = false;
+	public static final int PHENOTYPE_POOL_CAPACITY = 10000;
 	
 }
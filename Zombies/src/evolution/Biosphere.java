@@ -1,8 +1,17 @@
 package evolution;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 
+import javax.swing.SwingUtilities;
+
+import observe.FrameExporter;
 import observe.Interaction;
+import observe.MetricsExporter;
+import observe.PhaseTimer;
+import observe.TickHistory;
+import observe.TickStatistics;
 import critter.*;
 import chromosome.*;
 import fitness.*;
@@ -24,7 +33,8 @@ public class Biosphere
 	/**
 	 * Main class, uses the Factory to call
 	 * all the Evolution variables and methods
-	 * @param args
+	 * @param args - optionally the path of a checkpoint file to
+	 * resume the simulation from
 	 */
 	public static void main(String[] args) 
 	{
@@ -61,9 +71,12 @@ public class Biosphere
 		filePath[1] = "H:\\My Pictures\\human1.JPG";
 		
 		//New simulation grid for the graphics
-		ZombieApocalypseWorldViewer world = new ZombieApocalypseWorldViewer(
+		final ZombieApocalypseWorldViewer world = new ZombieApocalypseWorldViewer(
 				BioVariables.GRAPHICS_WIDTH,BioVariables.GRAPHICS_LENGTH);
 		
+		//the human image is loaded and scaled once, not every generation
+		world.setCritterImage(filePath[0]);
+		
 		//Random number generator
 		Random r=ALifeRandom.getRandomNumberGenerator();
 		
@@ -113,7 +126,7 @@ public class Biosphere
         Interaction interact = new Interaction();
        
         //Time delay for the graphics between redisplays
-		long timeDelay = BioVariables.GRAPHICS_DELAY;
+		final long timeDelay = BioVariables.GRAPHICS_DELAY;
 		
 		//int value for the while loop
 		int i = 1;
@@ -136,123 +149,217 @@ public class Biosphere
 			zPop.getPhenotype(n).setYloc(r.nextInt(BioVariables.GRAPHICS_LENGTH));
         }
         
-        System.out.println("BEGIN SIMULATION");
-        
-        	//runs through as many as the specified max generation states
-			while(i <= BioVariables.MAX_GENERATION)
+        //Periodic snapshots of the simulation, and resuming from one
+        Checkpoint checkpoint = new Checkpoint(new File(BioVariables.CHECKPOINT_FILE));
+        int[] foodCentres = null;
+        if (args.length > 0)
+        {
+        	Checkpoint resumeFrom = new Checkpoint(new File(args[0]));
+        	try
         	{
-				//System.out.println("here1");
-        		
-				//Add a random number of food each generation at a random position
-        		for (int i2=0; i2 < r.nextInt(BioVariables.MAX_FOOD); i2++)
-        		{
-        			int currX = r.nextInt(BioVariables.GRAPHICS_WIDTH);
-        			int currY = r.nextInt(BioVariables.GRAPHICS_LENGTH);
-            		world.addFoodToGrid(currX, currY);
-            		environment.addFood(currX, currY);
-        		}
-        		
-        		//Add the humans to grid at the given location
-        		//Also, add a count of that phenotype at that location to the environment
-        		//and add that phenotype to the environment.
-        		for(int i2 = 0; i2 < hPop.getSize();i2++)
+        		i = resumeFrom.restore(hPop, zPop, environment) + 1;
+        	}
+        	catch (IOException e)
+        	{
+        		System.out.println("Could not resume from " + args[0] + ": " + e.getMessage());
+        		System.exit(1);
+        	}
+        	
+        	//the generator was replaced with the saved one
+        	r = ALifeRandom.getRandomNumberGenerator();
+        	foodCentres = resumeFrom.getFoodCentres();
+        	
+        	//puts the saved food back on the grid
+        	for (int x=0; x<foodEnvironment.length; x++)
+        	{
+        		for (int y=0; y<foodEnvironment[x].length; y++)
         		{
-        			world.setCritterImage(filePath[0]);
-        			world.addCritterToGrid(hPop.getPhenotype(i2).getXloc(), hPop.getPhenotype(i2).getYloc());
-        			environment.addHuman(hPop.getPhenotype(i2).getXloc(), hPop.getPhenotype(i2).getYloc());
-        			environment.addHumanPhenotype(hPop.getPhenotype(i2), hPop.getPhenotype(i2).getXloc(),
-        					hPop.getPhenotype(i2).getYloc());
-        			
-        			
+        			if (foodEnvironment[x][y] > 0)
+        			{
+        				world.addFoodToGrid(x, y);
+        			}
         		}
-        		//Add the zombies to grid at the given location
-        		//Also, add a count of that phenotype at that location to the environment
-        		//and add that phenotype to the environment.
-        		for(int i2 = 0; i2<zPop.getSize(); i2++)
+        	}
+        	System.out.println("RESUMED AT GENERATION " + i);
+        }
+        
+        //Optionally writes the statistics of every generation to a file
+        MetricsExporter metrics = null;
+        TickStatistics stats = interact.getStatistics();
+        if (BioVariables.METRICS_FILE != null)
+        {
+        	try
+        	{
+        		metrics = new MetricsExporter(new File(BioVariables.METRICS_FILE));
+        	}
+        	catch (IOException e)
+        	{
+        		System.out.println("Metrics disabled: " + e.getMessage());
+        	}
+        }
+        
+        //Optionally keeps the statistics of the last generations for live
+        //readers, here the window title
+        TickHistory history = null;
+        double[] titleRow = new double[TickHistory.FIELDS];
+        long nextTitle = 0;
+        if (BioVariables.HISTORY_SIZE > 0)
+        {
+        	history = new TickHistory(BioVariables.HISTORY_SIZE);
+        }
+        
+        //Optionally saves a picture of the grid every so many generations
+        FrameExporter frames = null;
+        if (BioVariables.FRAME_FILE != null)
+        {
+        	try
+        	{
+        		frames = new FrameExporter(new File(BioVariables.FRAME_FILE),
+        				BioVariables.FRAME_PNG, BioVariables.GRAPHICS_WIDTH,
+        				BioVariables.GRAPHICS_LENGTH, BioVariables.FRAME_CELL_SIZE);
+        	}
+        	catch (IOException e)
+        	{
+        		System.out.println("Frames disabled: " + e.getMessage());
+        	}
+        }
+        
+        //Times each phase of a generation when switched on
+        PhaseTimer timer = new PhaseTimer(BioVariables.PHASE_TIMING,
+        		BioVariables.PHASE_SUMMARY_INTERVAL);
+        if (BioVariables.PHASE_TIMING)
+        {
+        	timer.register();
+        }
+        
+        //Sets up the tick and puts every human and zombie in the environment
+        Simulation simulation = new Simulation(hPop, zPop, environment, interact,
+        		timer, checkpoint, foodCentres);
+        
+        //Redraws only the cells that changed since the last generation.
+        //A zombie is drawn over a human and a human over food.
+        simulation.setDisplay(new Simulation.Display()
+        {
+        	public void redraw(Environment environment)
+        	{
+        		for (int i2 = 0; i2 < environment.getChangedCount(); i2++)
         		{
-        			//System.out.println(zPop.getPhenotype(i2).getXloc()+ " "+ zPop.getPhenotype(i2).getYloc());
-        			
-        			world.addZombieToGrid(zPop.getPhenotype(i2).getXloc(), zPop.getPhenotype(i2).getYloc());
-        			environment.addZombie(zPop.getPhenotype(i2).getXloc(), zPop.getPhenotype(i2).getYloc());
-        			environment.addZombiePhenotype(zPop.getPhenotype(i2), zPop.getPhenotype(i2).getXloc(),
-        					zPop.getPhenotype(i2).getYloc());
-        			
+        			int cell = environment.getChangedCell(i2);
+        			int x = cell / environment.getLength();
+        			int y = cell % environment.getLength();
+        			if (environment.getZombie(x, y) > 0)
+        			{
+        				world.addZombieToGrid(x, y);
+        			}
+        			else if (environment.getHuman(x, y) > 0)
+        			{
+        				world.addCritterToGrid(x, y);
+        			}
+        			else if (environment.getFood(x, y) > 0)
+        			{
+        				world.addFoodToGrid(x, y);
+        			}
+        			else
+        			{
+        				world.removeImageFromGrid(x, y);
+        			}
         		}
+        	}
         	
+        	public void show()
+        	{
         		//time delay before placing the graphics
         		world.delay(timeDelay);
         		world.redisplay();
+        	}
+        });
+        
+        System.out.println("BEGIN SIMULATION");
+        
+        	//runs through as many as the specified max generation states
+			while(i <= BioVariables.MAX_GENERATION)
+        	{
+        		simulation.tick(i);
 
-        		//Subtracts the Zombie Phenotypes from the zombie environment then updates the 
-        		//x and y coordinates
-        		for(int i2 = 0; i2 < zPop.getSize();i2++)
-        		{	
-        			//System.out.println("The zombie current size of the zombiePopulation is" + zPop.getSize());
-        			environment.subtractZombiePhenotype(zPop.getPhenotype(i2), 
-        				zPop.getPhenotype(i2).getXloc(), zPop.getPhenotype(i2).getYloc());
-        			environment.subtractZombie(zPop.getPhenotype(i2).getXloc(), 
-        					zPop.getPhenotype(i2).getYloc());
+        		//Records the statistics of this generation
+        		if (metrics != null || history != null)
+        		{
+        			stats.measure(i, hPop, zPop);
+        		}
+        		if (metrics != null)
+        		{
+        			metrics.append(stats);
+        		}
+        		if (history != null)
+        		{
+        			history.record(stats);
         			
-        			if(environment.getZombie(zPop.getPhenotype(i2).getXloc(), 
-        					zPop.getPhenotype(i2).getYloc())<1)
+        			//the title is only changed every so often, and by the
+        			//event dispatch thread like the rest of the window
+        			long now = System.currentTimeMillis();
+        			if ((now >= nextTitle || i == BioVariables.MAX_GENERATION)
+        					&& history.readLatest(titleRow) >= 0)
         			{
-        				
-        				world.removeImageFromGrid(zPop.getPhenotype(i2).getXloc(), 
-            					zPop.getPhenotype(i2).getYloc());
-        				
+        				nextTitle = now + BioVariables.TITLE_INTERVAL;
+        				final String title = "Artificial Life Simulation - generation " +
+        						(int)titleRow[TickHistory.TICK] + ", " +
+        						(int)titleRow[TickHistory.HUMANS] + " humans, " +
+        						(int)titleRow[TickHistory.ZOMBIES] + " zombies";
+        				SwingUtilities.invokeLater(new Runnable()
+        				{
+        					public void run()
+        					{
+        						world.setTitle(title);
+        					}
+        				});
         			}
-        			//updates the x and y locations
-        			interact.updateZombie(zPop.getPhenotype(i2),environment, hPop, zPop);
         		}
         		
-        		//Remove the human from the grid at the given location
-        		//Also removes a count from the location in the environment
-        		//and removes the last phenotype at that location.
-        		//It also calls the update method to move.
-        		for(int i2 = 0; i2 < hPop.getSize();i2++)
-        		{	
-        			environment.subtractHumanPhenotype(hPop.getPhenotype(i2), 
-        				hPop.getPhenotype(i2).getXloc(), hPop.getPhenotype(i2).getYloc());
-        			environment.subtractHuman(hPop.getPhenotype(i2).getXloc(), 
-        					hPop.getPhenotype(i2).getYloc());
-        			
-        			if(environment.getHuman(hPop.getPhenotype(i2).getXloc(), 
-        					hPop.getPhenotype(i2).getYloc())<1)
-        			{
-        				world.removeImageFromGrid(hPop.getPhenotype(i2).getXloc(), 
-            					hPop.getPhenotype(i2).getYloc());
-        				
-        			}
-        			
-        			/*
-        			if(hPop.getPhenotype(i2).getStrength()<1)
-        			{
-        				System.out.println("PHENOTYPE: "+hPop.getPhenotype(i2));
-        				System.out.println("HOW MANY HUMANS: "+
-        					(environment.getHumanEnvironment())[hPop.getPhenotype(i2).getXloc()] 
-        					[hPop.getPhenotype(i2).getYloc()]);
-
-        				Phenotype critter = hPop.getPhenotype(i2);
-        				
-        				hPop.removePhenotype(critter);
-        				environment.subtractHumanPhenotype(critter,
-        						critter.getXloc(), critter.getYloc());
-        				
-        				environment.subtractHuman(critter.getXloc(), 
-        						critter.getYloc());
-        			}
-        			*/
-        			//else
-        			//{
-        				interact.updateHuman(hPop.getPhenotype(i2),environment, hPop);
-        			//}
+        		//Saves a picture of the grid
+        		if (frames != null && i % BioVariables.FRAME_INTERVAL == 0)
+        		{
+        			frames.capture(i, environment);
         		}
-
+        		
         		i++;
 			
         		
         	}
 			
+			//Makes sure the last snapshot reached the disk and stops the
+			//flow field's threads
+			simulation.close();
+			
+			//Writes the statistics still queued and closes the file
+			if (metrics != null)
+			{
+				try
+				{
+					metrics.close();
+				}
+				catch (IOException e)
+				{
+					System.out.println("Metrics failed: " + e.getMessage());
+				}
+			}
+			
+			//Writes the frames still queued
+			if (frames != null)
+			{
+				try
+				{
+					frames.close();
+				}
+				catch (IOException e)
+				{
+					System.out.println("Frames failed: " + e.getMessage());
+				}
+				if (frames.getDroppedFrames() > 0)
+				{
+					System.out.println("FRAMES DROPPED: " + frames.getDroppedFrames());
+				}
+			}
+			
 
 			//Addsthe zombies and Humans back to the grid at their new x and y coordinates
     		for (int n=0; n<hPop.getSize(); n++)
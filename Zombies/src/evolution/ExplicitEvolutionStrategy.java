@@ -15,6 +15,9 @@ import chromosome.*;
  */
 public class ExplicitEvolutionStrategy extends EvolutionStrategy
 {
+	//the critters reused from one generation to the next, or null
+	private PhenotypePool pool = null;
+	
 	/**
 	 * default constructor.
 	 */
@@ -28,6 +31,7 @@ public class ExplicitEvolutionStrategy extends EvolutionStrategy
 	public Population evolvePopulation(Population pop,
 			SelectionStrategy strategy, GeneManipulator manipulator) 
 	{
+		Phenotype best = pop.getBestPhenotype();
 		Population newPop = new Population();
 		Random r = new Random();
 		
@@ -45,16 +49,48 @@ public class ExplicitEvolutionStrategy extends EvolutionStrategy
 			
 			//creates a phenotype of the only chromosome in the
 			//array of manipulated chromosomes.
-			Phenotype phenotype = new Phenotype(manipulated[0],r.nextInt(50),r.nextInt(50), 10);
+			Phenotype phenotype;
+			if (pool != null)
+			{
+				phenotype = pool.takeHuman(manipulated[0],r.nextInt(50),r.nextInt(50), 10);
+			}
+			else
+			{
+				phenotype = new Phenotype(manipulated[0],r.nextInt(50),r.nextInt(50), 10);
+			}
 			
 			newPop.addPhenotype(phenotype);
 		}
 		//Elitist approach - implements it by keeping the best phenotype 
 		//from each generation
-		newPop.add(pop.getBestPhenotype());
+		newPop.add(best);
+		
+		//the rest of the old generation is reused for the next one. The
+		//children may share their parents' chromosomes, so those are not.
+		if (pool != null)
+		{
+			for (int i=0; i<pop.size(); i++)
+			{
+				if (pop.getPhenotype(i) != best)
+				{
+					pool.bury(pop.getPhenotype(i), false);
+				}
+			}
+			pool.recycle();
+		}
 		
 		return newPop;
 	}
 	
+	/**
+	 * Sets the pool the new generation is taken from and the old one is
+	 * given back to, or null for none. The population passed to
+	 * evolvePopulation must not be used once it returns.
+	 */
+	public void setPhenotypePool(PhenotypePool pool)
+	{
+		this.pool = pool;
+	}
+	
 }
 
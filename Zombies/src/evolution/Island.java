@@ -0,0 +1,301 @@
+package evolution;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import critter.*;
+import chromosome.Chromosome;
+import fitness.*;
+import genes.*;
+import numbers.ALifeRandom;
+
+/**
+ * Island class
+ * one sub-population of an IslandEvolutionRunner. An island evolves its
+ * own Population with its own EvolutionStrategy, SelectionStrategy,
+ * GeneManipulator and random number generator, and places its critters
+ * in its own strip of the world. Islands only meet through
+ * migration: every so many generations an island sends copies of its
+ * fittest critters to the next island and takes in the ones the previous
+ * island sent it, replacing its least fit critters.
+ *
+ * The migrants travel through a ConcurrentLinkedQueue, which never locks,
+ * so islands on different threads never wait for each other.
+ */
+public class Island implements Runnable
+{
+	//which island this is
+	private int id;
+
+	private Population population;
+	private EvolutionStrategy evolutionStrategy;
+	private SelectionStrategy selectionStrategy;
+	private GeneManipulator manipulator;
+	private FitnessFunction fitnessFunction;
+
+	//the island's own generator, used by every genetic operation
+	//done on the island's thread
+	private Random random;
+
+	//the island's part of the world
+	private int regionStart;
+	private int regionWidth;
+	private int regionLength;
+
+	//how many generations to run, how often to migrate and how many
+	//critters to send each time
+	private int generations = 0;
+	private int migrationInterval;
+	private int numMigrants;
+
+	//critters sent to this island that have not arrived yet
+	private ConcurrentLinkedQueue inbox = new ConcurrentLinkedQueue();
+
+	//the island migrants are sent to
+	private Island neighbour = null;
+
+	private int generationsRun = 0;
+	private int migrantsReceived = 0;
+	private Throwable failure = null;
+
+	/**
+	 * Creates an island.
+	 *
+	 * @param id - which island this is.
+	 * @param population - the island's starting population.
+	 * @param evolutionStrategy - how the population is evolved.
+	 * @param selectionStrategy - how parents are chosen.
+	 * @param manipulator - the genetic operations done to the parents.
+	 * @param fitnessFunction - assigns the critters their fitness.
+	 * @param random - the island's random number generator.
+	 * @param regionStart - the first column of the world the island has.
+	 * @param regionWidth - the number of columns the island has.
+	 * @param regionLength - the number of rows the island has.
+	 * @param migrationInterval - migrate every this many generations.
+	 * @param numMigrants - the number of critters sent each time.
+	 */
+	public Island(int id, Population population, EvolutionStrategy evolutionStrategy,
+			SelectionStrategy selectionStrategy, GeneManipulator manipulator,
+			FitnessFunction fitnessFunction, Random random, int regionStart,
+			int regionWidth, int regionLength, int migrationInterval, int numMigrants)
+	{
+		if (regionWidth < 1 || regionLength < 1)
+		{
+			throw new IllegalArgumentException("An island needs at least one cell.");
+		}
+		if (migrationInterval < 1 || numMigrants < 0)
+		{
+			throw new IllegalArgumentException("The migration interval must be " +
+				"positive and the number of migrants can not be negative.");
+		}
+
+		this.id = id;
+		this.population = population;
+		this.evolutionStrategy = evolutionStrategy;
+		this.selectionStrategy = selectionStrategy;
+		this.manipulator = manipulator;
+		this.fitnessFunction = fitnessFunction;
+		this.random = random;
+		this.regionStart = regionStart;
+		this.regionWidth = regionWidth;
+		this.regionLength = regionLength;
+		this.migrationInterval = migrationInterval;
+		this.numMigrants = numMigrants;
+		if (BioVariables.PHENOTYPE_POOL && evolutionStrategy instanceof ExplicitEvolutionStrategy)
+		{
+			((ExplicitEvolutionStrategy)evolutionStrategy).setPhenotypePool(
+				new PhenotypePool(BioVariables.PHENOTYPE_POOL_CAPACITY));
+		}
+	}
+
+	/**
+	 * Sets the island that this island's migrants are sent to.
+	 */
+	public void setNeighbour(Island neighbour)
+	{
+		this.neighbour = neighbour;
+	}
+
+	/**
+	 * Sets how many generations run evolves the island for.
+	 */
+	public void setGenerations(int generations)
+	{
+		this.generations = generations;
+	}
+
+	/**
+	 * Evolves the island for the set number of generations. Meant to be
+	 * run on a thread of its own.
+	 */
+	public void run()
+	{
+		ALifeRandom.setThreadRandomNumberGenerator(random);
+		try
+		{
+			placeCritters();
+			for (int g=1; g<=generations; g++)
+			{
+				FitnessEvaluator.assignFitnessValuesToPhenotypes(population,
+					fitnessFunction);
+				population = evolutionStrategy.evolvePopulation(population,
+					selectionStrategy, manipulator);
+
+				if (g % migrationInterval == 0)
+				{
+					//the new critters need a fitness before the best
+					//can be picked out
+					FitnessEvaluator.assignFitnessValuesToPhenotypes(population,
+						fitnessFunction);
+					emigrate();
+					immigrate();
+				}
+
+				placeCritters();
+				generationsRun = g;
+			}
+		}
+		catch (Throwable t)
+		{
+			failure = t;
+		}
+		finally
+		{
+			ALifeRandom.setThreadRandomNumberGenerator(null);
+		}
+	}
+
+	/**
+	 * Sends copies of the fittest critters to the neighbouring island.
+	 */
+	private void emigrate()
+	{
+		if (neighbour == null || numMigrants == 0)
+		{
+			return;
+		}
+
+		Phenotype[] sorted = sortedByFitness();
+		int count = Math.min(numMigrants, sorted.length);
+		for (int i=0; i<count; i++)
+		{
+			//the fittest are at the end
+			Phenotype best = sorted[sorted.length - 1 - i];
+			Phenotype migrant = new Phenotype((Chromosome)best.getChromosome().clone(),
+				0, 0, best.getStrength());
+			migrant.setFitness(best.getFitness());
+			neighbour.inbox.offer(migrant);
+		}
+	}
+
+	/**
+	 * Replaces the least fit critters with the migrants that have arrived.
+	 * Migrants that do not fit (more than the island's population) wait
+	 * for the next migration.
+	 */
+	private void immigrate()
+	{
+		if (inbox.isEmpty())
+		{
+			return;
+		}
+
+		Phenotype[] sorted = sortedByFitness();
+		int replaced = 0;
+		while (replaced < sorted.length && replaced < numMigrants)
+		{
+			Phenotype migrant = (Phenotype)inbox.poll();
+			if (migrant == null)
+			{
+				break;
+			}
+			population.removePhenotype(sorted[replaced]);
+			population.addPhenotype(migrant);
+			replaced++;
+			migrantsReceived++;
+		}
+	}
+
+	/**
+	 * Returns the critters ordered from least to most fit.
+	 */
+	private Phenotype[] sortedByFitness()
+	{
+		Phenotype[] sorted = new Phenotype[population.size()];
+		for (int i=0; i<sorted.length; i++)
+		{
+			sorted[i] = population.getPhenotype(i);
+		}
+		Arrays.sort(sorted, new Comparator()
+		{
+			public int compare(Object a, Object b)
+			{
+				return Double.compare(((Phenotype)a).getFitness(),
+					((Phenotype)b).getFitness());
+			}
+		});
+		return sorted;
+	}
+
+	/**
+	 * Puts every critter at a random cell of the island's strip, so the
+	 * critters of all the islands together are spread over the world.
+	 */
+	private void placeCritters()
+	{
+		for (int i=0; i<population.size(); i++)
+		{
+			Phenotype critter = population.getPhenotype(i);
+			critter.setXloc(regionStart + random.nextInt(regionWidth));
+			critter.setYloc(random.nextInt(regionLength));
+		}
+	}
+
+	/**
+	 * Returns which island this is.
+	 */
+	public int getId()
+	{
+		return id;
+	}
+
+	/**
+	 * Returns the island's current population.
+	 */
+	public Population getPopulation()
+	{
+		return population;
+	}
+
+	/**
+	 * Returns the first column of the world that belongs to the island.
+	 */
+	public int getRegionStart()
+	{
+		return regionStart;
+	}
+
+	/**
+	 * Returns the number of generations the island has finished.
+	 */
+	public int getGenerationsRun()
+	{
+		return generationsRun;
+	}
+
+	/**
+	 * Returns the number of migrants that have joined the island.
+	 */
+	public int getMigrantsReceived()
+	{
+		return migrantsReceived;
+	}
+
+	/**
+	 * Returns what stopped the island, or null if nothing went wrong.
+	 */
+	public Throwable getFailure()
+	{
+		return failure;
+	}
+}
@@ -0,0 +1,224 @@
+package evolution;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Island Connection class
+ * one end of a connection between an IslandNode and the IslandCoordinator.
+ * Everything sent is a frame: an int giving the number of bytes that
+ * follow, a byte giving the kind of message, and the message itself. The
+ * kinds and their contents are listed below.
+ *
+ * The channel is non-blocking. Frames passed to send wait in a buffer
+ * until flush gets them out, and read takes in whatever has arrived so
+ * nextFrame can hand back the complete frames one by one. Both buffers
+ * grow as needed, so neither end ever has to stop reading to be able to
+ * write.
+ */
+public class IslandConnection
+{
+	//node to coordinator: int node id
+	public static final int HELLO = 1;
+
+	//coordinator to node: int number of nodes. Sent once every node
+	//has said hello.
+	public static final int START = 2;
+
+	//node to coordinator: int node id, int tick, then the humans,
+	//zombies, births, duels won by humans, duels won by zombies, food
+	//eaten and distinct genomes as ints, then the mean strength, max
+	//strength, mean fitness and max fitness as doubles.
+	public static final int STATS = 3;
+
+	//node to coordinator to node: int from node, int to node, int count,
+	//then for each migrant its strength as a double and its chromosome
+	//as written by ChromosomeCodec.
+	public static final int MIGRANTS = 4;
+
+	//node to coordinator: int node id. The node sends nothing more.
+	public static final int BYE = 5;
+
+	//the largest frame either end accepts
+	private static final int MAX_FRAME = 64 * 1024 * 1024;
+
+	private SocketChannel channel;
+
+	//bytes received, kept ready for reading from position to limit
+	private ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+
+	//frames waiting to be written, kept ready for writing
+	private ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+
+	//the kind of the frame nextFrame returned last
+	private int frameType = 0;
+
+	private boolean closed = false;
+
+	/**
+	 * Wraps a connected channel and makes it non-blocking.
+	 *
+	 * @param channel - a connected socket channel.
+	 * @throws IOException - if the channel can not be set up.
+	 */
+	public IslandConnection(SocketChannel channel) throws IOException
+	{
+		this.channel = channel;
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		in.flip();
+	}
+
+	/**
+	 * Queues a frame. It is written by the following calls to flush.
+	 *
+	 * @param type - the kind of message.
+	 * @param payload - the message, from its position to its limit. The
+	 * buffer's position is moved to its limit.
+	 */
+	public void send(int type, ByteBuffer payload)
+	{
+		int needed = 5 + payload.remaining();
+		if (out.remaining() < needed)
+		{
+			ByteBuffer bigger = ByteBuffer.allocate(Math.max(2 * out.capacity(),
+				out.position() + needed));
+			out.flip();
+			bigger.put(out);
+			out = bigger;
+		}
+		out.putInt(1 + payload.remaining());
+		out.put((byte)type);
+		out.put(payload);
+	}
+
+	/**
+	 * Writes as much of the queued frames as the channel takes without
+	 * waiting.
+	 *
+	 * @return - true if everything queued has been written.
+	 * @throws IOException - if the write fails.
+	 */
+	public boolean flush() throws IOException
+	{
+		out.flip();
+		channel.write(out);
+		out.compact();
+		return out.position() == 0;
+	}
+
+	/**
+	 * Returns true if some queued frames have not been written yet.
+	 */
+	public boolean hasPendingOutput()
+	{
+		return out.position() > 0;
+	}
+
+	/**
+	 * Takes in whatever bytes have arrived, without waiting. Frames
+	 * returned by nextFrame before this call are no longer valid after it.
+	 *
+	 * @return - the number of bytes read, or -1 if the other end has
+	 * closed the connection.
+	 * @throws IOException - if the read fails.
+	 */
+	public int read() throws IOException
+	{
+		if (closed)
+		{
+			return -1;
+		}
+
+		in.compact();
+		int total = 0;
+		while (true)
+		{
+			if (!in.hasRemaining())
+			{
+				ByteBuffer bigger = ByteBuffer.allocate(2 * in.capacity());
+				in.flip();
+				bigger.put(in);
+				in = bigger;
+			}
+
+			int count = channel.read(in);
+			if (count < 0)
+			{
+				closed = true;
+				break;
+			}
+			if (count == 0)
+			{
+				break;
+			}
+			total += count;
+		}
+		in.flip();
+
+		if (closed && total == 0)
+		{
+			return -1;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the next complete frame that has arrived, or null if there
+	 * is none. The returned buffer holds the message from its position to
+	 * its limit, and is only valid until the next call to read.
+	 *
+	 * @throws IOException - if the frame length is not valid.
+	 */
+	public ByteBuffer nextFrame() throws IOException
+	{
+		if (in.remaining() < 4)
+		{
+			return null;
+		}
+
+		int start = in.position();
+		int length = in.getInt(start);
+		if (length < 1 || length > MAX_FRAME)
+		{
+			throw new IOException("Bad frame length " + length + ".");
+		}
+		if (in.remaining() < 4 + length)
+		{
+			return null;
+		}
+
+		frameType = in.get(start + 4);
+		ByteBuffer frame = in.duplicate();
+		frame.position(start + 5);
+		frame.limit(start + 4 + length);
+		in.position(start + 4 + length);
+		return frame;
+	}
+
+	/**
+	 * Returns the kind of the frame nextFrame returned last.
+	 */
+	public int getFrameType()
+	{
+		return frameType;
+	}
+
+	/**
+	 * Returns the channel, so it can be registered with a Selector.
+	 */
+	public SocketChannel getChannel()
+	{
+		return channel;
+	}
+
+	/**
+	 * Closes the connection.
+	 */
+	public void close() throws IOException
+	{
+		closed = true;
+		channel.close();
+	}
+}
@@ -0,0 +1,395 @@
+package evolution;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+
+/**
+ * Island Coordinator class
+ * the process that ties a set of IslandNodes together. It waits for every
+ * node to connect and say hello, tells them all to start, then passes the
+ * migrants each node sends on to the node they are addressed to, and adds
+ * up the statistics the nodes send for each tick. Once every node has
+ * reported a tick, one line for the whole world is printed. The
+ * coordinator stops when every node has said goodbye. A node whose
+ * connection closes without a goodbye is counted as gone, and the ticks
+ * it never reported are printed without it.
+ *
+ * Everything runs on one thread with a Selector, so a slow node never
+ * holds up the others.
+ *
+ * To try it on one machine start the coordinator and then the nodes, each
+ * in its own JVM:
+ *
+ *   java evolution.IslandCoordinator 7000 3
+ *   java evolution.IslandNode localhost 7000 0 500
+ *   java evolution.IslandNode localhost 7000 1 500
+ *   java evolution.IslandNode localhost 7000 2 500
+ */
+public class IslandCoordinator
+{
+	private int numNodes;
+	private ServerSocketChannel server;
+	private Selector selector;
+
+	//the connection of each node, by node id
+	private IslandConnection[] nodes;
+	private int helloCount = 0;
+	private int byeCount = 0;
+
+	//the last tick each node reported, and the nodes that went away
+	//without saying goodbye
+	private int[] lastReported;
+	private boolean[] lost;
+
+	//the sums for ticks not every node has reported yet. Each entry is
+	//the number of reports, the seven counts, the strength and fitness
+	//totals (means times humans) and the two maxima.
+	private HashMap pendingTicks = new HashMap();
+
+	//the migrants forwarded and the ones whose node had already left
+	private long migrantsForwarded = 0;
+	private long migrantsDropped = 0;
+
+	/**
+	 * Opens the coordinator's listening socket.
+	 *
+	 * @param port - the port nodes connect to.
+	 * @param numNodes - the number of nodes to wait for.
+	 * @throws IOException - if the port can not be opened.
+	 */
+	public IslandCoordinator(int port, int numNodes) throws IOException
+	{
+		if (numNodes < 1)
+		{
+			throw new IllegalArgumentException("There must be at least one node.");
+		}
+		this.numNodes = numNodes;
+		this.nodes = new IslandConnection[numNodes];
+		this.lastReported = new int[numNodes];
+		this.lost = new boolean[numNodes];
+
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(port));
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Runs until every node has said goodbye.
+	 *
+	 * @throws IOException - if the network fails.
+	 */
+	public void run() throws IOException
+	{
+		while (byeCount < numNodes)
+		{
+			selector.select();
+			Iterator keys = selector.selectedKeys().iterator();
+			while (keys.hasNext())
+			{
+				SelectionKey key = (SelectionKey)keys.next();
+				keys.remove();
+				if (!key.isValid())
+				{
+					continue;
+				}
+
+				if (key.isAcceptable())
+				{
+					SocketChannel channel = server.accept();
+					if (channel != null)
+					{
+						IslandConnection connection = new IslandConnection(channel);
+						channel.register(selector, SelectionKey.OP_READ, connection);
+					}
+					continue;
+				}
+
+				IslandConnection connection = (IslandConnection)key.attachment();
+				try
+				{
+					if (key.isReadable())
+					{
+						if (connection.read() < 0)
+						{
+							throw new IOException("The node closed the connection.");
+						}
+						ByteBuffer frame = connection.nextFrame();
+						while (frame != null)
+						{
+							handle(connection, connection.getFrameType(), frame);
+							frame = connection.nextFrame();
+						}
+					}
+					if (key.isValid() && key.isWritable())
+					{
+						connection.flush();
+					}
+				}
+				catch (IOException e)
+				{
+					//a node that went away, whether it closed the
+					//connection or the connection broke
+					key.cancel();
+					connection.close();
+					lose(connection);
+				}
+			}
+
+			updateWriteInterest();
+		}
+
+		//ticks that not every node ran
+		Object[] leftOver = pendingTicks.keySet().toArray();
+		Arrays.sort(leftOver);
+		for (int i=0; i<leftOver.length; i++)
+		{
+			printTick(((Integer)leftOver[i]).intValue(),
+				(double[])pendingTicks.get(leftOver[i]));
+		}
+		pendingTicks.clear();
+
+		System.out.println("ALL NODES FINISHED, " + migrantsForwarded +
+			" MIGRANTS FORWARDED, " + migrantsDropped + " DROPPED");
+		selector.close();
+		server.close();
+	}
+
+	/**
+	 * Acts on one frame from a node.
+	 */
+	private void handle(IslandConnection from, int type, ByteBuffer frame) throws IOException
+	{
+		if (type == IslandConnection.HELLO)
+		{
+			int id = frame.getInt();
+			if (id < 0 || id >= numNodes || nodes[id] != null)
+			{
+				throw new IOException("Unexpected hello from node " + id + ".");
+			}
+			nodes[id] = from;
+			helloCount++;
+			System.out.println("NODE " + id + " CONNECTED");
+
+			if (helloCount == numNodes)
+			{
+				ByteBuffer start = ByteBuffer.allocate(4);
+				start.putInt(numNodes);
+				for (int k=0; k<numNodes; k++)
+				{
+					start.flip();
+					nodes[k].send(IslandConnection.START, start);
+				}
+			}
+		}
+		else if (type == IslandConnection.STATS)
+		{
+			addStatistics(frame);
+		}
+		else if (type == IslandConnection.MIGRANTS)
+		{
+			int to = frame.getInt(frame.position() + 4);
+			int count = frame.getInt(frame.position() + 8);
+			if (to >= 0 && to < numNodes && nodes[to] != null)
+			{
+				nodes[to].send(IslandConnection.MIGRANTS, frame);
+				migrantsForwarded += count;
+			}
+			else
+			{
+				migrantsDropped += count;
+			}
+		}
+		else if (type == IslandConnection.BYE)
+		{
+			int id = frame.getInt();
+			if (id >= 0 && id < numNodes)
+			{
+				nodes[id] = null;
+			}
+			byeCount++;
+			System.out.println("NODE " + id + " FINISHED");
+		}
+		else
+		{
+			throw new IOException("Unknown message type " + type + ".");
+		}
+	}
+
+	/**
+	 * Treats a node whose connection closed without a goodbye as if it had
+	 * said goodbye, and stops waiting for the ticks it will not report.
+	 */
+	private void lose(IslandConnection connection)
+	{
+		for (int id=0; id<numNodes; id++)
+		{
+			if (nodes[id] == connection)
+			{
+				nodes[id] = null;
+				lost[id] = true;
+				byeCount++;
+				System.out.println("NODE " + id + " LOST");
+
+				//prints the ticks only this node was still missing from
+				Object[] waiting = pendingTicks.keySet().toArray();
+				Arrays.sort(waiting);
+				for (int i=0; i<waiting.length; i++)
+				{
+					int tick = ((Integer)waiting[i]).intValue();
+					double[] sums = (double[])pendingTicks.get(waiting[i]);
+					if (sums[0] >= expectedReports(tick))
+					{
+						pendingTicks.remove(waiting[i]);
+						printTick(tick, sums);
+					}
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of nodes a tick will be reported by: every node
+	 * but those lost before they reported it.
+	 */
+	private int expectedReports(int tick)
+	{
+		int expected = numNodes;
+		for (int id=0; id<numNodes; id++)
+		{
+			if (lost[id] && lastReported[id] < tick)
+			{
+				expected--;
+			}
+		}
+		return expected;
+	}
+
+	/**
+	 * Adds a node's statistics for a tick to the sums for that tick, and
+	 * prints the tick once every node has reported it.
+	 */
+	private void addStatistics(ByteBuffer frame)
+	{
+		int id = frame.getInt();
+		int tick = frame.getInt();
+		if (id >= 0 && id < numNodes)
+		{
+			lastReported[id] = tick;
+		}
+
+		Integer key = Integer.valueOf(tick);
+		double[] sums = (double[])pendingTicks.get(key);
+		if (sums == null)
+		{
+			sums = new double[12];
+			sums[10] = Double.NEGATIVE_INFINITY;
+			sums[11] = Double.NEGATIVE_INFINITY;
+			pendingTicks.put(key, sums);
+		}
+
+		int humans = frame.getInt();
+		sums[0]++;
+		sums[1] += humans;
+		for (int i=2; i<=7; i++)
+		{
+			sums[i] += frame.getInt();
+		}
+		sums[8] += frame.getDouble() * humans;
+		sums[10] = Math.max(sums[10], frame.getDouble());
+		sums[9] += frame.getDouble() * humans;
+		sums[11] = Math.max(sums[11], frame.getDouble());
+
+		if (sums[0] >= expectedReports(tick))
+		{
+			pendingTicks.remove(key);
+			printTick(tick, sums);
+		}
+	}
+
+	/**
+	 * Prints the sums for a tick.
+	 */
+	private void printTick(int tick, double[] sums)
+	{
+		double meanStrength = 0;
+		double meanFitness = 0;
+		if (sums[1] > 0)
+		{
+			meanStrength = sums[8] / sums[1];
+			meanFitness = sums[9] / sums[1];
+		}
+		System.out.println("TICK " + tick + " HUMANS " + (long)sums[1] +
+			" ZOMBIES " + (long)sums[2] + " BIRTHS " + (long)sums[3] +
+			" DUELS " + (long)sums[4] + "/" + (long)sums[5] +
+			" FOOD " + (long)sums[6] + " GENOMES " + (long)sums[7] +
+			" STRENGTH " + meanStrength + "/" + sums[10] +
+			" FITNESS " + meanFitness + "/" + sums[11]);
+		if (sums[0] < numNodes)
+		{
+			System.out.println("(TICK " + tick + " WAS ONLY REPORTED BY " +
+				(long)sums[0] + " OF " + numNodes + " NODES)");
+		}
+	}
+
+	/**
+	 * Asks the selector to report a node as writable only while frames
+	 * are waiting to be written to it.
+	 */
+	private void updateWriteInterest()
+	{
+		Iterator keys = selector.keys().iterator();
+		while (keys.hasNext())
+		{
+			SelectionKey key = (SelectionKey)keys.next();
+			if (!key.isValid() || !(key.attachment() instanceof IslandConnection))
+			{
+				continue;
+			}
+			IslandConnection connection = (IslandConnection)key.attachment();
+			int ops = SelectionKey.OP_READ;
+			if (connection.hasPendingOutput())
+			{
+				ops |= SelectionKey.OP_WRITE;
+			}
+			if (key.interestOps() != ops)
+			{
+				key.interestOps(ops);
+			}
+		}
+	}
+
+	/**
+	 * Starts a coordinator.
+	 *
+	 * @param args - the port and the number of nodes.
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length < 2)
+		{
+			System.out.println("usage: IslandCoordinator port nodes");
+			System.exit(1);
+		}
+
+		try
+		{
+			IslandCoordinator coordinator = new IslandCoordinator(
+				Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+			coordinator.run();
+		}
+		catch (IOException e)
+		{
+			System.out.println("Coordinator failed: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package evolution;
+
+import java.util.*;
+
+import critter.*;
+import fitness.*;
+
+/**
+ * Island Evolution Runner class
+ * evolves several sub-populations (islands) at once, each on its own
+ * thread. The islands are set up in a ring and every so many generations
+ * each one sends copies of its fittest critters to the next. Apart from
+ * those migrants the islands share nothing, so the runner uses as many
+ * cores as there are islands, and the separate populations keep more
+ * variety than one large population would.
+ *
+ * Every island gets a fresh population, selection strategy and gene
+ * manipulator from the factory, its own random number generator, and its
+ * own strip of the world, the strips splitting the width of the world
+ * between the islands. Its evolution strategy is the factory's, or a
+ * steady state or (mu + lambda) strategy of its own.
+ */
+public class IslandEvolutionRunner
+{
+	//the evolution strategies the islands can use
+	public static final int FACTORY_STRATEGY = 0;
+	public static final int STEADY_STATE = 1;
+	public static final int MU_PLUS_LAMBDA = 2;
+
+	private Island[] islands;
+
+	/**
+	 * Creates a runner with the number of islands, the migration interval,
+	 * the number of migrants and the evolution strategy given in
+	 * BioVariables.
+	 *
+	 * @param factory - makes each island's population and operators.
+	 * @param fitnessFunction - assigns the critters their fitness.
+	 * @param seed - seeds the islands' random number generators.
+	 */
+	public IslandEvolutionRunner(ALifeFactory factory, FitnessFunction fitnessFunction,
+			long seed)
+	{
+		this(factory, fitnessFunction, BioVariables.ISLAND_COUNT,
+			BioVariables.MIGRATION_INTERVAL, BioVariables.MIGRANTS,
+			BioVariables.ISLAND_STRATEGY, seed);
+	}
+
+	/**
+	 * Creates a runner.
+	 *
+	 * @param factory - makes each island's population and operators.
+	 * @param fitnessFunction - assigns the critters their fitness.
+	 * @param numIslands - the number of islands.
+	 * @param migrationInterval - migrate every this many generations.
+	 * @param numMigrants - the number of critters each island sends.
+	 * @param strategy - FACTORY_STRATEGY, STEADY_STATE or MU_PLUS_LAMBDA.
+	 * @param seed - seeds the islands' random number generators.
+	 */
+	public IslandEvolutionRunner(ALifeFactory factory, FitnessFunction fitnessFunction,
+			int numIslands, int migrationInterval, int numMigrants, int strategy, long seed)
+	{
+		if (numIslands < 1 || numIslands > BioVariables.GRAPHICS_WIDTH)
+		{
+			throw new IllegalArgumentException("There must be between 1 and " +
+				BioVariables.GRAPHICS_WIDTH + " islands.");
+		}
+		if (fitnessFunction == null)
+		{
+			throw new IllegalArgumentException("The islands need a fitness function.");
+		}
+		if (strategy != FACTORY_STRATEGY && strategy != STEADY_STATE
+			&& strategy != MU_PLUS_LAMBDA)
+		{
+			throw new IllegalArgumentException("Unknown evolution strategy " +
+				strategy + ".");
+		}
+
+		islands = new Island[numIslands];
+		Random seeds = new Random(seed);
+		for (int k=0; k<numIslands; k++)
+		{
+			//splits the width of the world between the islands
+			int start = k * BioVariables.GRAPHICS_WIDTH / numIslands;
+			int end = (k + 1) * BioVariables.GRAPHICS_WIDTH / numIslands;
+
+			islands[k] = new Island(k, factory.getPopulation(),
+				getEvolutionStrategy(factory, fitnessFunction, strategy),
+				factory.getSelectionStrategy(),
+				factory.getGeneManipulator(), fitnessFunction,
+				new Random(seeds.nextLong()), start, end - start,
+				BioVariables.GRAPHICS_LENGTH, migrationInterval, numMigrants);
+		}
+
+		//links the islands into a ring
+		if (numIslands > 1)
+		{
+			for (int k=0; k<numIslands; k++)
+			{
+				islands[k].setNeighbour(islands[(k + 1) % numIslands]);
+			}
+		}
+	}
+
+	/**
+	 * Evolves every island for the given number of generations, each on
+	 * its own thread, and waits for them all to finish.
+	 *
+	 * @param generations - the number of generations to run.
+	 * @return - all the islands' critters together.
+	 * @throws IllegalStateException - if an island failed, with what
+	 * stopped it as the cause.
+	 */
+	public Population run(int generations)
+	{
+		Thread[] threads = new Thread[islands.length];
+		for (int k=0; k<islands.length; k++)
+		{
+			islands[k].setGenerations(generations);
+			threads[k] = new Thread(islands[k], "island " + k);
+			threads[k].start();
+		}
+
+		for (int k=0; k<threads.length; k++)
+		{
+			try
+			{
+				threads[k].join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while the islands were evolving.");
+			}
+		}
+
+		for (int k=0; k<islands.length; k++)
+		{
+			if (islands[k].getFailure() != null)
+			{
+				throw new IllegalStateException("Island " + k + " failed.",
+					islands[k].getFailure());
+			}
+		}
+
+		Population all = new Population();
+		for (int k=0; k<islands.length; k++)
+		{
+			all.addAll(islands[k].getPopulation());
+		}
+		return all;
+	}
+
+	/**
+	 * Makes a new evolution strategy for an island.
+	 */
+	private static EvolutionStrategy getEvolutionStrategy(ALifeFactory factory,
+			FitnessFunction fitnessFunction, int strategy)
+	{
+		if (strategy == STEADY_STATE)
+		{
+			return new SteadyStateEvolutionStrategy(BioVariables.STEADY_STATE_REPLACEMENTS,
+				fitnessFunction);
+		}
+		if (strategy == MU_PLUS_LAMBDA)
+		{
+			return new MuPlusLambdaEvolutionStrategy(BioVariables.MU_PLUS_LAMBDA_CHILDREN,
+				fitnessFunction);
+		}
+		return factory.getEvolutionStrategy();
+	}
+
+	/**
+	 * Returns the islands.
+	 */
+	public Island[] getIslands()
+	{
+		return islands;
+	}
+}
@@ -0,0 +1,350 @@
+package evolution;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+
+import observe.Interaction;
+import observe.PhaseTimer;
+import observe.TickStatistics;
+import critter.*;
+import chromosome.*;
+import data.*;
+import numbers.*;
+
+/**
+ * Island Node class
+ * runs the zombie apocalypse on one slice of a world that is spread over
+ * several processes. Each node has its own humans, zombies and
+ * Environment (a GRAPHICS_WIDTH by GRAPHICS_LENGTH slice) and runs the
+ * same Simulation tick as Biosphere, without the graphics, saving its
+ * checkpoints to CHECKPOINT_FILE with the node id added. After every
+ * tick it sends its statistics to the IslandCoordinator, and every
+ * MIGRATION_INTERVAL ticks its MIGRANTS strongest humans leave for the
+ * next node, their genomes written with ChromosomeCodec. Humans sent by
+ * the previous node join the slice at random cells.
+ *
+ * Since every node only holds its own slice, the size of the world is
+ * limited by the number of machines rather than by one JVM heap.
+ */
+public class IslandNode
+{
+	private int nodeId;
+	private int numNodes = 0;
+	private IslandConnection connection;
+
+	//wakes the node when the coordinator has sent something or more
+	//can be written to it
+	private Selector selector;
+
+	private Population hPop;
+	private Population zPop;
+	private Interaction interact = new Interaction();
+	private Simulation simulation;
+	private Random r;
+
+	private int migrantsSent = 0;
+	private int migrantsReceived = 0;
+
+	/**
+	 * Connects to the coordinator and sets up the node's slice.
+	 *
+	 * @param host - the coordinator's host.
+	 * @param port - the coordinator's port.
+	 * @param nodeId - this node's id, from 0 to one less than the
+	 * number of nodes.
+	 * @throws IOException - if the coordinator can not be reached.
+	 */
+	public IslandNode(String host, int port, int nodeId) throws IOException
+	{
+		this.nodeId = nodeId;
+
+		//each node gets its own stream of random numbers
+		ALifeRandom.setRandomNumberGenerator(new Random(System.nanoTime() + 31L * nodeId));
+		r = ALifeRandom.getRandomNumberGenerator();
+
+		hPop = new HumanFactory().getPopulation();
+		zPop = new ZombieFactory().getPopulation();
+
+		ArrayList[][] humanPheno = new ArrayList[BioVariables.GRAPHICS_WIDTH]
+			[BioVariables.GRAPHICS_LENGTH];
+		ArrayList[][] zombiePheno = new ArrayList[BioVariables.GRAPHICS_WIDTH]
+			[BioVariables.GRAPHICS_LENGTH];
+		for (int x=0; x<BioVariables.GRAPHICS_WIDTH; x++)
+		{
+			for (int y=0; y<BioVariables.GRAPHICS_LENGTH; y++)
+			{
+				humanPheno[x][y] = new ArrayList();
+				zombiePheno[x][y] = new ArrayList();
+			}
+		}
+		Environment environment = new Environment(
+			new int[BioVariables.GRAPHICS_WIDTH][BioVariables.GRAPHICS_LENGTH],
+			new int[BioVariables.GRAPHICS_WIDTH][BioVariables.GRAPHICS_LENGTH],
+			new int[BioVariables.GRAPHICS_WIDTH][BioVariables.GRAPHICS_LENGTH],
+			humanPheno, zombiePheno);
+
+		for (int n=0; n<hPop.getSize(); n++)
+		{
+			hPop.getPhenotype(n).setXloc(r.nextInt(BioVariables.GRAPHICS_WIDTH));
+			hPop.getPhenotype(n).setYloc(r.nextInt(BioVariables.GRAPHICS_LENGTH));
+		}
+		for (int n=0; n<zPop.getSize(); n++)
+		{
+			zPop.getPhenotype(n).setXloc(r.nextInt(BioVariables.GRAPHICS_WIDTH));
+			zPop.getPhenotype(n).setYloc(r.nextInt(BioVariables.GRAPHICS_LENGTH));
+		}
+
+		//the same tick as Biosphere, with the node's own checkpoint file
+		PhaseTimer timer = new PhaseTimer(BioVariables.PHASE_TIMING,
+			BioVariables.PHASE_SUMMARY_INTERVAL);
+		if (BioVariables.PHASE_TIMING)
+		{
+			timer.register();
+		}
+		Checkpoint checkpoint = new Checkpoint(
+			new File(BioVariables.CHECKPOINT_FILE + "." + nodeId));
+		simulation = new Simulation(hPop, zPop, environment, interact, timer, checkpoint);
+
+		SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+		connection = new IslandConnection(channel);
+		selector = Selector.open();
+		channel.register(selector, SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Says hello, waits for the coordinator to start every node, runs
+	 * the ticks and says goodbye.
+	 *
+	 * @param ticks - the number of ticks to run.
+	 * @throws IOException - if the connection fails.
+	 */
+	public void run(int ticks) throws IOException
+	{
+		ByteBuffer hello = ByteBuffer.allocate(4);
+		hello.putInt(nodeId);
+		hello.flip();
+		connection.send(IslandConnection.HELLO, hello);
+		flushAll();
+
+		//waits for the go ahead
+		receive();
+		while (numNodes == 0)
+		{
+			await();
+			receive();
+		}
+		System.out.println("NODE " + nodeId + " OF " + numNodes + " STARTED");
+
+		TickStatistics stats = interact.getStatistics();
+		ByteBuffer statsFrame = ByteBuffer.allocate(68);
+		for (int i=1; i<=ticks; i++)
+		{
+			receive();
+			simulation.tick(i);
+
+			stats.measure(i, hPop, zPop);
+			statsFrame.clear();
+			statsFrame.putInt(nodeId);
+			statsFrame.putInt(i);
+			statsFrame.putInt(stats.getHumanPopulationSize());
+			statsFrame.putInt(stats.getZombiePopulationSize());
+			statsFrame.putInt(stats.getBirths());
+			statsFrame.putInt(stats.getDuelsWonByHumans());
+			statsFrame.putInt(stats.getDuelsWonByZombies());
+			statsFrame.putInt(stats.getFoodEaten());
+			statsFrame.putInt(stats.getDistinctGenomes());
+			statsFrame.putDouble(stats.getMeanStrength());
+			statsFrame.putDouble(stats.getMaxStrength());
+			statsFrame.putDouble(stats.getMeanFitness());
+			statsFrame.putDouble(stats.getMaxFitness());
+			statsFrame.flip();
+			connection.send(IslandConnection.STATS, statsFrame);
+
+			if (numNodes > 1 && i % BioVariables.MIGRATION_INTERVAL == 0)
+			{
+				emigrate();
+			}
+			connection.flush();
+		}
+
+		ByteBuffer bye = ByteBuffer.allocate(4);
+		bye.putInt(nodeId);
+		bye.flip();
+		connection.send(IslandConnection.BYE, bye);
+		flushAll();
+		connection.close();
+		selector.close();
+		simulation.close();
+		System.out.println("NODE " + nodeId + " FINISHED, " + migrantsSent +
+			" MIGRANTS SENT, " + migrantsReceived + " RECEIVED");
+	}
+
+	/**
+	 * Sends the strongest humans to the next node. A node always keeps
+	 * at least one human.
+	 */
+	private void emigrate()
+	{
+		int count = Math.min(BioVariables.MIGRANTS, hPop.getSize() - 1);
+		if (count <= 0)
+		{
+			return;
+		}
+
+		Phenotype[] sorted = new Phenotype[hPop.getSize()];
+		for (int i=0; i<sorted.length; i++)
+		{
+			sorted[i] = hPop.getPhenotype(i);
+		}
+		Arrays.sort(sorted, new Comparator()
+		{
+			public int compare(Object a, Object b)
+			{
+				return Double.compare(((Phenotype)b).getStrength(),
+					((Phenotype)a).getStrength());
+			}
+		});
+
+		int size = 12;
+		for (int i=0; i<count; i++)
+		{
+			size += 8 + ChromosomeCodec.encodedSize(
+				(BitArrayChromosome)sorted[i].getChromosome());
+		}
+
+		ByteBuffer frame = ByteBuffer.allocate(size);
+		frame.putInt(nodeId);
+		frame.putInt((nodeId + 1) % numNodes);
+		frame.putInt(count);
+		for (int i=0; i<count; i++)
+		{
+			frame.putDouble(sorted[i].getStrength());
+			ChromosomeCodec.write((BitArrayChromosome)sorted[i].getChromosome(), frame);
+			simulation.removeHuman(sorted[i]);
+			if (simulation.getPhenotypePool() != null)
+			{
+				simulation.getPhenotypePool().bury(sorted[i], true);
+			}
+		}
+		frame.flip();
+		connection.send(IslandConnection.MIGRANTS, frame);
+		migrantsSent += count;
+	}
+
+	/**
+	 * Reads whatever the coordinator has sent and acts on it.
+	 */
+	private void receive() throws IOException
+	{
+		if (connection.read() < 0)
+		{
+			throw new IOException("The coordinator closed the connection.");
+		}
+
+		ByteBuffer frame = connection.nextFrame();
+		while (frame != null)
+		{
+			int type = connection.getFrameType();
+			if (type == IslandConnection.START)
+			{
+				numNodes = frame.getInt();
+			}
+			else if (type == IslandConnection.MIGRANTS)
+			{
+				frame.getInt();
+				frame.getInt();
+				int count = frame.getInt();
+				for (int i=0; i<count; i++)
+				{
+					double strength = frame.getDouble();
+					BitArrayChromosome genome = ChromosomeCodec.read(frame);
+					Phenotype migrant;
+					if (simulation.getPhenotypePool() != null)
+					{
+						migrant = simulation.getPhenotypePool().takeHuman(genome,
+							r.nextInt(BioVariables.GRAPHICS_WIDTH),
+							r.nextInt(BioVariables.GRAPHICS_LENGTH), strength);
+					}
+					else
+					{
+						migrant = new Phenotype(genome,
+							r.nextInt(BioVariables.GRAPHICS_WIDTH),
+							r.nextInt(BioVariables.GRAPHICS_LENGTH), strength);
+					}
+					simulation.addHuman(migrant);
+				}
+				migrantsReceived += count;
+			}
+			else
+			{
+				throw new IOException("Unexpected message type " + type + ".");
+			}
+			frame = connection.nextFrame();
+		}
+	}
+
+	/**
+	 * Writes everything queued, reading while it waits so the coordinator
+	 * is never stuck writing to this node.
+	 */
+	private void flushAll() throws IOException
+	{
+		while (!connection.flush())
+		{
+			await();
+			if (connection.read() < 0)
+			{
+				throw new IOException("The coordinator closed the connection.");
+			}
+		}
+	}
+
+	/**
+	 * Blocks until the coordinator has sent something or, while frames
+	 * are waiting to be written, until more of them can be written.
+	 */
+	private void await() throws IOException
+	{
+		int ops = SelectionKey.OP_READ;
+		if (connection.hasPendingOutput())
+		{
+			ops |= SelectionKey.OP_WRITE;
+		}
+		connection.getChannel().keyFor(selector).interestOps(ops);
+		selector.select();
+		selector.selectedKeys().clear();
+	}
+
+	/**
+	 * Starts a node.
+	 *
+	 * @param args - the coordinator's host and port, this node's id and
+	 * the number of ticks to run.
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length < 4)
+		{
+			System.out.println("usage: IslandNode host port node ticks");
+			System.exit(1);
+		}
+
+		try
+		{
+			IslandNode node = new IslandNode(args[0], Integer.parseInt(args[1]),
+				Integer.parseInt(args[2]));
+			node.run(Integer.parseInt(args[3]));
+		}
+		catch (IOException e)
+		{
+			System.out.println("Node failed: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
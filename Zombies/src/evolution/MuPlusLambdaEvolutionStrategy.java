@@ -0,0 +1,218 @@
+package evolution;
+
+import java.util.*;
+import critter.*;
+import fitness.*;
+import genes.*;
+import chromosome.*;
+
+/**
+ * (Mu + Lambda) Evolution Strategy
+ * makes lambda children from parents chosen by the selection strategy,
+ * then keeps the mu fittest of the parents and children together, mu
+ * being the size of the population. A parent only dies when enough
+ * better children come along, so the best critter is never lost.
+ *
+ * Only the mu survivors have to be found, not put in order, so they are
+ * picked out with a partial sort (quickselect) in linear time instead of
+ * sorting all mu + lambda critters.
+ */
+public class MuPlusLambdaEvolutionStrategy extends EvolutionStrategy
+{
+	//the strength a child starts with, as in ExplicitEvolutionStrategy
+	private static final double NEWBORN_STRENGTH = 10;
+
+	//the number of children made each generation, 0 for as many as
+	//there are parents
+	private int lambda;
+
+	//gives each child its fitness
+	private FitnessFunction fitnessFunction;
+
+	//the parents and children and their fitness values, kept between
+	//generations so they are only reallocated when the population grows
+	private Phenotype[] pool = new Phenotype[0];
+	private double[] fitness = new double[0];
+
+	/**
+	 * Creates a (mu + lambda) strategy that makes as many children as
+	 * there are parents.
+	 *
+	 * @param fitnessFunction - gives each child its fitness.
+	 */
+	public MuPlusLambdaEvolutionStrategy(FitnessFunction fitnessFunction)
+	{
+		this(0, fitnessFunction);
+	}
+
+	/**
+	 * Creates a (mu + lambda) strategy.
+	 *
+	 * @param lambda - the number of children made each generation, or 0
+	 * for as many as there are parents.
+	 * @param fitnessFunction - gives each child its fitness, which is
+	 * needed to compare it with the parents.
+	 */
+	public MuPlusLambdaEvolutionStrategy(int lambda, FitnessFunction fitnessFunction)
+	{
+		if (lambda < 0)
+		{
+			throw new IllegalArgumentException("Lambda can not be negative.");
+		}
+		if (fitnessFunction == null)
+		{
+			throw new IllegalArgumentException("A fitness function is needed.");
+		}
+		this.lambda = lambda;
+		this.fitnessFunction = fitnessFunction;
+	}
+
+	/**
+	 * Makes the children and keeps the fittest of the parents and
+	 * children. The parents should have their fitness already, as they
+	 * do for the other strategies.
+	 *
+	 * @return - a population of the survivors, the same size as pop.
+	 */
+	public Population evolvePopulation(Population pop,
+			SelectionStrategy strategy, GeneManipulator manipulator)
+	{
+		int mu = pop.size();
+		if (mu == 0)
+		{
+			return new Population();
+		}
+		int children = lambda;
+		if (children == 0)
+		{
+			children = mu;
+		}
+
+		if (pool.length < mu + children)
+		{
+			pool = new Phenotype[mu + children];
+			fitness = new double[mu + children];
+		}
+
+		int count = 0;
+		for (int i=0; i<mu; i++)
+		{
+			pool[count] = pop.getPhenotype(i);
+			fitness[count] = pool[count].getFitness();
+			count++;
+		}
+
+		Random r = new Random();
+		for (int n=0; n<children; n++)
+		{
+			Chromosome[] selected = strategy.selectChromosomes(pop);
+			Chromosome[] manipulated = manipulator.performGeneticOperations(selected);
+			if (manipulated == null || manipulated[0] == null)
+			{
+				continue;
+			}
+
+			Phenotype child = new Phenotype(manipulated[0], r.nextInt(50), r.nextInt(50),
+				NEWBORN_STRENGTH);
+			child.setFitness(fitnessFunction.evaluateFitness(child));
+			pool[count] = child;
+			fitness[count] = child.getFitness();
+			count++;
+		}
+
+		//moves the mu fittest to the front
+		select(mu, count);
+
+		Population newPop = new Population();
+		for (int i=0; i<mu; i++)
+		{
+			newPop.addPhenotype(pool[i]);
+		}
+
+		//lets go of the critters so they can be collected
+		Arrays.fill(pool, 0, count, null);
+		return newPop;
+	}
+
+	/**
+	 * Rearranges the first count critters of the pool so the k fittest
+	 * come first, in no particular order.
+	 */
+	private void select(int k, int count)
+	{
+		int left = 0;
+		int right = count - 1;
+		while (left < right)
+		{
+			//the median of three as the pivot
+			int middle = (left + right) >>> 1;
+			if (fitness[middle] > fitness[left])
+			{
+				swap(middle, left);
+			}
+			if (fitness[right] > fitness[left])
+			{
+				swap(right, left);
+			}
+			if (fitness[right] > fitness[middle])
+			{
+				swap(right, middle);
+			}
+			double pivot = fitness[middle];
+
+			//splits into fitter than the pivot, then the rest
+			int i = left;
+			int j = right;
+			while (i <= j)
+			{
+				while (fitness[i] > pivot)
+				{
+					i++;
+				}
+				while (fitness[j] < pivot)
+				{
+					j--;
+				}
+				if (i <= j)
+				{
+					swap(i, j);
+					i++;
+					j--;
+				}
+			}
+
+			//only the side holding position k matters
+			if (k - 1 <= j)
+			{
+				right = j;
+			}
+			else if (k - 1 >= i)
+			{
+				left = i;
+			}
+			else
+			{
+				return;
+			}
+		}
+	}
+
+	private void swap(int a, int b)
+	{
+		Phenotype p = pool[a];
+		pool[a] = pool[b];
+		pool[b] = p;
+		double f = fitness[a];
+		fitness[a] = fitness[b];
+		fitness[b] = f;
+	}
+
+	/**
+	 * Returns the number of children made each generation, 0 meaning as
+	 * many as there are parents.
+	 */
+	public int getLambda()
+	{
+		return lambda;
+	}
+}
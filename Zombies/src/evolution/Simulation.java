@@ -0,0 +1,494 @@
+package evolution;
+
+import java.io.IOException;
+import java.util.*;
+
+import observe.BreedingService;
+import observe.CarryingCapacity;
+import observe.DuelResolver;
+import observe.Interaction;
+import observe.MoveTableCache;
+import observe.PhaseTimer;
+import observe.TickScheduler;
+import chromosome.BitArrayChromosome;
+import chromosome.GenomeArena;
+import critter.*;
+import data.*;
+import numbers.*;
+
+/**
+ * Simulation class
+ * one tick of the zombie apocalypse, shared by Biosphere and IslandNode
+ * so both run the same loop. It sets up the optional parts of the tick
+ * that BioVariables switches on (the food field, the wide senses, the
+ * tick scheduler, the flow field, compiled behaviour, batched duels and
+ * births, carrying capacities, the phenotype pool and the genome arena),
+ * puts every critter
+ * in the Environment, and then each call to tick
+ *
+ *   - puts down the food,
+ *   - wakes the sleepers something happened near,
+ *   - lets the display redraw the cells that changed,
+ *   - brings the wide senses up to date,
+ *   - moves every zombie that is awake, then every human, putting the
+ *     ones with nothing around them to sleep instead,
+ *   - settles the births, duels, culls and deaths of the tick, and
+ *   - takes a checkpoint every CHECKPOINT_INTERVAL ticks,
+ *
+ * timing each phase with the PhaseTimer. Whatever the caller does with
+ * the tick's statistics (metrics, history, sending them to a
+ * coordinator) is left to the caller.
+ */
+public class Simulation
+{
+	/**
+	 * What the simulation shows its grid on, if anything.
+	 */
+	public interface Display
+	{
+		/**
+		 * Redraws the cells of the environment that changed since the last
+		 * tick. The environment's record of changes is cleared afterwards.
+		 *
+		 * @param environment - the environment.
+		 */
+		void redraw(Environment environment);
+
+		/**
+		 * Shows what has been drawn.
+		 */
+		void show();
+	}
+
+	private Population hPop;
+	private Population zPop;
+	private Environment environment;
+	private Interaction interact;
+	private PhaseTimer timer;
+	private Display display = null;
+
+	private Random r;
+	private TickScheduler scheduler = null;
+	private FlowField flowField = null;
+	private SensorField sensors = null;
+	private FoodField foodField = null;
+	private PhenotypePool pool = null;
+	private GenomeArena arena = null;
+
+	//snapshots every so many ticks, or none
+	private Checkpoint checkpoint;
+	private int checkpointInterval;
+
+	/**
+	 * Sets up the parts of the tick that are switched on and puts every
+	 * critter in the environment, which from then on records its changes.
+	 * The critters must already have their locations.
+	 *
+	 * @param hPop - the humans.
+	 * @param zPop - the zombies.
+	 * @param environment - the environment, the size of the world.
+	 * @param interact - moves the critters and counts what happens.
+	 * @param timer - times each phase of a tick.
+	 * @param checkpoint - where snapshots are saved, or null for none.
+	 */
+	public Simulation(Population hPop, Population zPop, Environment environment,
+		Interaction interact, PhaseTimer timer, Checkpoint checkpoint)
+	{
+		this(hPop, zPop, environment, interact, timer, checkpoint, null);
+	}
+
+	/**
+	 * Sets up the tick as above, for a run resumed from a checkpoint.
+	 *
+	 * @param hPop - the humans.
+	 * @param zPop - the zombies.
+	 * @param environment - the environment, the size of the world.
+	 * @param interact - moves the critters and counts what happens.
+	 * @param timer - times each phase of a tick.
+	 * @param checkpoint - where snapshots are saved, or null for none.
+	 * @param foodCentres - the food field centres the checkpoint saved, or
+	 * null to draw new ones.
+	 */
+	public Simulation(Population hPop, Population zPop, Environment environment,
+		Interaction interact, PhaseTimer timer, Checkpoint checkpoint, int[] foodCentres)
+	{
+		this.hPop = hPop;
+		this.zPop = zPop;
+		this.environment = environment;
+		this.interact = interact;
+		this.timer = timer;
+		this.checkpoint = checkpoint;
+		this.checkpointInterval = BioVariables.CHECKPOINT_INTERVAL;
+		r = ALifeRandom.getRandomNumberGenerator();
+		interact.setPhaseTimer(timer);
+
+		//Optionally lets quiet critters sleep until something changes near them
+		if (BioVariables.EVENT_SCHEDULER)
+		{
+			scheduler = new TickScheduler(BioVariables.GRAPHICS_WIDTH,
+				BioVariables.GRAPHICS_LENGTH, Math.max(1, BioVariables.SENSOR_RADIUS),
+				BioVariables.SCHEDULER_MAX_SLEEP);
+			interact.setTickScheduler(scheduler);
+		}
+
+		//Optionally runs each genome's network once and keeps its moves
+		if (BioVariables.COMPILED_BEHAVIOUR)
+		{
+			interact.setMoveTableCache(new MoveTableCache(BioVariables.MOVE_TABLE_CAPACITY));
+		}
+
+		//Optionally lets zombies head for humans they can not see
+		if (BioVariables.FLOW_FIELD)
+		{
+			flowField = new FlowField(BioVariables.GRAPHICS_WIDTH,
+				BioVariables.GRAPHICS_LENGTH, BioVariables.FLOW_FIELD_BANDS);
+			interact.setFlowField(flowField);
+		}
+
+		//Optionally fights the duels once everyone has moved
+		if (BioVariables.BATCHED_DUELS)
+		{
+			interact.setDuelResolver(new DuelResolver(BioVariables.GRAPHICS_WIDTH,
+				BioVariables.GRAPHICS_LENGTH));
+		}
+
+		//Optionally breeds the humans that met once everyone has moved
+		if (BioVariables.BATCHED_BIRTHS)
+		{
+			interact.setBreedingService(new BreedingService());
+		}
+
+		//Optionally keeps the populations under their carrying capacities
+		if (BioVariables.CARRYING_CAPACITY)
+		{
+			interact.setCarryingCapacity(
+				new CarryingCapacity(BioVariables.GRAPHICS_WIDTH, BioVariables.GRAPHICS_LENGTH,
+					BioVariables.HUMAN_CAP, BioVariables.CELL_CAP, BioVariables.CULL_POLICY),
+				new CarryingCapacity(BioVariables.GRAPHICS_WIDTH, BioVariables.GRAPHICS_LENGTH,
+					BioVariables.ZOMBIE_CAP, BioVariables.CELL_CAP, BioVariables.CULL_POLICY));
+		}
+
+		//Optionally reuses the critters that die
+		if (BioVariables.PHENOTYPE_POOL)
+		{
+			pool = new PhenotypePool(BioVariables.PHENOTYPE_POOL_CAPACITY);
+			interact.setPhenotypePool(pool);
+		}
+
+		//Optionally puts the food in through a food field, around the
+		//saved centres when resuming
+		if (BioVariables.FOOD_FIELD && foodCentres != null)
+		{
+			foodField = new FoodField(BioVariables.GRAPHICS_WIDTH, BioVariables.GRAPHICS_LENGTH,
+				BioVariables.FOOD_MODEL, BioVariables.MAX_FOOD, foodCentres,
+				BioVariables.FOOD_CLUSTER_RADIUS, BioVariables.FOOD_CAPACITY,
+				BioVariables.FOOD_REGROWTH, r);
+		}
+		else if (BioVariables.FOOD_FIELD)
+		{
+			foodField = new FoodField(BioVariables.GRAPHICS_WIDTH, BioVariables.GRAPHICS_LENGTH,
+				BioVariables.FOOD_MODEL, BioVariables.MAX_FOOD, BioVariables.FOOD_CLUSTERS,
+				BioVariables.FOOD_CLUSTER_RADIUS, BioVariables.FOOD_CAPACITY,
+				BioVariables.FOOD_REGROWTH, r);
+		}
+
+		//Optionally lets critters sense further than the cells next to them
+		if (BioVariables.SENSOR_RADIUS > 1)
+		{
+			sensors = new SensorField(BioVariables.GRAPHICS_WIDTH,
+				BioVariables.GRAPHICS_LENGTH, BioVariables.SENSOR_RADIUS);
+			interact.setSensorField(sensors);
+		}
+
+		//Puts every human and zombie in the environment once. From then on
+		//Interaction moves them from cell to cell, and the cells that changed
+		//are all that gets redrawn or looked at by the scheduler.
+		//Optionally moves the genomes into an arena off the heap. The
+		//children and zombies made from them are copied in there too.
+		if (BioVariables.GENOME_ARENA && hPop.getSize() > 0
+			&& hPop.getPhenotype(0).getChromosome() instanceof BitArrayChromosome)
+		{
+			arena = new GenomeArena(
+				((BitArrayChromosome)hPop.getPhenotype(0).getChromosome()).length(),
+				BioVariables.GENOME_ARENA_CAPACITY);
+			for (int n=0; n<hPop.getSize(); n++)
+			{
+				moveIntoArena(hPop.getPhenotype(n));
+			}
+			for (int n=0; n<zPop.getSize(); n++)
+			{
+				moveIntoArena(zPop.getPhenotype(n));
+			}
+		}
+
+		environment.setTrackChanges(true);
+		environment.setBitplanes(BioVariables.BITPLANE_SENSING);
+		environment.clearCritters();
+		for (int n=0; n<hPop.getSize(); n++)
+		{
+			Phenotype human = hPop.getPhenotype(n);
+			environment.addHuman(human.getXloc(), human.getYloc());
+			environment.addHumanPhenotype(human, human.getXloc(), human.getYloc());
+			if (scheduler != null)
+			{
+				scheduler.add(human, false);
+			}
+		}
+		for (int n=0; n<zPop.getSize(); n++)
+		{
+			Phenotype zombie = zPop.getPhenotype(n);
+			environment.addZombie(zombie.getXloc(), zombie.getYloc());
+			environment.addZombiePhenotype(zombie, zombie.getXloc(), zombie.getYloc());
+			if (scheduler != null)
+			{
+				scheduler.add(zombie, true);
+			}
+		}
+	}
+
+	/**
+	 * Sets what the grid is shown on. Pass null to show it nowhere.
+	 */
+	public void setDisplay(Display display)
+	{
+		this.display = display;
+	}
+
+	/**
+	 * Runs one tick. The statistics of the tick are in the Interaction's
+	 * TickStatistics afterwards, ready to be measured.
+	 *
+	 * @param i - the number of the tick.
+	 */
+	public void tick(int i)
+	{
+		interact.getStatistics().reset();
+		interact.setTick(i);
+		long mark = timer.start();
+
+		//Add a random number of food each generation at a random position
+		if (foodField != null)
+		{
+			foodField.spawn(environment);
+		}
+		else
+		{
+			for (int i2=0; i2 < r.nextInt(BioVariables.MAX_FOOD); i2++)
+			{
+				int currX = r.nextInt(BioVariables.GRAPHICS_WIDTH);
+				int currY = r.nextInt(BioVariables.GRAPHICS_LENGTH);
+				environment.addFood(currX, currY);
+			}
+		}
+		mark = timer.lap(PhaseTimer.FOOD, mark);
+
+		//Wakes the sleepers something happened near, which catch up on
+		//the moves they slept through
+		if (scheduler != null)
+		{
+			scheduler.beginTick(environment, i);
+		}
+
+		//Redraws only the cells that changed since the last generation
+		if (display != null)
+		{
+			display.redraw(environment);
+		}
+
+		//Brings the wide senses up to date while the changes are known
+		if (sensors != null)
+		{
+			sensors.update(environment);
+		}
+		environment.clearChanges();
+		mark = timer.lap(PhaseTimer.GRID, mark);
+
+		if (display != null)
+		{
+			display.show();
+		}
+		mark = timer.lap(PhaseTimer.DISPLAY, mark);
+
+		//Moves each zombie, which takes it from its old cell in the
+		//environment to its new one
+		if (flowField != null)
+		{
+			flowField.compute(environment);
+		}
+		if (scheduler == null)
+		{
+			for (int i2 = 0; i2 < zPop.getSize(); i2++)
+			{
+				interact.updateZombie(zPop.getPhenotype(i2), environment, hPop, zPop);
+			}
+		}
+		else
+		{
+			//only the awake zombies are gone through. One with no human
+			//near it falls asleep instead of moving, unless the flow field
+			//is leading it somewhere.
+			for (int i2 = 0; i2 < scheduler.getAwakeCount(true); i2++)
+			{
+				Phenotype zombie = scheduler.getAwake(i2, true);
+				if (zombie == null)
+				{
+					continue;
+				}
+				if (flowField == null && scheduler.isQuiet(environment, zombie, true))
+				{
+					scheduler.sleep(zombie, i, interact.getQuietMove(zombie));
+					continue;
+				}
+				interact.updateZombie(zombie, environment, hPop, zPop);
+			}
+		}
+		mark = timer.lap(PhaseTimer.ZOMBIES, mark);
+
+		//Moves each human the same way. It may eat or breed where it lands.
+		if (scheduler == null)
+		{
+			for (int i2 = 0; i2 < hPop.getSize(); i2++)
+			{
+				interact.updateHuman(hPop.getPhenotype(i2), environment, hPop);
+			}
+		}
+		else
+		{
+			for (int i2 = 0; i2 < scheduler.getAwakeCount(false); i2++)
+			{
+				Phenotype human = scheduler.getAwake(i2, false);
+				if (human == null)
+				{
+					continue;
+				}
+				if (scheduler.isQuiet(environment, human, false))
+				{
+					scheduler.sleep(human, i, interact.getQuietMove(human));
+					continue;
+				}
+				interact.updateHuman(human, environment, hPop);
+			}
+		}
+		mark = timer.lap(PhaseTimer.HUMANS, mark);
+
+		//Settles what happened once everyone has moved
+		interact.birthChildren(environment, hPop);
+		interact.resolveDuels(environment, hPop, zPop);
+		interact.enforceCapacity(environment, hPop, zPop);
+		interact.recycleDead();
+		timer.stop(PhaseTimer.SETTLE, mark);
+		timer.endGeneration();
+
+		//Takes a snapshot every so many generations, with the sleepers
+		//caught up so their places and strengths are right
+		if (checkpoint != null && checkpointInterval > 0 && i % checkpointInterval == 0)
+		{
+			if (scheduler != null)
+			{
+				scheduler.wakeAll(environment, i + 1);
+			}
+			try
+			{
+				checkpoint.save(i, hPop, zPop, environment, foodField);
+			}
+			catch (IOException e)
+			{
+				System.out.println("Checkpoint failed: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Puts a human that came from outside the simulation, such as a
+	 * migrant, into the population and the environment.
+	 *
+	 * @param human - the human, at its cell.
+	 */
+	public void addHuman(Phenotype human)
+	{
+		moveIntoArena(human);
+		hPop.addPhenotype(human);
+		environment.addHuman(human.getXloc(), human.getYloc());
+		environment.addHumanPhenotype(human, human.getXloc(), human.getYloc());
+		if (scheduler != null)
+		{
+			scheduler.add(human, false);
+		}
+	}
+
+	/**
+	 * Takes a human out of the population, the environment and the
+	 * scheduler, for example one that leaves for another node.
+	 *
+	 * @param human - the human.
+	 */
+	public void removeHuman(Phenotype human)
+	{
+		hPop.removePhenotype(human);
+		environment.subtractHumanPhenotype(human, human.getXloc(), human.getYloc());
+		environment.subtractHuman(human.getXloc(), human.getYloc());
+		if (scheduler != null)
+		{
+			scheduler.remove(human);
+		}
+	}
+
+	/**
+	 * Waits for the last snapshot to reach the disk and stops the flow
+	 * field's threads.
+	 */
+	public void close()
+	{
+		if (checkpoint != null)
+		{
+			try
+			{
+				checkpoint.waitForWrite();
+			}
+			catch (IOException e)
+			{
+				System.out.println("Checkpoint failed: " + e.getMessage());
+			}
+		}
+		if (flowField != null)
+		{
+			flowField.close();
+		}
+	}
+
+	/**
+	 * Moves a critter's genome into the arena, if there is one and the
+	 * genome is not in it yet.
+	 */
+	private void moveIntoArena(Phenotype critter)
+	{
+		if (arena != null && critter.getChromosome() instanceof BitArrayChromosome)
+		{
+			((BitArrayChromosome)critter.getChromosome()).moveInto(arena);
+		}
+	}
+
+	/**
+	 * Returns the arena the genomes are kept in, or null if there is none.
+	 */
+	public GenomeArena getGenomeArena()
+	{
+		return arena;
+	}
+
+	/**
+	 * Returns the pool the dead critters go to, or null if there is none.
+	 */
+	public PhenotypePool getPhenotypePool()
+	{
+		return pool;
+	}
+
+	/**
+	 * Returns the tick scheduler, or null if there is none.
+	 */
+	public TickScheduler getTickScheduler()
+	{
+		return scheduler;
+	}
+}
@@ -0,0 +1,154 @@
+package evolution;
+
+import critter.*;
+import fitness.*;
+import genes.*;
+import chromosome.*;
+import numbers.IndexedMinHeap;
+
+/**
+ * Steady State Evolution Strategy
+ * instead of building a new population every generation, replaces the
+ * k least fit critters with children of parents chosen by the selection
+ * strategy and leaves the rest alone. The replaced critters are reused:
+ * each takes on its child's chromosome, so no Phenotypes are made and the
+ * population that comes back is the one that was passed in.
+ *
+ * The critters are kept in an indexed heap on fitness, by their place in
+ * the population, from one generation to the next. Each generation only
+ * the critters whose fitness changed have their keys updated in place, and
+ * places the population gained or lost are inserted or removed, so a
+ * population that is mostly the same as last time costs little heap work.
+ * The k least fit are then taken off, in log time each, before any child
+ * is made. Only then are the children given to them, so a child that
+ * turns out less fit than the critters left is never itself replaced in
+ * the same generation, and each is put back in the heap with its own
+ * fitness. Since the rest of the population is untouched this suits the
+ * Biosphere, where critters live on from one tick to the next.
+ */
+public class SteadyStateEvolutionStrategy extends EvolutionStrategy
+{
+	//the strength a replaced critter starts over with, as in
+	//ExplicitEvolutionStrategy
+	private static final double NEWBORN_STRENGTH = 10;
+
+	//the number of critters replaced each generation
+	private int replacements;
+
+	//gives each child its fitness
+	private FitnessFunction fitnessFunction;
+
+	//the critters' fitness by their place in the population, kept between
+	//generations and only reallocated when the population outgrows it
+	private IndexedMinHeap heap = new IndexedMinHeap(0);
+
+	//the number of places in the heap, the size of the population last time
+	private int tracked = 0;
+
+	//the places of the critters being replaced this generation
+	private int[] worst = new int[0];
+
+	/**
+	 * Creates a steady state strategy.
+	 *
+	 * @param replacements - the number of critters replaced each generation.
+	 * @param fitnessFunction - gives each child its fitness, which it
+	 * needs to take its place in the heap.
+	 */
+	public SteadyStateEvolutionStrategy(int replacements, FitnessFunction fitnessFunction)
+	{
+		if (replacements < 0)
+		{
+			throw new IllegalArgumentException("The number of replacements can " +
+				"not be negative.");
+		}
+		if (fitnessFunction == null)
+		{
+			throw new IllegalArgumentException("A fitness function is needed.");
+		}
+		this.replacements = replacements;
+		this.fitnessFunction = fitnessFunction;
+	}
+
+	/**
+	 * Replaces the least fit critters with children, in place. The
+	 * critters should have their fitness already, as they do for the
+	 * other strategies.
+	 *
+	 * @return - the same population, evolved.
+	 */
+	public Population evolvePopulation(Population pop,
+			SelectionStrategy strategy, GeneManipulator manipulator)
+	{
+		int size = pop.size();
+		if (heap.getCapacity() < size)
+		{
+			heap = new IndexedMinHeap(Math.max(size, 2 * heap.getCapacity()));
+			tracked = 0;
+		}
+
+		//brings the heap up to date with the population, changing only the
+		//keys of the critters whose fitness changed since last time
+		for (int i=size; i<tracked; i++)
+		{
+			heap.remove(i);
+		}
+		for (int i=0; i<size; i++)
+		{
+			double f = pop.getPhenotype(i).getFitness();
+			if (i >= tracked)
+			{
+				heap.insert(i, f);
+			}
+			else if (heap.getKey(i) != f)
+			{
+				heap.update(i, f);
+			}
+		}
+		tracked = size;
+		if (size == 0)
+		{
+			return pop;
+		}
+
+		//takes the least fit critters off first, so none of the children
+		//made below can be chosen to be replaced
+		int count = Math.min(replacements, size);
+		if (worst.length < count)
+		{
+			worst = new int[count];
+		}
+		for (int n=0; n<count; n++)
+		{
+			worst[n] = heap.poll();
+		}
+
+		for (int n=0; n<count; n++)
+		{
+			Chromosome[] selected = strategy.selectChromosomes(pop);
+			Chromosome[] manipulated = manipulator.performGeneticOperations(selected);
+			if (manipulated != null && manipulated[0] != null)
+			{
+				//the next of the least fit critters becomes the child
+				Phenotype child = pop.getPhenotype(worst[n]);
+				child.setChromosome(manipulated[0]);
+				child.setStrength(NEWBORN_STRENGTH);
+				child.setFitness(fitnessFunction.evaluateFitness(child));
+			}
+
+			//back in the heap with its new fitness, or its old one if no
+			//child was made
+			heap.insert(worst[n], pop.getPhenotype(worst[n]).getFitness());
+		}
+
+		return pop;
+	}
+
+	/**
+	 * Returns the number of critters replaced each generation.
+	 */
+	public int getReplacements()
+	{
+		return replacements;
+	}
+}
@@ -11,7 +11,7 @@ import critter.Phenotype;
  * @author Zach Winchell
  *
  */
-public class ZombieFitnessFunction
+public class ZombieFitnessFunction implements FitnessFunction
 {
 	//stores the upper bound for our fitness evaluation
 	private double lowerBound;
@@ -86,60 +86,65 @@ public class HumanCrossover implements GeneticOperator
 		BitArrayChromosome dad = (BitArrayChromosome)parents[0];
 		//takes the second parent in the array.
 		BitArrayChromosome mom = (BitArrayChromosome)parents[1];
-		Chromosome dadsGenes = null;
-		Chromosome momsGenes = null;
-		int pointAtCrossover = 0;
-		String[] dna = new String[3];
-		dna[0]="1";
 		
+		//the child starts as a copy of dad and takes mom's genes after
+		//each crossover point
+		BitArrayChromosome child = (BitArrayChromosome)dad.clone();
+		crossover(dad, mom, child);
+		
+		//puts the child in an array and returns the array.
+		Chromosome[] returnedChild = new Chromosome[1];
+		returnedChild[0] = child;
+		
+		return returnedChild;
+	}
+	
+	/**
+	 * Writes the child of two parents into a chromosome that already
+	 * exists, without making any new objects. The child is human (its
+	 * first row is 1) and each of its other two rows is dad's genes up to
+	 * a random point followed by mom's genes from that point on, the
+	 * point picked anew for each row, as performOperation does.
+	 * @param dad - gives the genes before each crossover point.
+	 * @param mom - gives the genes from each crossover point on.
+	 * @param child - set to the child, it may not be either parent. Its
+	 * rows must be as long as the parents'.
+	 */
+	public void crossover(BitArrayChromosome dad, BitArrayChromosome mom,
+		BitArrayChromosome child)
+	{
 		Random randNumGen = ALifeRandom.getRandomNumberGenerator();
+		child.setBit(0, 0, 1);
 
 		//BEGIN: 2nd row (weights array)
 		//randomly selects a number between 0 and the length of the 
 		//dad chromosome
-		pointAtCrossover = 1+randNumGen.nextInt((dad.length()[1])-1);
-		//takes the section of dads genes determined by the random 
-		//number selection and stores them in a new Chromosome 
-		//called dadsGenes
-		dadsGenes = dad.getGene(1,0, pointAtCrossover);
-		//takes the section of moms genes determined by the random 
-		//number selection and stores them in a new Chromosome 
-		//called momsGenes.
-		momsGenes = mom.getGene(1,pointAtCrossover, mom.length()[1]);
-		//constructs the toString value of mom and dads genes 
-		//added together
-		dna[1] = dadsGenes.toString() + momsGenes.toString();
-		//System.out.println("For Weights: " + pointAtCrossover);
-		//System.out.println(dadsGenes.toString() + " | " + momsGenes.toString());
+		int pointAtCrossover = 1+randNumGen.nextInt((dad.getRowLength(1))-1);
+		child.spliceRow(1, dad, mom, pointAtCrossover);
 		
 		//BEGIN: 3nd row (threshold(Theta) array)
-		//randomly selects a number between 0 and the length of the 
-		//dad chromosome
-		pointAtCrossover = 1+randNumGen.nextInt((dad.length()[2])-1);
-		//takes the section of dads genes determined by the random 
-		//number selection and stores them in a new Chromosome 
-		//called dadsGenes
-		dadsGenes = dad.getGene(2,0, pointAtCrossover);
-		//takes the section of moms genes determined by the random 
-		//number selection and stores them in a new Chromosome 
-		//called momsGenes.
-		momsGenes = mom.getGene(2,pointAtCrossover, mom.length()[2]);
-		//constructs the toString value of mom and dads genes 
-		//added together
-		dna[2] = dadsGenes.toString() + momsGenes.toString();
-		//System.out.println(dadsGenes.toString() + " | " + momsGenes.toString());
-		//System.out.println("For Thresholds: " + pointAtCrossover);
-		
-		
-		
-		//creates a new BitChromosome using the string constructor
-		//of BitChromosome to form the child.
-		BitArrayChromosome child = new BitArrayChromosome(dna);
-		//puts the child in an array and returns the array.
-		Chromosome[] returnedChild = new Chromosome[1];
-		returnedChild[0] = child;
-		
-		return returnedChild;
+		pointAtCrossover = 1+randNumGen.nextInt((dad.getRowLength(2))-1);
+		child.spliceRow(2, dad, mom, pointAtCrossover);
+	}
+	
+	/**
+	 * Draws whether a crossover will happen, with the crossover
+	 * probability, as performOperation does before it breeds.
+	 * @return - true if the parents will breed.
+	 */
+	public boolean willCrossover()
+	{
+		return ALifeRandom.getRandomNumberGenerator().nextDouble() <= crossoverProbability;
+	}
+	
+	/**
+	 * Sets the crossover probability, so one operator can be used for
+	 * every pair of parents.
+	 * @param crossoverProbability - the chance to perform a crossover.
+	 */
+	public void setCrossoverProbability(double crossoverProbability)
+	{
+		this.crossoverProbability = crossoverProbability;
 	}	
 }
 			
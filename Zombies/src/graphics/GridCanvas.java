@@ -0,0 +1,147 @@
+package graphics;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import javax.swing.JComponent;
+
+/**
+ * Draws a whole grid of pictures into one off-screen image and paints that
+ * image. <code>GridGraphics</code> uses this instead of one
+ * <code>ImagePanel</code> per cell when the grid is too large for a panel
+ * per cell. A cell is only redrawn in the image when it changes, and only
+ * the part of the window it covers is repainted.
+ * <p>
+ * Cells are drawn by the simulation and painted by the Swing thread, so
+ * both lock the image while they use it.
+ */
+public class GridCanvas extends JComponent
+{
+    //-------------------------------------------------
+    //constants
+
+    private static final long serialVersionUID = 1L;
+
+    //-------------------------------------------------
+    //instance variables
+
+    //the off-screen image holding every cell
+    private BufferedImage image = null;
+
+    //draws into the image, kept for the life of the canvas
+    private Graphics2D imageGraphics = null;
+
+    //-------------------------------------------------
+    //constructors
+
+    /**
+     * Creates a canvas of the specified size, filled with the background
+     * color.
+     *
+     * @param width
+     *            In pixels.
+     * @param height
+     *            In pixels.
+     * @param background
+     *            The color the canvas starts out as.
+     */
+    public GridCanvas(int width, int height, Color background)
+    {
+        super();
+
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        imageGraphics = image.createGraphics();
+        imageGraphics.setColor(background);
+        imageGraphics.fillRect(0, 0, width, height);
+
+        setPreferredSize(new Dimension(width, height));
+        setOpaque(true);
+    }
+
+    //-------------------------------------------------
+    //public methods
+
+    /**
+     * Draws one cell into the off-screen image: the background, the border
+     * (if any) and the picture (if any). The picture is drawn with the
+     * cell's top left corner as its origin, just as an
+     * <code>ImagePanel</code> would draw it. Nothing shows until the cell's
+     * area is repainted.
+     *
+     * @param x
+     *            The left side of the cell in pixels.
+     * @param y
+     *            The top of the cell in pixels.
+     * @param width
+     *            The width of the cell in pixels.
+     * @param height
+     *            The height of the cell in pixels.
+     * @param p
+     *            The picture to be displayed. If null, the cell is left
+     *            empty.
+     * @param background
+     *            The background color of the cell.
+     * @param border
+     *            The color of the cell's border, or null for no border.
+     */
+    public void drawCell(int x, int y, int width, int height, Picture p,
+        Color background, Color border)
+    {
+        synchronized(image)
+        {
+            imageGraphics.setClip(x, y, width, height);
+            imageGraphics.setColor(background);
+            imageGraphics.fillRect(x, y, width, height);
+
+            if(border != null)
+            {
+                imageGraphics.setColor(border);
+                imageGraphics.drawRect(x, y, width - 1, height - 1);
+            }
+
+            if(p != null)
+            {
+                imageGraphics.translate(x, y);
+                if(p.isImage() && (p.getImage() != null))
+                {
+                    imageGraphics.drawImage(p.getImage(), 0, 0, null);
+                }
+                else if(p.getShape() != null)
+                {
+                    if(p.getShapeColor() != null)
+                    {
+                        imageGraphics.setPaint(p.getShapeColor());
+                    }
+                    imageGraphics.fill(p.getShape());
+                }
+                imageGraphics.translate(-x, -y);
+            }
+            imageGraphics.setClip(null);
+        }
+    }
+
+    /**
+     * Gets the off-screen image the cells are drawn into.
+     *
+     * @return The image.
+     */
+    public BufferedImage getImage()
+    {
+        return image;
+    }
+
+    /**
+     * Paints the part of the off-screen image that needs repainting. Never
+     * call this method directly, use <code>repaint</code> instead.
+     */
+    public void paintComponent(Graphics g)
+    {
+        //the clip is already set to the area being repainted
+        synchronized(image)
+        {
+            g.drawImage(image, 0, 0, null);
+        }
+    }
+}
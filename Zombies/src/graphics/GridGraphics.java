@@ -48,6 +48,13 @@ import javax.swing.JFrame;
  * <code>addPictureToGrid(9, 10, circlePicture, true)</code> on a 10 by 10
  * grid will put the image at coordinates (9, 0).
  * <p>
+ * Only the cells changed since the last <code>redisplay</code> are
+ * repainted. Grids with more than <code>MAX_PANEL_CELLS</code> cells are
+ * drawn into a single off-screen image (a <code>GridCanvas</code>) instead
+ * of one panel per cell, so a grid of hundreds of thousands of cells can
+ * still be opened. Cell borders are left out when the cells are too small
+ * to show them.
+ * <p>
  * This code was developed for classroom use at Regis University. Any other use
  * is prohibited without permission from the faculty member and author, David
  * Bahr.
@@ -69,6 +76,16 @@ public class GridGraphics
      */
     public static final int DEFAULT_FRAME_WIDTH = 600;
 
+    /**
+     * The largest grid, in cells, that gets a panel for each cell. Larger
+     * grids are drawn on a single canvas.
+     */
+    public static final int MAX_PANEL_CELLS = 2500;
+
+    //cells smaller than this (in pixels) on the canvas are drawn without
+    //borders
+    private static final int MIN_BORDERED_CELL_SIZE = 4;
+
     //colors of the frame
     private static final Color DEFAULT_BACKGROUND_COLOR = Color.LIGHT_GRAY;
 
@@ -108,6 +125,23 @@ public class GridGraphics
     //the panels that hold each cell's image
     private ImagePanel[][] cellPanel = null;
 
+    //used instead of the panels for large grids, along with the picture
+    //in each cell
+    private GridCanvas canvas = null;
+
+    private Picture[][] cellPicture = null;
+
+    //the cells changed since the last redisplay, each as
+    //row * numHorizontalCells + col and each listed once
+    private int[] dirtyCells = null;
+
+    private boolean[] cellDirty = null;
+
+    private int dirtyCount = 0;
+
+    //true when every cell has to be repainted
+    private boolean allDirty = false;
+
     private Container contentPane = null;
 
     private JFrame viewFrame = null;
@@ -191,8 +225,17 @@ public class GridGraphics
         createFrame();
 
         //Add each cell's panel to the content pane of the frame.
-        //These cells hold an image.
-        addCellPanelsToFrame();
+        //These cells hold an image. Large grids get one canvas instead.
+        dirtyCells = new int[numVerticalCells * numHorizontalCells];
+        cellDirty = new boolean[numVerticalCells * numHorizontalCells];
+        if(numVerticalCells * numHorizontalCells > MAX_PANEL_CELLS)
+        {
+            addCanvasToFrame();
+        }
+        else
+        {
+            addCellPanelsToFrame();
+        }
 
         //make the graphics visible
         viewFrame.setVisible(true);
@@ -235,11 +278,83 @@ public class GridGraphics
         }
     }
 
+    /**
+     * Large grids are drawn on one canvas. This creates it and adds it to the
+     * frame. The cells are sized to fill the frame's content pane exactly.
+     */
+    private void addCanvasToFrame()
+    {
+        //the space left once the frame's own border is taken out, which
+        //is only known once the frame has been shown
+        viewFrame.setVisible(true);
+        Insets frameInsets = viewFrame.getInsets();
+        int width = frameWidth - frameInsets.left - frameInsets.right;
+        int height = frameHeight - frameInsets.top - frameInsets.bottom;
+        cellWidth = Math.max(1, width / numHorizontalCells);
+        cellHeight = Math.max(1, height / numVerticalCells);
+
+        canvas = new GridCanvas(cellWidth * numHorizontalCells, cellHeight
+            * numVerticalCells, backgroundColor);
+        cellPicture = new Picture[numVerticalCells][numHorizontalCells];
+        contentPane.add(canvas);
+        viewFrame.validate();
+
+        //draws the empty cells
+        allDirty = true;
+        redisplay();
+    }
+
+    /**
+     * Draws a cell of the canvas into its off-screen image.
+     */
+    private void drawCanvasCell(int row, int col)
+    {
+        Color border = null;
+        if(cellWidth >= MIN_BORDERED_CELL_SIZE
+            && cellHeight >= MIN_BORDERED_CELL_SIZE)
+        {
+            border = borderColor;
+        }
+        canvas.drawCell(col * cellWidth, row * cellHeight, cellWidth,
+            cellHeight, cellPicture[row][col], backgroundColor, border);
+    }
+
+    /**
+     * Records that a cell has to be repainted at the next redisplay.
+     */
+    private void markDirty(int row, int col)
+    {
+        int cell = row * numHorizontalCells + col;
+        if(!cellDirty[cell])
+        {
+            cellDirty[cell] = true;
+            dirtyCells[dirtyCount] = cell;
+            dirtyCount++;
+        }
+    }
+
     /**
      * This calculates the space (in pixels) taken by each cell's border.
      */
     private void calculateCellInsetsForScalingImages()
     {
+        //The canvas' cells fill the content pane exactly, so only the
+        //one pixel border (if it is drawn) takes up space.
+        if(canvas != null)
+        {
+            double inset = 0;
+            if(cellWidth >= MIN_BORDERED_CELL_SIZE
+                && cellHeight >= MIN_BORDERED_CELL_SIZE)
+            {
+                inset = 1;
+            }
+            bottomInset = inset;
+            leftInset = inset;
+            rightInset = inset;
+            topInset = inset;
+            return;
+        }
+
         //Each cell's border takes up space, so we get the number
         //of pixels that the shape must be inset to avoid this
         //border. All cells are the same, so this only need to get
@@ -404,7 +519,15 @@ public class GridGraphics
         }
 
         //add to the graphics
-        cellPanel[row][col].setPicture(p);
+        if(canvas != null)
+        {
+            cellPicture[row][col] = p;
+        }
+        else
+        {
+            cellPanel[row][col].setPicture(p);
+        }
+        markDirty(row, col);
     }
 
     /**
@@ -450,13 +573,29 @@ public class GridGraphics
      *            would be four grid cells to the right of the left side (start
      *            counting from 0).
      * 
-     * @return The cell at the specified position.
+     * @return The cell at the specified position, or null if the grid is
+     *         drawn on a single canvas.
      */
     public ImagePanel getCell(int row, int col)
     {
+        if(cellPanel == null)
+        {
+            return null;
+        }
         return cellPanel[row][col];
     }
 
+    /**
+     * Gets the canvas the grid is drawn on when it is too large for a panel
+     * per cell.
+     * 
+     * @return The canvas, or null if each cell has its own panel.
+     */
+    public GridCanvas getCanvas()
+    {
+        return canvas;
+    }
+
     /**
      * Gets the border used by each cell in the window.
      * 
@@ -544,7 +683,8 @@ public class GridGraphics
         viewFrame.setBackground(backgroundColor);
 
         //also set background of JPanels in each cell.
-        for(int i = 0; i < numVerticalCells; i++)
+        allDirty = true;
+        for(int i = 0; cellPanel != null && i < numVerticalCells; i++)
         {
             for(int j = 0; j < numHorizontalCells; j++)
             {
@@ -570,7 +710,8 @@ public class GridGraphics
         borderColor = c;
         borderStyle = BorderFactory.createLineBorder(borderColor);
 
-        for(int i = 0; i < numVerticalCells; i++)
+        allDirty = true;
+        for(int i = 0; cellPanel != null && i < numVerticalCells; i++)
         {
             for(int j = 0; j < numHorizontalCells; j++)
             {
@@ -583,11 +724,62 @@ public class GridGraphics
     }
 
     /**
-     * Updates the graphics window to reflect any changes.
+     * Updates the graphics window to reflect any changes. Only the cells that
+     * changed since the last call are repainted.
      */
     public void redisplay()
     {
-        viewFrame.repaint();
+        if(canvas != null)
+        {
+            //redraws the changed cells in the off-screen image first
+            if(allDirty)
+            {
+                for(int i = 0; i < numVerticalCells; i++)
+                {
+                    for(int j = 0; j < numHorizontalCells; j++)
+                    {
+                        drawCanvasCell(i, j);
+                    }
+                }
+            }
+            else
+            {
+                for(int n = 0; n < dirtyCount; n++)
+                {
+                    drawCanvasCell(dirtyCells[n] / numHorizontalCells,
+                        dirtyCells[n] % numHorizontalCells);
+                }
+            }
+        }
+
+        if(allDirty)
+        {
+            viewFrame.repaint();
+        }
+        else
+        {
+            for(int n = 0; n < dirtyCount; n++)
+            {
+                int row = dirtyCells[n] / numHorizontalCells;
+                int col = dirtyCells[n] % numHorizontalCells;
+                if(canvas != null)
+                {
+                    canvas.repaint(col * cellWidth, row * cellHeight,
+                        cellWidth, cellHeight);
+                }
+                else
+                {
+                    cellPanel[row][col].repaint();
+                }
+            }
+        }
+
+        for(int n = 0; n < dirtyCount; n++)
+        {
+            cellDirty[dirtyCells[n]] = false;
+        }
+        dirtyCount = 0;
+        allDirty = false;
     }
 
     /**
@@ -613,7 +805,15 @@ public class GridGraphics
 
         //display a blank image
         Picture p = null;
-        cellPanel[row][col].setPicture(p);
+        if(canvas != null)
+        {
+            cellPicture[row][col] = p;
+        }
+        else
+        {
+            cellPanel[row][col].setPicture(p);
+        }
+        markDirty(row, col);
     }
 
     /**
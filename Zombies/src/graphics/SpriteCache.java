@@ -0,0 +1,203 @@
+package graphics;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import javax.imageio.ImageIO;
+
+/**
+ * Keeps the pictures used by the world viewers, each loaded and scaled only
+ * once for each cell size. A picture can come from a file or from an image
+ * already in memory. The first time it is asked for at a given size it is
+ * drawn, scaled, into a new image in the screen's own format (so Java2D can
+ * keep it in video memory), and every later request for it returns that
+ * same picture. Reloading a picture from its file on every tick is then
+ * nearly free.
+ * <p>
+ * A file that can not be loaded is remembered as well, so the error is only
+ * reported once.
+ * <p>
+ * Images passed in should already be fully loaded, as those read by
+ * <code>ImageIO</code> are.
+ */
+public class SpriteCache
+{
+    //-------------------------------------------------
+    //instance variables
+
+    //the scaled pictures, by where they came from and their size
+    private HashMap sprites = new HashMap();
+
+    //the files that could not be loaded
+    private HashMap failedFiles = new HashMap();
+
+    //-------------------------------------------------
+    //public methods
+
+    /**
+     * Gets the picture in the specified file, scaled to the specified size.
+     * The file is only read the first time.
+     *
+     * @param filePath
+     *            The path to the image.
+     * @param width
+     *            The width of the picture in pixels.
+     * @param height
+     *            The height of the picture in pixels.
+     * @return The scaled picture, or null if the file could not be loaded.
+     */
+    public Picture getPicture(String filePath, int width, int height)
+    {
+        SpriteKey key = new SpriteKey(filePath, width, height);
+        Picture p = (Picture) sprites.get(key);
+        if(p != null || failedFiles.containsKey(filePath))
+        {
+            return p;
+        }
+
+        Image image = null;
+        try
+        {
+            image = ImageIO.read(new File(filePath));
+        }
+        catch(IOException fileProblem)
+        {
+            System.out.println("Class: SpriteCache. Method: getPicture. "
+                + "Could not load the file " + filePath + ".");
+        }
+        if(image == null)
+        {
+            failedFiles.put(filePath, filePath);
+            return null;
+        }
+
+        p = new Picture(scale(image, width, height));
+        sprites.put(key, p);
+        return p;
+    }
+
+    /**
+     * Gets the specified image scaled to the specified size. The image is
+     * only scaled the first time.
+     *
+     * @param image
+     *            The image.
+     * @param width
+     *            The width of the picture in pixels.
+     * @param height
+     *            The height of the picture in pixels.
+     * @return The scaled picture, or null if the image is null.
+     */
+    public Picture getPicture(Image image, int width, int height)
+    {
+        if(image == null)
+        {
+            return null;
+        }
+
+        SpriteKey key = new SpriteKey(image, width, height);
+        Picture p = (Picture) sprites.get(key);
+        if(p == null)
+        {
+            p = new Picture(scale(image, width, height));
+            sprites.put(key, p);
+        }
+        return p;
+    }
+
+    /**
+     * Forgets every picture, so they will be loaded and scaled again.
+     */
+    public void clear()
+    {
+        sprites.clear();
+        failedFiles.clear();
+    }
+
+    /**
+     * Gets the number of scaled pictures kept.
+     *
+     * @return The number of pictures.
+     */
+    public int size()
+    {
+        return sprites.size();
+    }
+
+    //-------------------------------------------------
+    //private methods
+
+    /**
+     * Draws an image, scaled, into a new image in the screen's format.
+     */
+    private static BufferedImage scale(Image image, int width, int height)
+    {
+        width = Math.max(1, width);
+        height = Math.max(1, height);
+
+        BufferedImage scaled = null;
+        if(GraphicsEnvironment.isHeadless())
+        {
+            scaled = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_ARGB);
+        }
+        else
+        {
+            scaled = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration()
+                .createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        }
+
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+            RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return scaled;
+    }
+
+    //-------------------------------------------------
+    //inner classes
+
+    /**
+     * Where a picture came from (a file path or an image) and the size it
+     * was scaled to.
+     */
+    private static class SpriteKey
+    {
+        private Object source;
+
+        private int width;
+
+        private int height;
+
+        public SpriteKey(Object source, int width, int height)
+        {
+            this.source = source;
+            this.width = width;
+            this.height = height;
+        }
+
+        public boolean equals(Object o)
+        {
+            if(!(o instanceof SpriteKey))
+            {
+                return false;
+            }
+            SpriteKey other = (SpriteKey) o;
+            return source.equals(other.source) && width == other.width
+                && height == other.height;
+        }
+
+        public int hashCode()
+        {
+            return (source.hashCode() * 31 + width) * 31 + height;
+        }
+    }
+}
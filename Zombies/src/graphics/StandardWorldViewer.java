@@ -5,9 +5,6 @@ import java.awt.geom.Ellipse2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.Image;
 import java.awt.Shape;
-import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
 
 /**
  * This class provides a graphics window that displays artificial life critters
@@ -84,6 +81,9 @@ public class StandardWorldViewer extends GridGraphics
 
     private Picture wallPicture = null;
 
+    //the pictures loaded from files or images, scaled to the cells
+    private SpriteCache sprites = new SpriteCache();
+
     //-------------------------------------------------
     //constructors
 
@@ -250,9 +250,9 @@ public class StandardWorldViewer extends GridGraphics
      */
     public void setCritterImage(Image i)
     {
-        //rescale the image to fit the cells
-        critterPicture = new Picture(RescaleTransform.resize(i,
-            getAdjustedCellWidth(), getAdjustedCellHeight()));
+        //rescale the image to fit the cells, once for each image
+        critterPicture = sprites.getPicture(i, getAdjustedCellWidth(),
+            getAdjustedCellHeight());
     }
 
     /**
@@ -288,23 +288,14 @@ public class StandardWorldViewer extends GridGraphics
      */
     public void setCritterImage(String filePath)
     {
-        Image critterImage = null;
-
-        try
-        {
-            critterImage = ImageIO.read(new File(filePath));
-        }
-        catch(IOException fileProblem)
+        //loaded and scaled only the first time, a file that can not be
+        //loaded leaves the old picture
+        Picture p = sprites.getPicture(filePath, getAdjustedCellWidth(),
+            getAdjustedCellHeight());
+        if(p != null)
         {
-            System.out
-                .println("Class: StandardWorldViewer. Method: setCritterImage. "
-                    + "Could not load the file " + filePath + ".");
-            fileProblem.printStackTrace();
+            critterPicture = p;
         }
-
-        //rescale the image to fit the cells
-        critterPicture = new Picture(RescaleTransform.resize(critterImage,
-            getAdjustedCellWidth(), getAdjustedCellHeight()));
     }
 
     /**
@@ -320,9 +311,9 @@ public class StandardWorldViewer extends GridGraphics
      */
     public void setFoodImage(Image i)
     {
-        //rescale the image to fit the cells
-        foodPicture = new Picture(RescaleTransform.resize(i,
-            getAdjustedCellWidth(), getAdjustedCellHeight()));
+        //rescale the image to fit the cells, once for each image
+        foodPicture = sprites.getPicture(i, getAdjustedCellWidth(),
+            getAdjustedCellHeight());
     }
 
     /**
@@ -356,23 +347,14 @@ public class StandardWorldViewer extends GridGraphics
      */
     public void setFoodImage(String filePath)
     {
-        Image foodImage = null;
-
-        try
+        //loaded and scaled only the first time, a file that can not be
+        //loaded leaves the old picture
+        Picture p = sprites.getPicture(filePath, getAdjustedCellWidth(),
+            getAdjustedCellHeight());
+        if(p != null)
         {
-            foodImage = ImageIO.read(new File(filePath));
+            foodPicture = p;
         }
-        catch(IOException fileProblem)
-        {
-            System.out
-                .println("Class: StandardWorldViewer. Method: setFoodImage. "
-                    + "Could not load the file " + filePath + ".");
-            fileProblem.printStackTrace();
-        }
-
-        //rescale the image to fit the cells
-        foodPicture = new Picture(RescaleTransform.resize(foodImage,
-            getAdjustedCellWidth(), getAdjustedCellHeight()));
     }
 
     /**
@@ -388,9 +370,9 @@ public class StandardWorldViewer extends GridGraphics
      */
     public void setWallImage(Image i)
     {
-        //rescale the image to fit the cells
-        wallPicture = new Picture(RescaleTransform.resize(i,
-            getAdjustedCellWidth(), getAdjustedCellHeight()));
+        //rescale the image to fit the cells, once for each image
+        wallPicture = sprites.getPicture(i, getAdjustedCellWidth(),
+            getAdjustedCellHeight());
     }
 
     /**
@@ -424,22 +406,13 @@ public class StandardWorldViewer extends GridGraphics
      */
     public void setWallImage(String filePath)
     {
-        Image wallImage = null;
-
-        try
+        //loaded and scaled only the first time, a file that can not be
+        //loaded leaves the old picture
+        Picture p = sprites.getPicture(filePath, getAdjustedCellWidth(),
+            getAdjustedCellHeight());
+        if(p != null)
         {
-            wallImage = ImageIO.read(new File(filePath));
+            wallPicture = p;
         }
-        catch(IOException fileProblem)
-        {
-            System.out
-                .println("Class: StandardWorldViewer. Method: setWallImage. "
-                    + "Could not load the file " + filePath + ".");
-            fileProblem.printStackTrace();
-        }
-
-        //rescale the image to fit the cells
-        wallPicture = new Picture(RescaleTransform.resize(wallImage,
-            getAdjustedCellWidth(), getAdjustedCellHeight()));
     }
 }
@@ -13,6 +13,10 @@ public class ALifeRandom
 	//private Random instance
 	private static Random aLifeRandom = new Random();
 	
+	//generators that replace the shared one on particular threads, so
+	//islands evolving on their own threads each have their own stream
+	private static ThreadLocal threadRandom = new ThreadLocal();
+	
 	//private constructor, appropriate for Singleton pattern
 	private ALifeRandom()
 	{
@@ -25,9 +29,39 @@ public class ALifeRandom
 	 */
 	public static Random getRandomNumberGenerator()
 	{
-		
+			Random random = (Random)threadRandom.get();
+			if (random != null)
+			{
+				return random;
+			}
 			return aLifeRandom;
 
 	}
 	
+	/*
+	 * set Random Number method which replaces the static instance,
+	 * used when a checkpoint restores the generator's saved state
+	 */
+	public static void setRandomNumberGenerator(Random random)
+	{
+		aLifeRandom = random;
+	}
+	
+	/*
+	 * set Thread Random Number method which gives the calling thread its
+	 * own generator in place of the shared one, or goes back to the
+	 * shared one when passed null
+	 */
+	public static void setThreadRandomNumberGenerator(Random random)
+	{
+		if (random == null)
+		{
+			threadRandom.remove();
+		}
+		else
+		{
+			threadRandom.set(random);
+		}
+	}
+	
 }
@@ -0,0 +1,277 @@
+package numbers;
+
+/**
+ * Indexed Min Heap class
+ * a binary heap of the ids 0 to capacity-1, each with a double key,
+ * smallest key on top. Because the heap remembers where every id sits,
+ * the key of any id can be changed, or the id removed, in log time, so
+ * a population can keep its least fit (or weakest) critter on top while
+ * individual critters are replaced. Nothing is allocated after the heap
+ * is created.
+ */
+public class IndexedMinHeap
+{
+	//the ids in heap order
+	private int[] heap;
+
+	//where each id is in the heap, or -1 if it is not in it
+	private int[] position;
+
+	//the key of each id
+	private double[] keys;
+
+	private int size = 0;
+
+	/**
+	 * Creates an empty heap for the ids 0 to capacity-1.
+	 *
+	 * @param capacity - one more than the largest id.
+	 */
+	public IndexedMinHeap(int capacity)
+	{
+		if (capacity < 0)
+		{
+			throw new IllegalArgumentException("The capacity can not be negative.");
+		}
+		heap = new int[capacity];
+		position = new int[capacity];
+		keys = new double[capacity];
+		for (int i=0; i<capacity; i++)
+		{
+			position[i] = -1;
+		}
+	}
+
+	/**
+	 * Empties the heap.
+	 */
+	public void clear()
+	{
+		for (int i=0; i<size; i++)
+		{
+			position[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Adds an id to the heap.
+	 *
+	 * @param id - the id, not already in the heap.
+	 * @param key - its key.
+	 */
+	public void insert(int id, double key)
+	{
+		checkId(id);
+		if (position[id] >= 0)
+		{
+			throw new IllegalArgumentException("Id " + id + " is already in the heap.");
+		}
+		keys[id] = key;
+		heap[size] = id;
+		position[id] = size;
+		size++;
+		siftUp(size - 1);
+	}
+
+	/**
+	 * Adds the ids 0 to count-1 with the given keys, replacing whatever
+	 * the heap held. Takes linear time.
+	 *
+	 * @param newKeys - the key of each id.
+	 * @param count - the number of ids to add.
+	 */
+	public void build(double[] newKeys, int count)
+	{
+		if (count > heap.length || count > newKeys.length)
+		{
+			throw new IllegalArgumentException("Too many ids: " + count + ".");
+		}
+		clear();
+		for (int i=0; i<count; i++)
+		{
+			keys[i] = newKeys[i];
+			heap[i] = i;
+			position[i] = i;
+		}
+		size = count;
+		for (int i=size/2-1; i>=0; i--)
+		{
+			siftDown(i);
+		}
+	}
+
+	/**
+	 * Returns the id with the smallest key.
+	 */
+	public int peek()
+	{
+		if (size == 0)
+		{
+			throw new IllegalStateException("The heap is empty.");
+		}
+		return heap[0];
+	}
+
+	/**
+	 * Returns the smallest key.
+	 */
+	public double peekKey()
+	{
+		return keys[peek()];
+	}
+
+	/**
+	 * Removes and returns the id with the smallest key.
+	 */
+	public int poll()
+	{
+		int id = peek();
+		remove(id);
+		return id;
+	}
+
+	/**
+	 * Changes the key of an id in the heap.
+	 *
+	 * @param id - the id.
+	 * @param key - its new key.
+	 */
+	public void update(int id, double key)
+	{
+		checkId(id);
+		int index = position[id];
+		if (index < 0)
+		{
+			throw new IllegalArgumentException("Id " + id + " is not in the heap.");
+		}
+		double old = keys[id];
+		keys[id] = key;
+		if (key < old)
+		{
+			siftUp(index);
+		}
+		else
+		{
+			siftDown(index);
+		}
+	}
+
+	/**
+	 * Removes an id from the heap.
+	 *
+	 * @param id - the id.
+	 */
+	public void remove(int id)
+	{
+		checkId(id);
+		int index = position[id];
+		if (index < 0)
+		{
+			throw new IllegalArgumentException("Id " + id + " is not in the heap.");
+		}
+		size--;
+		position[id] = -1;
+		if (index == size)
+		{
+			return;
+		}
+
+		//the last id fills the hole
+		int last = heap[size];
+		heap[index] = last;
+		position[last] = index;
+		siftUp(index);
+		siftDown(position[last]);
+	}
+
+	/**
+	 * Returns true if the id is in the heap.
+	 */
+	public boolean contains(int id)
+	{
+		return id >= 0 && id < position.length && position[id] >= 0;
+	}
+
+	/**
+	 * Returns the key of an id in the heap.
+	 */
+	public double getKey(int id)
+	{
+		if (!contains(id))
+		{
+			throw new IllegalArgumentException("Id " + id + " is not in the heap.");
+		}
+		return keys[id];
+	}
+
+	/**
+	 * Returns the number of ids in the heap.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns one more than the largest id the heap can hold.
+	 */
+	public int getCapacity()
+	{
+		return heap.length;
+	}
+
+	private void siftUp(int index)
+	{
+		int id = heap[index];
+		double key = keys[id];
+		while (index > 0)
+		{
+			int parent = (index - 1) / 2;
+			if (keys[heap[parent]] <= key)
+			{
+				break;
+			}
+			heap[index] = heap[parent];
+			position[heap[index]] = index;
+			index = parent;
+		}
+		heap[index] = id;
+		position[id] = index;
+	}
+
+	private void siftDown(int index)
+	{
+		int id = heap[index];
+		double key = keys[id];
+		while (true)
+		{
+			int child = 2 * index + 1;
+			if (child >= size)
+			{
+				break;
+			}
+			if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]])
+			{
+				child++;
+			}
+			if (keys[heap[child]] >= key)
+			{
+				break;
+			}
+			heap[index] = heap[child];
+			position[heap[index]] = index;
+			index = child;
+		}
+		heap[index] = id;
+		position[id] = index;
+	}
+
+	private void checkId(int id)
+	{
+		if (id < 0 || id >= heap.length)
+		{
+			throw new IllegalArgumentException("Id " + id + " is out of range.");
+		}
+	}
+}
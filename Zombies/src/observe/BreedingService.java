@@ -0,0 +1,126 @@
+package observe;
+
+import java.util.Arrays;
+
+import chromosome.BitArrayChromosome;
+import critter.Phenotype;
+import critter.PhenotypePool;
+import critter.Population;
+import data.Environment;
+import genes.HumanCrossover;
+
+/**
+ * Breeding Service class
+ * breeds the humans that meet during a tick. When two humans meet, only
+ * the chance of them breeding is drawn and, if they will, the pair is
+ * written into a buffer of the tick's births. The children are made
+ * together at the end of the tick, once every human has moved, so the
+ * population and the environment's cell lists are not changed while the
+ * simulation is going through them, and a child first moves on the tick
+ * after it is born.
+ *
+ * One HumanCrossover is used for every pair and the buffer's arrays are
+ * kept from tick to tick. Each child's genome is written straight into
+ * its chromosome by HumanCrossover.crossover, a long at a time, rather
+ * than being built from strings. With a phenotype pool, the child and
+ * its chromosome are reused from critters that have died.
+ */
+public class BreedingService
+{
+	//the strength every child starts with
+	public static final double BIRTH_STRENGTH = 25;
+
+	//the one crossover used for every pair
+	private HumanCrossover crossover = new HumanCrossover(0);
+
+	//the tick's births: the parents and where the child is born
+	private Phenotype[] dads = new Phenotype[16];
+	private Phenotype[] moms = new Phenotype[16];
+	private int[] xs = new int[16];
+	private int[] ys = new int[16];
+	private int count = 0;
+
+	/**
+	 * Draws whether two humans that met will breed, and if they will adds
+	 * their child to the tick's births. The child is born where dad is.
+	 *
+	 * @param dad - the human that moved onto mom's cell.
+	 * @param mom - the human it met there.
+	 * @return - true if a child will be born.
+	 */
+	public boolean meet(Phenotype dad, Phenotype mom)
+	{
+		crossover.setCrossoverProbability((dad.getStrength() + mom.getStrength()) / 100);
+		if (!crossover.willCrossover())
+		{
+			return false;
+		}
+
+		if (count == dads.length)
+		{
+			dads = Arrays.copyOf(dads, 2 * count);
+			moms = Arrays.copyOf(moms, 2 * count);
+			xs = Arrays.copyOf(xs, 2 * count);
+			ys = Arrays.copyOf(ys, 2 * count);
+		}
+		dads[count] = dad;
+		moms[count] = mom;
+		xs[count] = dad.getXloc();
+		ys[count] = dad.getYloc();
+		count++;
+		return true;
+	}
+
+	/**
+	 * Makes the children of the tick and adds them to the population and
+	 * the environment, then empties the buffer.
+	 *
+	 * @param environment - the environment.
+	 * @param population - the human population.
+	 * @param pool - the pool the children and their chromosomes are
+	 * taken from, or null for none.
+	 * @param statistics - counts the births.
+	 * @param events - is told of each birth.
+	 */
+	public void birth(Environment environment, Population population,
+		PhenotypePool pool, TickStatistics statistics, SimulationEvents events)
+	{
+		for (int i=0; i<count; i++)
+		{
+			BitArrayChromosome dad = (BitArrayChromosome)dads[i].getChromosome();
+			BitArrayChromosome mom = (BitArrayChromosome)moms[i].getChromosome();
+			Phenotype pheno;
+			BitArrayChromosome child;
+			if (pool != null)
+			{
+				child = pool.copyChromosome(dad);
+				crossover.crossover(dad, mom, child);
+				pheno = pool.takeHuman(child, xs[i], ys[i], BIRTH_STRENGTH);
+			}
+			else
+			{
+				child = (BitArrayChromosome)dad.clone();
+				crossover.crossover(dad, mom, child);
+				pheno = new Phenotype(child, xs[i], ys[i], BIRTH_STRENGTH);
+			}
+
+			population.add(pheno);
+			statistics.countBirth();
+			environment.addHuman(xs[i], ys[i]);
+			environment.addHumanPhenotype(pheno, xs[i], ys[i]);
+			events.fireBred(dads[i], moms[i], pheno);
+		}
+
+		Arrays.fill(dads, 0, count, null);
+		Arrays.fill(moms, 0, count, null);
+		count = 0;
+	}
+
+	/**
+	 * Returns the number of children waiting to be born this tick.
+	 */
+	public int getPending()
+	{
+		return count;
+	}
+}
@@ -0,0 +1,356 @@
+package observe;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import numbers.IndexedMinHeap;
+import critter.Phenotype;
+import critter.Population;
+import data.Environment;
+
+/**
+ * Carrying Capacity class
+ * keeps one species' population under a cap, and the number of them in
+ * any one cell under a cap of its own, by culling the extra critters at
+ * the end of a tick. A cell's cap is applied first, then the species'
+ * cap to the critters left. The critters culled are picked by one of
+ * three policies:
+ *
+ * WEAKEST - the ones with the least strength, taken off an indexed min
+ * heap of the critters' strengths.
+ *
+ * RANDOM - an even random choice, made with reservoir sampling in one
+ * pass over the critters.
+ *
+ * OLDEST - the ones that have been in the population longest. Births and
+ * conversions are added to the end of a population and nothing is moved
+ * when a critter is removed, so the population is already a queue in
+ * age order and the oldest are simply the first ones in it.
+ *
+ * The choice works on the critters' places in the population, and the
+ * chosen ones are only marked. Interaction takes each of them out of the
+ * environment, then removeCulled takes them all out of the population in
+ * one pass, instead of searching the population for each one. The arrays
+ * are kept from tick to tick and only grow with the population.
+ */
+public class CarryingCapacity
+{
+	//the ways of choosing which critters to cull
+	public static final int WEAKEST = 0;
+	public static final int RANDOM = 1;
+	public static final int OLDEST = 2;
+
+	//a cap of no limit
+	public static final int NO_CAP = Integer.MAX_VALUE;
+
+	private int speciesCap;
+	private int cellCap;
+	private int policy;
+
+	//the tick each cell was last listed on, and its critters' places in
+	//the population while the cells are gone through
+	private int[] listed;
+	private int stamp = 0;
+	private int[] cellStart;
+	private int[] cellCount;
+	private int[] cells = new int[64];
+	private int[] byCell = new int[64];
+
+	//the critters marked to cull, by their place in the population
+	private boolean[] culled = new boolean[64];
+	private int[] victims = new int[64];
+	private int victimCount = 0;
+
+	//the strengths, for WEAKEST
+	private IndexedMinHeap heap = new IndexedMinHeap(0);
+	private double[] keys = new double[0];
+
+	/**
+	 * Creates the caps for one species on a grid.
+	 *
+	 * @param width - the number of x values in the environment.
+	 * @param length - the number of y values in the environment.
+	 * @param speciesCap - the most critters of the species, or NO_CAP.
+	 * @param cellCap - the most critters of the species in one cell, or
+	 * NO_CAP.
+	 * @param policy - WEAKEST, RANDOM or OLDEST.
+	 */
+	public CarryingCapacity(int width, int length, int speciesCap, int cellCap, int policy)
+	{
+		if (width < 1 || length < 1)
+		{
+			throw new IllegalArgumentException("The size of the grid must be positive.");
+		}
+		if (speciesCap < 1 || cellCap < 1)
+		{
+			throw new IllegalArgumentException("The caps must be positive.");
+		}
+		if (policy != WEAKEST && policy != RANDOM && policy != OLDEST)
+		{
+			throw new IllegalArgumentException("Unknown cull policy " + policy + ".");
+		}
+		this.speciesCap = speciesCap;
+		this.cellCap = cellCap;
+		this.policy = policy;
+		if (cellCap != NO_CAP)
+		{
+			listed = new int[width * length];
+			cellStart = new int[width * length];
+			cellCount = new int[width * length];
+		}
+	}
+
+	/**
+	 * Marks the critters to cull so the population is within both caps.
+	 * The population must not change until removeCulled is called.
+	 *
+	 * @param environment - the environment.
+	 * @param population - the species' population.
+	 * @param random - the random number generator.
+	 * @return - the number of critters marked.
+	 */
+	public int choose(Environment environment, Population population, Random random)
+	{
+		int size = population.getSize();
+		if (culled.length < size)
+		{
+			culled = new boolean[Math.max(size, 2 * culled.length)];
+		}
+		victimCount = 0;
+
+		if (cellCap != NO_CAP)
+		{
+			chooseInCells(environment, population, random);
+		}
+		if (size - victimCount > speciesCap)
+		{
+			chooseInSpecies(population, size - victimCount - speciesCap, random);
+		}
+		return victimCount;
+	}
+
+	/**
+	 * Getter for the number of critters marked by the last choose
+	 * @return - the number of critters
+	 */
+	public int getCulledCount()
+	{
+		return victimCount;
+	}
+
+	/**
+	 * Getter for a critter marked by the last choose
+	 * @param index - from 0 to getCulledCount()-1
+	 * @param population - the population choose was given.
+	 * @return - the critter
+	 */
+	public Phenotype getCulled(int index, Population population)
+	{
+		return population.getPhenotype(victims[index]);
+	}
+
+	/**
+	 * Takes the marked critters out of the population, keeping the order
+	 * of the rest, and clears the marks.
+	 *
+	 * @param population - the population choose was given.
+	 */
+	public void removeCulled(Population population)
+	{
+		if (victimCount == 0)
+		{
+			return;
+		}
+		int size = population.getSize();
+		int kept = 0;
+		for (int i=0; i<size; i++)
+		{
+			if (culled[i])
+			{
+				culled[i] = false;
+			}
+			else
+			{
+				if (kept != i)
+				{
+					population.set(kept, population.get(i));
+				}
+				kept++;
+			}
+		}
+		population.subList(kept, size).clear();
+		victimCount = 0;
+	}
+
+	/**
+	 * Marks the extra critters in every cell over the cell cap. The
+	 * critters are sorted by cell, keeping their order in the population
+	 * within each cell, so each crowded cell's critters can be chosen from
+	 * as one run.
+	 */
+	private void chooseInCells(Environment environment, Population population, Random random)
+	{
+		int size = population.getSize();
+		int length = environment.getLength();
+		stamp++;
+		if (stamp == 0)
+		{
+			Arrays.fill(listed, 0);
+			stamp = 1;
+		}
+		if (byCell.length < size)
+		{
+			byCell = new int[Math.max(size, 2 * byCell.length)];
+		}
+
+		//counts the critters in each cell
+		int cellTotal = 0;
+		for (int i=0; i<size; i++)
+		{
+			Phenotype critter = population.getPhenotype(i);
+			int cell = critter.getXloc() * length + critter.getYloc();
+			if (listed[cell] != stamp)
+			{
+				listed[cell] = stamp;
+				cellCount[cell] = 0;
+				if (cellTotal == cells.length)
+				{
+					cells = Arrays.copyOf(cells, 2 * cells.length);
+				}
+				cells[cellTotal] = cell;
+				cellTotal++;
+			}
+			cellCount[cell]++;
+		}
+
+		//nothing to do unless some cell is crowded
+		boolean crowded = false;
+		int start = 0;
+		for (int c=0; c<cellTotal; c++)
+		{
+			cellStart[cells[c]] = start;
+			start += cellCount[cells[c]];
+			crowded |= cellCount[cells[c]] > cellCap;
+		}
+		if (!crowded)
+		{
+			return;
+		}
+
+		for (int i=0; i<size; i++)
+		{
+			Phenotype critter = population.getPhenotype(i);
+			int cell = critter.getXloc() * length + critter.getYloc();
+			byCell[cellStart[cell]] = i;
+			cellStart[cell]++;
+		}
+		for (int c=0; c<cellTotal; c++)
+		{
+			int count = cellCount[cells[c]];
+			if (count > cellCap)
+			{
+				choose(population, byCell, cellStart[cells[c]] - count, count,
+					count - cellCap, random);
+			}
+		}
+	}
+
+	/**
+	 * Marks the extra critters over the species cap, from those not
+	 * already marked.
+	 */
+	private void chooseInSpecies(Population population, int extra, Random random)
+	{
+		int size = population.getSize();
+		if (byCell.length < size)
+		{
+			byCell = new int[Math.max(size, 2 * byCell.length)];
+		}
+		int count = 0;
+		for (int i=0; i<size; i++)
+		{
+			if (!culled[i])
+			{
+				byCell[count] = i;
+				count++;
+			}
+		}
+		choose(population, byCell, 0, count, extra, random);
+	}
+
+	/**
+	 * Marks some critters out of a run of places in the population.
+	 * @param places - the critters' places, oldest first.
+	 * @param start - where the run starts in places.
+	 * @param count - the length of the run.
+	 * @param extra - how many to mark, less than count.
+	 */
+	private void choose(Population population, int[] places, int start, int count,
+		int extra, Random random)
+	{
+		if (victims.length < victimCount + extra)
+		{
+			victims = Arrays.copyOf(victims, Math.max(victimCount + extra, 2 * victims.length));
+		}
+
+		if (policy == OLDEST)
+		{
+			for (int k=0; k<extra; k++)
+			{
+				mark(places[start + k]);
+			}
+		}
+		else if (policy == RANDOM)
+		{
+			//keeps a reservoir of extra places in victims, each place after
+			//the first extra replacing a random one with the right chance
+			for (int k=0; k<count; k++)
+			{
+				if (k < extra)
+				{
+					victims[victimCount + k] = places[start + k];
+				}
+				else
+				{
+					int j = random.nextInt(k + 1);
+					if (j < extra)
+					{
+						victims[victimCount + j] = places[start + k];
+					}
+				}
+			}
+			for (int k=0; k<extra; k++)
+			{
+				culled[victims[victimCount]] = true;
+				victimCount++;
+			}
+		}
+		else
+		{
+			if (heap.getCapacity() < count)
+			{
+				heap = new IndexedMinHeap(Math.max(count, 2 * heap.getCapacity()));
+				keys = new double[heap.getCapacity()];
+			}
+			for (int k=0; k<count; k++)
+			{
+				keys[k] = population.getPhenotype(places[start + k]).getStrength();
+			}
+			heap.build(keys, count);
+			for (int k=0; k<extra; k++)
+			{
+				mark(places[start + heap.poll()]);
+			}
+		}
+	}
+
+	/**
+	 * Marks one critter
+	 */
+	private void mark(int place)
+	{
+		culled[place] = true;
+		victims[victimCount] = place;
+		victimCount++;
+	}
+}
@@ -0,0 +1,200 @@
+package observe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import critter.Phenotype;
+import critter.Population;
+import data.Environment;
+
+/**
+ * Duel Resolver class
+ * fights all of a tick's duels in one go, once every critter has moved,
+ * instead of each zombie fighting as it moves. Only the cells that hold
+ * both zombies and humans are visited, found from the zombies' cells,
+ * and they are visited in order of x then y. In each cell every zombie,
+ * in the order it came into the cell, fights the top human still
+ * standing (the last one in the cell's list, as before) by the rule of
+ * Dueling.zombieWins:
+ *
+ * - if the zombie wins it loses 10 strength, gains 5 for each human
+ * still standing in the cell, and the human is queued to be turned;
+ * - if the human wins it loses 10 strength, the zombie's strength drops
+ * to 0 and the zombie is queued to die, and the human can be fought by
+ * the next zombie.
+ *
+ * Nothing is taken out of the environment or the populations while the
+ * duels are fought, so the cell lists are never changed under the loop
+ * and the same state and random numbers always give the same outcome.
+ * Interaction applies the queues once all the duels are over. The
+ * arrays are kept from tick to tick, so fighting makes no objects.
+ */
+public class DuelResolver
+{
+	//the tick each cell was last listed on, so it is listed only once
+	private int[] listed;
+	private int stamp = 0;
+
+	//the cells to visit, each as x * length + y
+	private int[] cells = new int[64];
+
+	//the humans to turn and the zombies to take out
+	private Phenotype[] converted = new Phenotype[16];
+	private int convertedCount = 0;
+	private Phenotype[] dead = new Phenotype[16];
+	private int deadCount = 0;
+
+	/**
+	 * Creates a resolver for a grid.
+	 *
+	 * @param width - the number of x values in the environment.
+	 * @param length - the number of y values in the environment.
+	 */
+	public DuelResolver(int width, int length)
+	{
+		if (width < 1 || length < 1)
+		{
+			throw new IllegalArgumentException("The size of the grid must be positive.");
+		}
+		listed = new int[width * length];
+	}
+
+	/**
+	 * Fights every duel in the environment and queues the outcomes.
+	 *
+	 * @param environment - the environment, after everyone has moved.
+	 * @param zombiePop - the zombie population.
+	 * @param random - the random number generator.
+	 * @param statistics - counts the duels won by each side.
+	 * @param events - is told of each duel.
+	 */
+	public void resolve(Environment environment, Population zombiePop, Random random,
+		TickStatistics statistics, SimulationEvents events)
+	{
+		int length = environment.getLength();
+		stamp++;
+		if (stamp == 0)
+		{
+			Arrays.fill(listed, 0);
+			stamp = 1;
+		}
+
+		//lists the zombies' cells that have humans in them
+		int cellCount = 0;
+		for (int i=0; i<zombiePop.getSize(); i++)
+		{
+			Phenotype zombie = zombiePop.getPhenotype(i);
+			int x = zombie.getXloc();
+			int y = zombie.getYloc();
+			int cell = x * length + y;
+			if (listed[cell] != stamp && environment.getHuman(x, y) > 0)
+			{
+				listed[cell] = stamp;
+				if (cellCount == cells.length)
+				{
+					cells = Arrays.copyOf(cells, 2 * cells.length);
+				}
+				cells[cellCount] = cell;
+				cellCount++;
+			}
+		}
+		Arrays.sort(cells, 0, cellCount);
+
+		for (int c=0; c<cellCount; c++)
+		{
+			int x = cells[c] / length;
+			int y = cells[c] - x * length;
+			ArrayList zombies = environment.getZombiePhenotypes(x, y);
+			ArrayList humans = environment.getHumanPhenotypes(x, y);
+
+			int top = humans.size() - 1;
+			for (int z=0; z<zombies.size() && top>=0; z++)
+			{
+				Phenotype zombie = (Phenotype)zombies.get(z);
+				Phenotype human = (Phenotype)humans.get(top);
+				if (Dueling.zombieWins(human.getStrength(), zombie.getStrength(), random))
+				{
+					statistics.countDuel(false);
+					events.fireDuelled(zombie, human, false);
+					top--;
+					zombie.setStrength(zombie.getStrength() - 10 + 5 * (top + 1));
+					converted = queue(converted, convertedCount, human);
+					convertedCount++;
+				}
+				else
+				{
+					statistics.countDuel(true);
+					events.fireDuelled(zombie, human, true);
+					human.setStrength(human.getStrength() - 10);
+					zombie.setStrength(0);
+					dead = queue(dead, deadCount, zombie);
+					deadCount++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Getter for the number of humans to turn into zombies
+	 * @return - the number of humans
+	 */
+	public int getConvertedCount()
+	{
+		return convertedCount;
+	}
+
+	/**
+	 * Getter for a human to turn into a zombie
+	 * @param index - from 0 to getConvertedCount()-1
+	 * @return - the human
+	 */
+	public Phenotype getConverted(int index)
+	{
+		return converted[index];
+	}
+
+	/**
+	 * Getter for the number of zombies to take out
+	 * @return - the number of zombies
+	 */
+	public int getDeadCount()
+	{
+		return deadCount;
+	}
+
+	/**
+	 * Getter for a zombie to take out
+	 * @param index - from 0 to getDeadCount()-1
+	 * @return - the zombie
+	 */
+	public Phenotype getDead(int index)
+	{
+		return dead[index];
+	}
+
+	/**
+	 * Empties both queues, once they have been applied
+	 */
+	public void clear()
+	{
+		Arrays.fill(converted, 0, convertedCount, null);
+		Arrays.fill(dead, 0, deadCount, null);
+		convertedCount = 0;
+		deadCount = 0;
+	}
+
+	/**
+	 * Puts a critter at the end of a queue, growing it if it is full
+	 * @return - the queue, which may be a new, larger array
+	 */
+	private static Phenotype[] queue(Phenotype[] queue, int count, Phenotype critter)
+	{
+		if (count == queue.length)
+		{
+			queue = Arrays.copyOf(queue, 2 * queue.length);
+		}
+		queue[count] = critter;
+		return queue;
+	}
+}
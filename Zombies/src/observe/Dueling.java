@@ -27,7 +27,7 @@ import critter.Phenotype;
  * 
  * @author Allan Dancer, Robert Winchell.  
  */
-public class Dueling implements Observer
+public class Dueling
 {
 	/*
 	 * Instance variable for our human phenotype
@@ -250,6 +250,26 @@ public class Dueling implements Observer
 
 	}
 
+	/**
+	 * The rule duelEachOther fights by, without making any objects: the
+	 * zombie rolls a number below the sum of both strengths plus 20 and
+	 * wins if it is at least the human's strength.
+	 * @param humanStrength the human's strength
+	 * @param zombieStrength the zombie's strength
+	 * @param random the random number generator
+	 * @return true if the zombie wins
+	 */
+	public static boolean zombieWins(double humanStrength, double zombieStrength, Random random)
+	{
+		double sum = humanStrength + zombieStrength;
+		if (sum<0)
+		{
+			sum = 0;
+		}
+		sum = random.nextInt((int) (sum + 20));
+		return sum >= humanStrength;
+	}
+
 	/**
 	 * a getter for Humanstrength for checking purposes
 	 * @return returns the human strength
@@ -289,12 +309,4 @@ public class Dueling implements Observer
 	{
 		this.zombieStrength = strength;
 	}
-
-	/**
-	 * updates the obsever
-	 */
-	public void update(Observable observable, Object object)
-	{
-		
-	}
 }
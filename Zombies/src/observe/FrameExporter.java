@@ -0,0 +1,329 @@
+package observe;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import javax.imageio.ImageIO;
+
+import data.Environment;
+
+/**
+ * Frame Exporter class
+ * saves pictures of the grid without any window, for runs with no
+ * screen. Each frame is drawn straight from the Environment's count
+ * arrays, one square of cellSize by cellSize pixels per cell, in the
+ * colors of the world viewer: a zombie over a human over food over the
+ * gray background. Rows of the picture are x and columns are y, as in
+ * the viewer.
+ *
+ * The frames are written either as a numbered sequence of PNG files in a
+ * directory (frame000010.png for tick 10 and so on) or written to one
+ * file of raw 8 bit RGB, frame after frame with no header, which video
+ * tools can read given the frame width and height (ffmpeg -f rawvideo
+ * -pix_fmt rgb24 -s WIDTHxHEIGHT).
+ *
+ * As in MetricsExporter the simulation thread only fills the pixels of
+ * a frame into one of a fixed ring of int arrays and a background thread
+ * does the encoding and the writing. If the writer falls behind and the
+ * ring is full the frame is dropped and counted, so the simulation never
+ * waits on it.
+ */
+public class FrameExporter implements Runnable
+{
+	//the colors of the world viewer
+	private static final int BACKGROUND = 0xC0C0C0;
+	private static final int FOOD = 0x00FF00;
+	private static final int HUMAN = 0xFF0000;
+	private static final int ZOMBIE = 0x000000;
+
+	//the number of frames the ring can hold, must be a power of two
+	private static final int RING_SIZE = 8;
+
+	//how long the writer sleeps when there is nothing to write
+	private static final long IDLE_NANOS = 1000000L;
+
+	//the size of the grid and of each cell in pixels
+	private int width;
+	private int length;
+	private int cellSize;
+
+	//true for a PNG file per frame, false for one raw RGB file
+	private boolean png;
+	private File target;
+
+	//the frames waiting to be written and the tick of each
+	private int[][] ring = new int[RING_SIZE][];
+	private int[] ticks = new int[RING_SIZE];
+
+	//the number of frames put in the ring and taken out of it. Only the
+	//simulation thread moves head and only the writer moves tail.
+	private AtomicLong head = new AtomicLong(0);
+	private AtomicLong tail = new AtomicLong(0);
+
+	//frames that did not fit in the ring
+	private long droppedFrames = 0;
+
+	//the picture a PNG is encoded from, sharing its pixels with pixels
+	private BufferedImage image;
+	private int[] pixels;
+
+	//the raw file and the bytes of one frame
+	private FileChannel channel;
+	private ByteBuffer rgb;
+
+	private volatile boolean running = true;
+	private volatile IOException writeProblem = null;
+	private Thread writer;
+
+	/**
+	 * Gets ready to write frames and starts the writer thread.
+	 *
+	 * @param target - the directory the PNG files go in, created if
+	 * needed, or the file raw frames are written to. A file left over
+	 * from an earlier run is emptied first.
+	 * @param png - true for PNG files, false for raw RGB.
+	 * @param width - the number of x values in the environment.
+	 * @param length - the number of y values in the environment.
+	 * @param cellSize - the size of each cell in pixels.
+	 * @throws IOException - if the directory or file can not be made.
+	 */
+	public FrameExporter(File target, boolean png, int width, int length,
+		int cellSize) throws IOException
+	{
+		if (width < 1 || length < 1 || cellSize < 1)
+		{
+			throw new IllegalArgumentException("The size of the grid and of the " +
+				"cells must be positive.");
+		}
+		this.target = target;
+		this.png = png;
+		this.width = width;
+		this.length = length;
+		this.cellSize = cellSize;
+
+		int frameSize = getFrameWidth() * getFrameHeight();
+		for (int i=0; i<RING_SIZE; i++)
+		{
+			ring[i] = new int[frameSize];
+		}
+
+		if (png)
+		{
+			if (!target.isDirectory() && !target.mkdirs())
+			{
+				throw new IOException("Could not make the directory " + target + ".");
+			}
+			image = new BufferedImage(getFrameWidth(), getFrameHeight(),
+				BufferedImage.TYPE_INT_RGB);
+			pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		}
+		else
+		{
+			channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			rgb = ByteBuffer.allocateDirect(3 * frameSize);
+		}
+
+		writer = new Thread(this, "frame exporter");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Draws the environment as it is now into the next free frame and
+	 * queues it.
+	 *
+	 * @param tick - the tick the frame shows.
+	 * @param environment - the environment.
+	 * @return - true if the frame was queued, false if the ring was full
+	 * and the frame was dropped.
+	 */
+	public boolean capture(int tick, Environment environment)
+	{
+		long frame = head.get();
+		if (frame - tail.get() >= RING_SIZE)
+		{
+			droppedFrames++;
+			return false;
+		}
+
+		int slot = (int)(frame & (RING_SIZE - 1));
+		int[] out = ring[slot];
+		ticks[slot] = tick;
+
+		int[][] food = environment.getFoodEnvironment();
+		int[][] humans = environment.getHumanEnvironment();
+		int[][] zombies = environment.getZombieEnvironment();
+		int frameWidth = getFrameWidth();
+		for (int x=0; x<width; x++)
+		{
+			//draws the first pixel row of the cells, then copies it
+			int rowStart = x * cellSize * frameWidth;
+			for (int y=0; y<length; y++)
+			{
+				int color = BACKGROUND;
+				if (zombies[x][y] > 0)
+				{
+					color = ZOMBIE;
+				}
+				else if (humans[x][y] > 0)
+				{
+					color = HUMAN;
+				}
+				else if (food[x][y] > 0)
+				{
+					color = FOOD;
+				}
+
+				int start = rowStart + y * cellSize;
+				for (int i=0; i<cellSize; i++)
+				{
+					out[start + i] = color;
+				}
+			}
+			for (int i=1; i<cellSize; i++)
+			{
+				System.arraycopy(out, rowStart, out, rowStart + i * frameWidth, frameWidth);
+			}
+		}
+
+		//publishes the frame to the writer
+		head.lazySet(frame + 1);
+		return true;
+	}
+
+	/**
+	 * The writer thread. Encodes and writes queued frames.
+	 */
+	public void run()
+	{
+		try
+		{
+			while (running)
+			{
+				if (!drain())
+				{
+					LockSupport.parkNanos(IDLE_NANOS);
+				}
+			}
+
+			//writes whatever was queued before close was called
+			drain();
+		}
+		catch (IOException e)
+		{
+			writeProblem = e;
+		}
+	}
+
+	/**
+	 * Writes every queued frame.
+	 * @return - true if there was anything to write.
+	 */
+	private boolean drain() throws IOException
+	{
+		long frame = tail.get();
+		long end = head.get();
+		if (frame == end)
+		{
+			return false;
+		}
+
+		for ( ; frame < end; frame++)
+		{
+			int slot = (int)(frame & (RING_SIZE - 1));
+			int[] in = ring[slot];
+			if (png)
+			{
+				System.arraycopy(in, 0, pixels, 0, in.length);
+				String name = Integer.toString(ticks[slot]);
+				while (name.length() < 6)
+				{
+					name = "0" + name;
+				}
+
+				//hands the slot back before the slow part
+				tail.lazySet(frame + 1);
+				ImageIO.write(image, "png", new File(target, "frame" + name + ".png"));
+			}
+			else
+			{
+				rgb.clear();
+				for (int i=0; i<in.length; i++)
+				{
+					int color = in[i];
+					rgb.put((byte)(color >> 16));
+					rgb.put((byte)(color >> 8));
+					rgb.put((byte)color);
+				}
+				tail.lazySet(frame + 1);
+
+				rgb.flip();
+				while (rgb.hasRemaining())
+				{
+					channel.write(rgb);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the width of a frame in pixels.
+	 */
+	public int getFrameWidth()
+	{
+		return length * cellSize;
+	}
+
+	/**
+	 * Returns the height of a frame in pixels.
+	 */
+	public int getFrameHeight()
+	{
+		return width * cellSize;
+	}
+
+	/**
+	 * Returns the number of frames dropped because the ring was full.
+	 */
+	public long getDroppedFrames()
+	{
+		return droppedFrames;
+	}
+
+	/**
+	 * Writes every queued frame, stops the writer thread and closes the
+	 * raw file.
+	 *
+	 * @throws IOException - if any of the writes failed.
+	 */
+	public void close() throws IOException
+	{
+		running = false;
+		LockSupport.unpark(writer);
+		try
+		{
+			writer.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		if (channel != null)
+		{
+			channel.close();
+		}
+
+		if (writeProblem != null)
+		{
+			throw writeProblem;
+		}
+	}
+}
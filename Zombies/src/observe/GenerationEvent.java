@@ -0,0 +1,48 @@
+package observe;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Generation Event class
+ * a Java Flight Recorder event holding the time each phase took during
+ * one generation. PhaseTimer only creates these while a recording that
+ * includes the event is running, so they cost nothing otherwise.
+ */
+@Name("zombies.Generation")
+@Label("Generation")
+@Category("Zombie Apocalypse")
+@Description("Time spent in each phase of one generation")
+public class GenerationEvent extends Event
+{
+	@Label("Generation")
+	long generation;
+
+	@Label("Food") @Timespan
+	long foodNanos;
+
+	@Label("Grid") @Timespan
+	long gridNanos;
+
+	@Label("Display") @Timespan
+	long displayNanos;
+
+	@Label("Zombies") @Timespan
+	long zombieNanos;
+
+	@Label("Humans") @Timespan
+	long humanNanos;
+
+	@Label("Duels") @Timespan
+	long duelNanos;
+
+	@Label("Breeding") @Timespan
+	long breedingNanos;
+
+	@Label("Settle") @Timespan
+	long settleNanos;
+}
@@ -32,6 +32,207 @@ public class Interaction
 	private int weightGene = BioVariables.FACTORY_WEIGHT_GENE_LENGTH;
 	private int thetaGene = BioVariables.FACTORY_THETA_GENE_LENGTH;
 	
+	
+	//counts the births, duels and food eaten during the current tick
+	private TickStatistics statistics = new TickStatistics();
+	
+	/**
+	 * Returns the statistics the events of the current tick are counted in.
+	 * The caller resets them at the start of each tick.
+	 */
+	public TickStatistics getStatistics()
+	{
+		return statistics;
+	}
+	
+	//times the duels and the breeding, disabled unless one is set
+	private PhaseTimer phaseTimer = new PhaseTimer(false, 0);
+	
+	//tells the subscribed listeners what happens to the critters
+	private SimulationEvents events = new SimulationEvents();
+	
+	/**
+	 * Returns the events of the simulation, for listeners to subscribe to
+	 * moves, meals, births, duels and deaths.
+	 */
+	public SimulationEvents getEvents()
+	{
+		return events;
+	}
+	
+	/**
+	 * Sets the timer the duel and breeding phases are recorded in.
+	 * 
+	 * @param phaseTimer is the timer shared with the simulation loop.
+	 */
+	public void setPhaseTimer(PhaseTimer phaseTimer)
+	{
+		this.phaseTimer = phaseTimer;
+	}
+	
+	//the current tick, humans that moved on it are not bred with again
+	private int tick = 0;
+	
+	/**
+	 * Sets the tick the simulation is on. Call it at the start of every
+	 * tick, before any critter moves.
+	 * 
+	 * @param tick is the current tick.
+	 */
+	public void setTick(int tick)
+	{
+		this.tick = tick;
+	}
+	
+	//the shared move tables, null when the critters' networks are run
+	//every tick
+	private MoveTableCache moveTables = null;
+	
+	/**
+	 * Sets the cache of move tables. With one set, each critter's network
+	 * is only run when it first moves, for all 256 ways its neighbours can
+	 * be empty or not. Pass null to run the networks every tick.
+	 * 
+	 * @param moveTables is the cache the tables are shared through.
+	 */
+	public void setMoveTableCache(MoveTableCache moveTables)
+	{
+		this.moveTables = moveTables;
+	}
+	
+	//the distances to the nearest humans, null when zombies only see
+	//the cells next to them
+	private FlowField flowField = null;
+	
+	/**
+	 * Sets the flow field zombies follow when no human is next to them. 
+	 * The simulation should compute it before the zombies are updated 
+	 * each tick. Pass null to turn it off.
+	 * 
+	 * @param flowField is the field shared with the simulation loop.
+	 */
+	public void setFlowField(FlowField flowField)
+	{
+		this.flowField = flowField;
+	}
+	
+	//the wide senses, null when critters only sense the 8 cells next
+	//to them
+	private SensorField sensors = null;
+	
+	/**
+	 * Sets the sensor field critters sense through. The simulation should
+	 * update it once a tick. Pass null so critters only sense the 8 cells
+	 * next to them.
+	 * 
+	 * @param sensors is the field shared with the simulation loop.
+	 */
+	public void setSensorField(SensorField sensors)
+	{
+		this.sensors = sensors;
+	}
+	
+	//the births of the whole tick, null when children are born as their
+	//parents meet
+	private BreedingService breeding = null;
+	
+	/**
+	 * Sets the breeding service. With one set, the children of the humans
+	 * that meet are born once everyone has moved, when the simulation
+	 * calls birthChildren. Pass null for children to be born as their 
+	 * parents meet.
+	 * 
+	 * @param breeding is the service the tick's births go through.
+	 */
+	public void setBreedingService(BreedingService breeding)
+	{
+		this.breeding = breeding;
+	}
+	
+	//the dead critters kept for reuse, null to let them all go
+	private PhenotypePool pool = null;
+	
+	/**
+	 * Sets the phenotype pool. With one set, the critters that die are
+	 * buried in it and given back by recycleDead at the end of the tick, 
+	 * and births and conversions take their critters from it.
+	 * 
+	 * @param pool is the pool, or null for none.
+	 */
+	public void setPhenotypePool(PhenotypePool pool)
+	{
+		this.pool = pool;
+	}
+	
+	//the carrying capacities of each species, null for no caps
+	private CarryingCapacity humanCapacity = null;
+	private CarryingCapacity zombieCapacity = null;
+	
+	/**
+	 * Sets the carrying capacities. With them set, the simulation calls
+	 * enforceCapacity at the end of each tick to cull the critters over
+	 * the caps.
+	 * 
+	 * @param humanCapacity caps the humans, or null for no caps.
+	 * 
+	 * @param zombieCapacity caps the zombies, or null for no caps.
+	 */
+	public void setCarryingCapacity(CarryingCapacity humanCapacity, 
+		CarryingCapacity zombieCapacity)
+	{
+		this.humanCapacity = humanCapacity;
+		this.zombieCapacity = zombieCapacity;
+	}
+	
+	//the duels of the whole tick, null when each zombie fights as it moves
+	private DuelResolver duels = null;
+	
+	/**
+	 * Sets the duel resolver. With one set, zombies do not fight as they
+	 * move, the simulation calls resolveDuels once everyone has moved.
+	 * Pass null for each zombie to fight as it moves.
+	 * 
+	 * @param duels is the resolver the tick's duels are fought through.
+	 */
+	public void setDuelResolver(DuelResolver duels)
+	{
+		this.duels = duels;
+	}
+	
+	//lets quiet critters sleep, null when every critter moves every tick
+	private TickScheduler scheduler = null;
+	
+	/**
+	 * Sets the scheduler that critters taken out of the simulation are
+	 * removed from and the ones born or turned are added to. Pass null
+	 * when no scheduler is used.
+	 * 
+	 * @param scheduler is the scheduler shared with the simulation loop.
+	 */
+	public void setTickScheduler(TickScheduler scheduler)
+	{
+		this.scheduler = scheduler;
+	}
+	
+	//the inputs of a critter with nothing around it
+	private double[] noInputs = new double[8];
+	
+	/**
+	 * Works out the move a critter makes when there is nothing around it,
+	 * which it would make every tick until something comes near.
+	 * 
+	 * @param critter is the human or zombie.
+	 * 
+	 * @return the move, from 0 (top left) clockwise to 7 (left).
+	 */
+	public int getQuietMove(Phenotype critter)
+	{
+		critter.setWeightGeneLength(weightGene);
+		critter.setThetaGeneLength(thetaGene);
+		return decideMove(critter, noInputs, critter.getWeightGeneLength(),
+			critter.getThetaGeneLength());
+	}
+	
 	/**
 	 * This will update the human position and eat any food it can find. After the 
 	 * possition is update, it will check for food and humans at the new position. 
@@ -108,18 +309,6 @@ public class Interaction
 
 		//System.out.println("Old X: " +critter.getXloc()+ " Old Y: " +critter.getYloc());
 		
-		//Get input from 0 (top left corner) to 7 (center left) from
-		//the food environment.
-		double[] inputArray = new double[8];
-		inputArray[0]=foodEnvironment[xMinusOne][yMinusOne];
-		inputArray[1]=foodEnvironment[x][yMinusOne];
-		inputArray[2]=foodEnvironment[xPlusOne][yMinusOne];			
-		inputArray[3]=foodEnvironment[xPlusOne][y];
-		inputArray[4]=foodEnvironment[xPlusOne][yPlusOne];
-		inputArray[5]=foodEnvironment[x][yPlusOne];
-		inputArray[6]=foodEnvironment[xMinusOne][yPlusOne];
-		inputArray[7]=foodEnvironment[xMinusOne][y];	
-		
 		//DEBUG MODE
 		/*
 		String[] critterArray = ((BitArrayChromosome)critter.getChromosome()).toStringArray();
@@ -135,183 +324,39 @@ public class Interaction
 		//END DEBUG MODE
 		
 		
-		//BEGIN MAPPING
-		//Create the weight array
-		double[][][] weightArray = new double[3][][];
-		weightArray[0] = new double[8][1];
-		weightArray[1] = new double[5][8];
-		weightArray[2] = new double[3][5];
-		
-		//Create the theta array
-		double[][] thresholdArray = new double[3][];
-		thresholdArray[0] = new double[8];
-		thresholdArray[1] = new double[5];
-		thresholdArray[2] = new double[3];
-		
-		//All the weights on the first layer are 1 (100%)
-		for (int i=0; i<weightArray[0].length; i++)
+		//Decide where to move, from 0 (top left) clockwise to 7 (left)
+		int result;
+		if (moveTables != null && environment.hasBitplanes() && sensors == null)
 		{
-			for (int j=0; j<weightArray[0][i].length; j++)
-			{
-				weightArray[0][i][j] = 1;
-			}
+			//with compiled moves only which cells hold food matters, and
+			//that is read straight from the bitplane
+			result = lookupMove(critter, environment.getFoodMask(x, y), 
+				lengthOfEachWeightGene, lengthOfEachThetaGene);
 		}
-		
-		//Keep track of current index of the weight string.
-		int trackIndex=0;
-		
-		//For the weights, you got to map them. This maps middle layer.
-		//System.out.println("BEGIN MAPPING MIDDLE LAYER");
-		for (int i=0; i<weightArray[1].length; i++)
-		{
-			//System.out.print("*");
-			for (int j=0; j<weightArray[1][i].length; j++)
-			{
-				//Start the current index, at position 0, 0 of the middle layer
-				//The initial current index is 
-				//[i*(length of weight array[1][i] * (lenght of each weight gene)] +
-				//[j*(length of each weight gene)]
-				int currentIndex = (i*weightArray[1][i].length*lengthOfEachWeightGene)+
-					(j*lengthOfEachWeightGene);
-				
-				//The track index will become the current index
-				//It will update to the last position before it is done.
-				trackIndex = currentIndex;
-				
-				
-				//System.out.print(currentIndex + "|");
-				
-				//Map the gene at this current position to a valuable between 0 and 1
-				//Call this mapGene method, it takes in a BitChromosome from two positions,
-				//this is the gene, then sets the upper boundary to 1 and lower boundary to 0.
-				weightArray[1][i][j] = mapGene(
-					((BitArrayChromosome)critter.getChromosome()).getGene
-					(1, currentIndex, currentIndex+lengthOfEachWeightGene),0,1);
-			}
-		}
-		
-		//After this is done, add the length of the weight gene to get to the ending
-		//track index to get the index of where the top layer of the weight vectors
-		//starts
-		trackIndex+=lengthOfEachWeightGene;
-		
-		//System.out.println(trackIndex);
-		
-		//For the weights, you got to map them. This maps top layer.
-		//System.out.println("BEGIN MAPPING TOP LAYER");
-		for (int i=0; i<weightArray[2].length; i++)
+		else
 		{
-			//System.out.print("x" + weightArray[2].length);
-			
-			for (int j=0; j<weightArray[2][i].length; j++)
+			//Get input from 0 (top left corner) to 7 (center left) from
+			//the food environment.
+			double[] inputArray = new double[8];
+			if (sensors != null)
 			{
-				//Start the current index by adding the trackIndex (pointer of where the program
-				//was done getting the weights for the middle layer) to the rest. It is using 
-				//the same mathematical equation as the mapping for middle layer.
-				int currentIndex = trackIndex+(i*weightArray[2][i].length*lengthOfEachWeightGene)+
-					(j*lengthOfEachWeightGene);
-				
-				//System.out.print(currentIndex + "|");
-
-				//Map the gene at this current position to a valuable between 0 and 1
-				//Call this mapGene method, it takes in a BitChromosome from two positions,
-				//this is the gene, then sets the upper boundary to 1 and lower boundary to 0.
-				weightArray[2][i][j] = mapGene(
-					((BitArrayChromosome)critter.getChromosome()).getGene
-					(1, currentIndex, currentIndex+lengthOfEachWeightGene),0,1);
+				sensors.getFoodInputs(x, y, inputArray);
 			}
-		}
-		
-		//DEBUG MODE
-		//Prints out the values for the weight array
-		/*
-		for(int i=0; i<weightArray.length; i++)
-		{
-			for (int j=0; j<weightArray[i].length; j++)
+			else
 			{
-				for (int n=0; n<weightArray[i][j].length; n++)
-				{
-					System.out.print(weightArray[i][j][n] + "|");					
-				}
-				System.out.println("");
+				inputArray[0]=foodEnvironment[xMinusOne][yMinusOne];
+				inputArray[1]=foodEnvironment[x][yMinusOne];
+				inputArray[2]=foodEnvironment[xPlusOne][yMinusOne];			
+				inputArray[3]=foodEnvironment[xPlusOne][y];
+				inputArray[4]=foodEnvironment[xPlusOne][yPlusOne];
+				inputArray[5]=foodEnvironment[x][yPlusOne];
+				inputArray[6]=foodEnvironment[xMinusOne][yPlusOne];
+				inputArray[7]=foodEnvironment[xMinusOne][y];	
 			}
-			System.out.println("");
 			
-		}*/
-		//END DEBUG MODE
-
-		//System.out.println("BEGIN MAPPING THRESHOLDS");
-		//For the thresholds, you got to map them.
-		for (int i=0; i<thresholdArray.length; i++)
-		{
-			//System.out.print("*");
-			for (int j=0; j<thresholdArray[i].length; j++)
-			{
-				//Get the current index, uses the same equation as the one before this 
-				//for weights.
-				int currentIndex = (i*weightArray[i].length*lengthOfEachThetaGene)+
-					(j*lengthOfEachThetaGene);
-				//System.out.print(currentIndex + "|");
-				
-				//Maps the gene, this time it takes the information from the 
-				//Threshold part of the BitArrayChromosome and sets the lower
-				//bound to -1, and upper bound to 3.
-				thresholdArray[i][j] = mapGene(
-					((BitArrayChromosome)critter.getChromosome()).getGene
-					(2, currentIndex, currentIndex+lengthOfEachThetaGene),-1,3);
-			}
+			result = decideMove(critter, inputArray, lengthOfEachWeightGene,
+				lengthOfEachThetaGene);
 		}
-		
-		//Create a null output array
-		double[] outputArray = null;
-		
-		//Try to feed weights, thresholds and input array into neural network
-		 try
-		 {
-			//Create a neural network with the critter's weights and thresholds
-			 NeuralNet net = new NeuralNet(weightArray, thresholdArray);
-		     
-			 //Feed the input into the network and store the output
-			 outputArray = net.feedForward(inputArray);
-		     
-			 //For every double in the output array, round up or down if 
-			 //it is greater or less than 5
-			 for (int i=0; i<outputArray.length; i++)
-			 {
-				 if (outputArray[i]>0.5)
-				 {
-					 outputArray[i]=1;
-				 }
-				 else
-				 {
-					 outputArray[i]=0;
-				 }
-			 }
-		     
-		     
-			 //System.out.println(outputArray[0]+" "
-					 //+outputArray[1]+" "+outputArray[2]); 
-		 }
-		 catch(Exception e)
-		 {
-			 System.out.println(e.getMessage());
-		 }
-		 
-		 //Set the result to a 0
-		 //depending on the output (000) to (111) it will map from 0 to 7
-		 int result = 0;
-		 if (outputArray[0]==1)
-		 {
-			 result+=4;
-		 }
-		 if (outputArray[1]==1)
-		 {
-			 result+=2;
-		 }
-		 if (outputArray[2]==1)
-		 {
-			 result+=1;
-		 }
 		 
 		 //System.out.println("Result: " + result);
 		 //Move top-left
@@ -363,7 +408,12 @@ public class Interaction
 			 critter.setYloc(y);
 		 }
 
-		 checkFood(foodEnvironment,critter);
+		 //takes the human from its old cell to its new one
+		 environment.moveHuman(critter, x, y);
+		 critter.setMoveTick(tick);
+		 events.fireMoved(critter, x, y);
+		 
+		 checkFood(environment,critter);
 		 checkHuman(((Environment)environment), critter, humanPop);
 	}
 	
@@ -452,51 +502,290 @@ public class Interaction
 		//in the environment (wrap around);
 		if (xPlusOne>humanEnvironment.length-1)
 		{
-			//System.out.print("X From " + xPlusOne + " to ");
-			xPlusOne = 0;
-			//System.out.println(xPlusOne);
+			//System.out.print("X From " + xPlusOne + " to ");
+			xPlusOne = 0;
+			//System.out.println(xPlusOne);
+		}
+		
+		//If y is greater than max index (out of bounds) then make it be the first y
+		//in the environment (wrap around);
+		if (yPlusOne>humanEnvironment[0].length-1)
+		{
+			//System.out.print("Y From " + yPlusOne + " to ");
+			yPlusOne = 0;
+			//System.out.println(yPlusOne);
+		}
+		//-----------------------------------------------------
+		System.out.println("UPDATE ZOMBIE2");
+		//System.out.println("Old X: " +critter.getXloc()+ " Old Y: " +critter.getYloc());
+		
+		//DEBUG MODE
+		/*
+		String[] critterArray = ((BitArrayChromosome)critter.getChromosome()).toStringArray();
+		for (int i=0; i<critterArray.length; i++)
+		{
+			System.out.print(i+ ":   |");
+			for (int j=0; j<critterArray[i].length(); j++)
+			{
+				System.out.print(critterArray[i].charAt(j) + "|");
+			}
+			System.out.println("");
+		}*/
+		//END DEBUG MODE
+		
+		
+		//Decide where to move, from 0 (top left) clockwise to 7 (left)
+		int result;
+		if (moveTables != null && environment.hasBitplanes() && sensors == null)
+		{
+			//with compiled moves only which cells hold humans matters, and
+			//that is read straight from the bitplane
+			int mask = environment.getHumanMask(x, y);
+			if (mask == 0 && flowField != null)
+			{
+				mask = flowField.getFlowMask(x, y);
+			}
+			result = lookupMove(critter, mask, lengthOfEachWeightGene, 
+				lengthOfEachThetaGene);
+		}
+		else
+		{
+			//Get input from 0 (top left corner) to 7 (center left) from
+			//the food environment.
+			double[] inputArray = new double[8];
+			if (sensors != null)
+			{
+				sensors.getHumanInputs(x, y, inputArray);
+			}
+			else
+			{
+				inputArray[0]=humanEnvironment[xMinusOne][yMinusOne];
+				inputArray[1]=humanEnvironment[x][yMinusOne];
+				inputArray[2]=humanEnvironment[xPlusOne][yMinusOne];			
+				inputArray[3]=humanEnvironment[xPlusOne][y];
+				inputArray[4]=humanEnvironment[xPlusOne][yPlusOne];
+				inputArray[5]=humanEnvironment[x][yPlusOne];
+				inputArray[6]=humanEnvironment[xMinusOne][yPlusOne];
+				inputArray[7]=humanEnvironment[xMinusOne][y];	
+			}
+			
+			//with no human next to it, the zombie senses the cells that
+			//lead towards the nearest humans as if they held one
+			if (flowField != null && isEmpty(inputArray))
+			{
+				int mask = flowField.getFlowMask(x, y);
+				for (int i=0; i<inputArray.length; i++)
+				{
+					inputArray[i] = (mask >> i) & 1;
+				}
+			}
+			
+			result = decideMove(critter, inputArray, lengthOfEachWeightGene,
+				lengthOfEachThetaGene);
+		}
+		 
+		 //System.out.println("Result: " + result);
+		 //Move top-left
+		 if (result==0)
+		 {
+			 critter.setXloc(xMinusOne);
+			 critter.setYloc(yMinusOne);
+		 }
+		 //Move top
+		 else if (result==1)
+		 {
+			 critter.setXloc(x);
+			 critter.setYloc(yMinusOne);
+		 }
+		 //Move top-right
+		 else if (result==2)
+		 {
+			 critter.setXloc(xPlusOne);
+			 critter.setYloc(yMinusOne);
+		 }
+		 //Move right
+		 else if (result==3)
+		 {
+			 critter.setXloc(xPlusOne);
+			 critter.setYloc(y);
+		 }
+		 //Move down-right
+		 else if (result==4)
+		 {
+			 critter.setXloc(xPlusOne);
+			 critter.setYloc(yPlusOne);
+		 }
+		 //Move down
+		 else if (result==5)
+		 {
+			 critter.setXloc(x);
+			 critter.setYloc(yPlusOne);
+		 }
+		 //Move down-left
+		 else if (result==6)
+		 {
+			 critter.setXloc(xMinusOne);
+			 critter.setYloc(yPlusOne);
+		 }
+		 //Move left
+		 else if (result==7)
+		 {
+			 critter.setXloc(xMinusOne);
+			 critter.setYloc(y);
+		 }
+		
+		 //takes the zombie from its old cell to its new one
+		 environment.moveZombie(critter, x, y);
+		 events.fireMoved(critter, x, y);
+		 
+		 //with batched duels the zombie fights once everyone has moved
+		 if (duels == null)
+		 {
+			 checkZombieFood(environment,critter,humanPop, zombiePop);
+		 }
+	}
+	
+	/**
+	 * Decides which way a critter moves from what is in the 8 cells around it.
+	 * Normally the critter's neural network is built from its chromosome and 
+	 * fed the inputs. With a move table cache set, the network is instead 
+	 * run once for every one of the 256 ways the 8 cells can be empty or not,
+	 * the first time the critter moves, and the moves are kept in a table. 
+	 * After that each move is a look up of which cells are not empty.
+	 * 
+	 * @param critter is the human or zombie that is moving.
+	 * 
+	 * @param inputArray is what the 8 cells hold, from 0 (top left) clockwise
+	 * to 7 (left).
+	 * 
+	 * @param lengthOfEachWeightGene is the length of each weight gene.
+	 * 
+	 * @param lengthOfEachThetaGene is the length of each theta gene.
+	 * 
+	 * @return the move, from 0 (top left) clockwise to 7 (left).
+	 */
+	private int decideMove(Phenotype critter, double[] inputArray,
+			int lengthOfEachWeightGene, int lengthOfEachThetaGene)
+	{
+		if (moveTables != null)
+		{
+			//one bit for each cell that is not empty
+			int mask = 0;
+			for (int i=0; i<inputArray.length; i++)
+			{
+				if (inputArray[i] > 0)
+				{
+					mask |= 1 << i;
+				}
+			}
+			return lookupMove(critter, mask, lengthOfEachWeightGene, 
+				lengthOfEachThetaGene);
+		}
+		
+		NeuralNet net = buildNetwork(critter, lengthOfEachWeightGene, lengthOfEachThetaGene);
+		return runNetwork(net, inputArray);
+	}
+	
+	/**
+	 * Checks if a critter's inputs are all 0.
+	 * 
+	 * @param inputArray is what the 8 cells around the critter hold.
+	 * 
+	 * @return true if none of the cells hold anything.
+	 */
+	private static boolean isEmpty(double[] inputArray)
+	{
+		for (int i=0; i<inputArray.length; i++)
+		{
+			if (inputArray[i] != 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Looks up a critter's move in its move table, compiling the table 
+	 * first if it has none. Needs a move table cache.
+	 * 
+	 * @param critter is the human or zombie that is moving.
+	 * 
+	 * @param mask has bit i set if cell i around the critter is not empty,
+	 * from 0 (top left) clockwise to 7 (left).
+	 * 
+	 * @param lengthOfEachWeightGene is the length of each weight gene.
+	 * 
+	 * @param lengthOfEachThetaGene is the length of each theta gene.
+	 * 
+	 * @return the move, from 0 (top left) clockwise to 7 (left).
+	 */
+	private int lookupMove(Phenotype critter, int mask, int lengthOfEachWeightGene,
+			int lengthOfEachThetaGene)
+	{
+		byte[] moveTable = critter.getMoveTable();
+		if (moveTable == null)
+		{
+			moveTable = compileMoves(critter, lengthOfEachWeightGene, 
+				lengthOfEachThetaGene);
+			critter.setMoveTable(moveTable);
 		}
-		
-		//If y is greater than max index (out of bounds) then make it be the first y
-		//in the environment (wrap around);
-		if (yPlusOne>humanEnvironment[0].length-1)
+		return moveTable[mask];
+	}
+	
+	/**
+	 * Makes the move table of a critter: the move for each of the 256 ways 
+	 * the 8 cells around it can be empty (0) or not (1). Critters with the 
+	 * same chromosome share one table.
+	 * 
+	 * @param critter is the human or zombie.
+	 * 
+	 * @param lengthOfEachWeightGene is the length of each weight gene.
+	 * 
+	 * @param lengthOfEachThetaGene is the length of each theta gene.
+	 * 
+	 * @return the table, indexed by a mask with bit i set if cell i is not empty.
+	 */
+	private byte[] compileMoves(Phenotype critter, int lengthOfEachWeightGene, 
+			int lengthOfEachThetaGene)
+	{
+		byte[] moveTable = moveTables.get(critter.getChromosome());
+		if (moveTable != null)
 		{
-			//System.out.print("Y From " + yPlusOne + " to ");
-			yPlusOne = 0;
-			//System.out.println(yPlusOne);
+			return moveTable;
 		}
-		//-----------------------------------------------------
-		System.out.println("UPDATE ZOMBIE2");
-		//System.out.println("Old X: " +critter.getXloc()+ " Old Y: " +critter.getYloc());
 		
-		//Get input from 0 (top left corner) to 7 (center left) from
-		//the food environment.
+		NeuralNet net = buildNetwork(critter, lengthOfEachWeightGene, lengthOfEachThetaGene);
+		moveTable = new byte[256];
 		double[] inputArray = new double[8];
-		inputArray[0]=humanEnvironment[xMinusOne][yMinusOne];
-		inputArray[1]=humanEnvironment[x][yMinusOne];
-		inputArray[2]=humanEnvironment[xPlusOne][yMinusOne];			
-		inputArray[3]=humanEnvironment[xPlusOne][y];
-		inputArray[4]=humanEnvironment[xPlusOne][yPlusOne];
-		inputArray[5]=humanEnvironment[x][yPlusOne];
-		inputArray[6]=humanEnvironment[xMinusOne][yPlusOne];
-		inputArray[7]=humanEnvironment[xMinusOne][y];	
-		
-		//DEBUG MODE
-		/*
-		String[] critterArray = ((BitArrayChromosome)critter.getChromosome()).toStringArray();
-		for (int i=0; i<critterArray.length; i++)
+		for (int mask=0; mask<moveTable.length; mask++)
 		{
-			System.out.print(i+ ":   |");
-			for (int j=0; j<critterArray[i].length(); j++)
+			for (int i=0; i<inputArray.length; i++)
 			{
-				System.out.print(critterArray[i].charAt(j) + "|");
+				inputArray[i] = (mask >> i) & 1;
 			}
-			System.out.println("");
-		}*/
-		//END DEBUG MODE
-		
+			moveTable[mask] = (byte)runNetwork(net, inputArray);
+		}
 		
-		//BEGIN MAPPING
+		//the chromosome is copied so the key can not change under the cache
+		return moveTables.put((Chromosome)critter.getChromosome().clone(), moveTable);
+	}
+	
+	/**
+	 * Builds a critter's neural network. The weights and thresholds are 
+	 * mapped from its chromosome.
+	 * 
+	 * @param critter is the human or zombie.
+	 * 
+	 * @param lengthOfEachWeightGene is the length of each weight gene.
+	 * 
+	 * @param lengthOfEachThetaGene is the length of each theta gene.
+	 * 
+	 * @return the network, or null if it could not be built.
+	 */
+	private NeuralNet buildNetwork(Phenotype critter, int lengthOfEachWeightGene, 
+			int lengthOfEachThetaGene)
+	{
 		//Create the weight array
 		double[][][] weightArray = new double[3][][];
 		weightArray[0] = new double[8][1];
@@ -623,15 +912,36 @@ public class Interaction
 			}
 		}
 		
+		//Create a neural network with the critter's weights and thresholds
+		NeuralNet net = null;
+		try
+		{
+			net = new NeuralNet(weightArray, thresholdArray);
+		}
+		catch(Exception e)
+		{
+			System.out.println(e.getMessage());
+		}
+		return net;
+	}
+	
+	/**
+	 * Feeds the inputs into a network and turns its 3 outputs into a move.
+	 * 
+	 * @param net is the critter's network.
+	 * 
+	 * @param inputArray is what the 8 cells hold.
+	 * 
+	 * @return the move, from 0 (top left) clockwise to 7 (left).
+	 */
+	private static int runNetwork(NeuralNet net, double[] inputArray)
+	{
 		//Create a null output array
 		double[] outputArray = null;
 		
-		//Try to feed weights, thresholds and input array into neural network
+		//Try to feed the input array into the neural network
 		 try
 		 {
-			//Create a neural network with the critter's weights and thresholds
-			 NeuralNet net = new NeuralNet(weightArray, thresholdArray);
-		     
 			 //Feed the input into the network and store the output
 			 outputArray = net.feedForward(inputArray);
 		     
@@ -674,57 +984,7 @@ public class Interaction
 			 result+=1;
 		 }
 		 
-		 //System.out.println("Result: " + result);
-		 //Move top-left
-		 if (result==0)
-		 {
-			 critter.setXloc(xMinusOne);
-			 critter.setYloc(yMinusOne);
-		 }
-		 //Move top
-		 else if (result==1)
-		 {
-			 critter.setXloc(x);
-			 critter.setYloc(yMinusOne);
-		 }
-		 //Move top-right
-		 else if (result==2)
-		 {
-			 critter.setXloc(xPlusOne);
-			 critter.setYloc(yMinusOne);
-		 }
-		 //Move right
-		 else if (result==3)
-		 {
-			 critter.setXloc(xPlusOne);
-			 critter.setYloc(y);
-		 }
-		 //Move down-right
-		 else if (result==4)
-		 {
-			 critter.setXloc(xPlusOne);
-			 critter.setYloc(yPlusOne);
-		 }
-		 //Move down
-		 else if (result==5)
-		 {
-			 critter.setXloc(x);
-			 critter.setYloc(yPlusOne);
-		 }
-		 //Move down-left
-		 else if (result==6)
-		 {
-			 critter.setXloc(xMinusOne);
-			 critter.setYloc(yPlusOne);
-		 }
-		 //Move left
-		 else if (result==7)
-		 {
-			 critter.setXloc(xMinusOne);
-			 critter.setYloc(y);
-		 }
-		
-		 checkZombieFood(environment,critter,humanPop, zombiePop);
+		 return result;
 	}
 	
 	/**
@@ -732,18 +992,21 @@ public class Interaction
 	 * the critter's x and y to the environment. If there is food, it will remove it 
 	 * from the environment but also increase the human's strength.
 	 * 
-	 * @param foodEnvironment is a 2D int array that contains the counts of
-	 * food at any place in the environment.
+	 * @param environment is the data environment for the whole simulation.
 	 * 
 	 * @param critter is the human to be checked.
 	 */
-	private static void checkFood(int[][] foodEnvironment, Phenotype critter)
+	private void checkFood(Environment environment, Phenotype critter)
 	{
+		int[][] foodEnvironment = environment.getFoodEnvironment();
 		if (foodEnvironment[critter.getXloc()][critter.getYloc()]>0)
 		{
+			statistics.countFood(foodEnvironment[critter.getXloc()][critter.getYloc()]);
+			events.fireAte(critter, foodEnvironment[critter.getXloc()][critter.getYloc()]);
 			critter.setStrength(critter.getStrength() + 
 					(3*(foodEnvironment[critter.getXloc()][critter.getYloc()])));
 			foodEnvironment[critter.getXloc()][critter.getYloc()]=0;
+			environment.markChanged(critter.getXloc(), critter.getYloc());
 		}
 		
 	}
@@ -763,7 +1026,7 @@ public class Interaction
 	 * @param zombiePop is a zombie population that may be lower if the zombie dies
 	 * or increase if the human gets turned into a zombie.
 	 */
-	private static void checkZombieFood(Environment environment, Phenotype critter, Population humanPop, Population zombiePop)
+	private void checkZombieFood(Environment environment, Phenotype critter, Population humanPop, Population zombiePop)
 	{
 		System.out.println("BEGIN DUELING");
 		
@@ -772,6 +1035,7 @@ public class Interaction
 		if (foodEnvironment[critter.getXloc()][critter.getYloc()] != 0)
 		{
 			System.out.println("DUELING REALLY");
+			long duelStart = phaseTimer.start();
 			Phenotype human = environment.getHumanPhenotype(critter.getXloc(),critter.getYloc());
 			
 			Dueling deathmatch = new Dueling(critter, human);
@@ -783,15 +1047,10 @@ public class Interaction
 			if (((BitArrayChromosome)duelResults[0].getChromosome()).getGene(0, 0, 0).toString().equals("1"))
 			{
 				System.out.println("HUMAN WON");
+				statistics.countDuel(true);
+				events.fireDuelled(critter, human, true);
 				//System.exit(0);
-				//Remove the zombie from the zombie population
-				zombiePop.removePhenotype(critter);
-
-				//Subtract the zombie phenotype from this position
-				environment.subtractZombiePhenotype(critter, critter.getXloc(),critter.getYloc());
-				
-				//Subtract one from the zombie environment at the x and y possiton
-				environment.subtractZombie(critter.getXloc(),critter.getYloc());
+				killZombie(environment, critter, zombiePop);
 				
 			}
 			
@@ -799,42 +1058,274 @@ public class Interaction
 			else
 			{
 				System.out.println("ZOMBIE WON");
+				statistics.countDuel(false);
+				events.fireDuelled(critter, human, false);
 				//System.exit(0);
 				BitArrayChromosome humanLoser = (BitArrayChromosome)duelResults[1].getChromosome().clone();
-				
-				//creates a new zombie from the human that lost the duel.  The new zombie keeps
-				//its location and its strength value
-				ZombiePhenotype previousHuman = new ZombiePhenotype(humanLoser, human.getXloc(),
-				human.getYloc(), human.getStrength());
-				
-				//take the human which lost the duel out of the human population
-				humanPop.removePhenotype(human);
-				
-				//removes the human from the environment.
-				environment.subtractHumanPhenotype(human, human.getXloc(), human.getYloc());
-				
-				//removes human from the environment.
-				environment.subtractHuman(human.getXloc(), human.getYloc());
-				
-				//adds the zombie to the environment
-				environment.addZombie(previousHuman.getXloc(), previousHuman.getYloc());
-				
-				//adds the zombie phenotype to the environment.
-				environment.addZombiePhenotype(previousHuman, previousHuman.getXloc(), previousHuman.getYloc());
-				
-				//adds the new zombie to the zombie population
-				zombiePop.addPhenotype(previousHuman);
+				convertHuman(environment, human, humanLoser, humanPop, zombiePop);
 
 				critter.setStrength(critter.getStrength() + 
 						(5*(foodEnvironment[critter.getXloc()][critter.getYloc()])));
 				
 				
 			}
+			phaseTimer.stop(PhaseTimer.DUELS, duelStart);
 			System.out.println("DUELING finished");
 		}
 		System.out.println("DUELING finished 2");
 	}
 	
+	/**
+	 * Takes a zombie that lost a duel out of the simulation.
+	 * 
+	 * @param environment is the data environment for the whole simulation.
+	 * 
+	 * @param zombie is the zombie that lost.
+	 * 
+	 * @param zombiePop is the zombie population it is removed from.
+	 */
+	private void killZombie(Environment environment, Phenotype zombie, Population zombiePop)
+	{
+		//Remove the zombie from the zombie population
+		zombiePop.removePhenotype(zombie);
+
+		//Subtract the zombie phenotype from this position
+		environment.subtractZombiePhenotype(zombie, zombie.getXloc(),zombie.getYloc());
+		
+		//Subtract one from the zombie environment at the x and y possiton
+		environment.subtractZombie(zombie.getXloc(),zombie.getYloc());
+		
+		if (scheduler != null)
+		{
+			scheduler.remove(zombie);
+		}
+		
+		events.fireDied(zombie);
+		
+		//only batched duels are sure nothing else shares its chromosome
+		if (pool != null)
+		{
+			pool.bury(zombie, duels != null);
+		}
+	}
+	
+	/**
+	 * Turns a human that lost a duel into a zombie in the same place 
+	 * with the same strength.
+	 * 
+	 * @param environment is the data environment for the whole simulation.
+	 * 
+	 * @param human is the human that lost.
+	 * 
+	 * @param humanLoser is the new zombie's chromosome, the human's with
+	 * its first gene set to zombie.
+	 * 
+	 * @param humanPop is the human population it is removed from.
+	 * 
+	 * @param zombiePop is the zombie population the new zombie joins.
+	 */
+	private void convertHuman(Environment environment, Phenotype human, 
+		BitArrayChromosome humanLoser, Population humanPop, Population zombiePop)
+	{
+		//creates a new zombie from the human that lost the duel.  The new zombie keeps
+		//its location and its strength value
+		ZombiePhenotype previousHuman;
+		if (pool != null)
+		{
+			previousHuman = pool.takeZombie(humanLoser, human.getXloc(),
+			human.getYloc(), human.getStrength());
+		}
+		else
+		{
+			previousHuman = new ZombiePhenotype(humanLoser, human.getXloc(),
+			human.getYloc(), human.getStrength());
+		}
+		
+		//take the human which lost the duel out of the human population
+		humanPop.removePhenotype(human);
+		if (scheduler != null)
+		{
+			scheduler.remove(human);
+		}
+		
+		//removes the human from the environment.
+		environment.subtractHumanPhenotype(human, human.getXloc(), human.getYloc());
+		
+		//removes human from the environment.
+		environment.subtractHuman(human.getXloc(), human.getYloc());
+		
+		//adds the zombie to the environment
+		environment.addZombie(previousHuman.getXloc(), previousHuman.getYloc());
+		
+		//adds the zombie phenotype to the environment.
+		environment.addZombiePhenotype(previousHuman, previousHuman.getXloc(), previousHuman.getYloc());
+		
+		//adds the new zombie to the zombie population
+		zombiePop.addPhenotype(previousHuman);
+		if (scheduler != null)
+		{
+			scheduler.add(previousHuman, true);
+		}
+		
+		events.fireDied(human);
+		
+		//only batched duels are sure nothing else shares its chromosome
+		if (pool != null)
+		{
+			pool.bury(human, duels != null);
+		}
+	}
+	
+	/**
+	 * Makes the children of the humans that met this tick. Only used with
+	 * a breeding service set, and should be called once every human has
+	 * moved.
+	 * 
+	 * @param environment is the data environment for the whole simulation.
+	 * 
+	 * @param humanPop is the human population the children join.
+	 */
+	public void birthChildren(Environment environment, Population humanPop)
+	{
+		if (breeding == null)
+		{
+			return;
+		}
+		long breedStart = phaseTimer.start();
+		int born = humanPop.getSize();
+		breeding.birth(environment, humanPop, pool, statistics, events);
+		if (scheduler != null)
+		{
+			//the children are added to the end of the population
+			for (int i=born; i<humanPop.getSize(); i++)
+			{
+				scheduler.add(humanPop.getPhenotype(i), false);
+			}
+		}
+		phaseTimer.stop(PhaseTimer.BREEDING, breedStart);
+	}
+	
+	/**
+	 * Fights every duel of the tick at once, after all the critters have
+	 * moved. Only used with batched duels on, in place of the duel each
+	 * zombie would fight as it moved. The cells holding both zombies and
+	 * humans are visited in order, and in each one every zombie in turn
+	 * fights the top human still standing. The zombies that lose and the
+	 * humans that are turned are only taken out once all the duels are 
+	 * over.
+	 * 
+	 * @param environment is the data environment for the whole simulation.
+	 * 
+	 * @param humanPop is the human population.
+	 * 
+	 * @param zombiePop is the zombie population.
+	 */
+	public void resolveDuels(Environment environment, Population humanPop, Population zombiePop)
+	{
+		if (duels == null)
+		{
+			return;
+		}
+		long duelStart = phaseTimer.start();
+		duels.resolve(environment, zombiePop, ALifeRandom.getRandomNumberGenerator(), 
+			statistics, events);
+		
+		for (int i=0; i<duels.getDeadCount(); i++)
+		{
+			killZombie(environment, duels.getDead(i), zombiePop);
+		}
+		for (int i=0; i<duels.getConvertedCount(); i++)
+		{
+			Phenotype human = duels.getConverted(i);
+			BitArrayChromosome humanLoser;
+			if (pool != null)
+			{
+				humanLoser = pool.copyChromosome((BitArrayChromosome)human.getChromosome());
+			}
+			else
+			{
+				humanLoser = (BitArrayChromosome)human.getChromosome().clone();
+			}
+			humanLoser.setBit(0, 0, 0);
+			convertHuman(environment, human, humanLoser, humanPop, zombiePop);
+		}
+		duels.clear();
+		phaseTimer.stop(PhaseTimer.DUELS, duelStart);
+	}
+	
+	/**
+	 * Culls the critters over the carrying capacities, once the tick's
+	 * births and duels are over. Only used with carrying capacities set.
+	 * 
+	 * @param environment is the data environment for the whole simulation.
+	 * 
+	 * @param humanPop is the human population.
+	 * 
+	 * @param zombiePop is the zombie population.
+	 */
+	public void enforceCapacity(Environment environment, Population humanPop, Population zombiePop)
+	{
+		if (humanCapacity != null)
+		{
+			cull(environment, humanCapacity, humanPop, false);
+		}
+		if (zombieCapacity != null)
+		{
+			cull(environment, zombieCapacity, zombiePop, true);
+		}
+	}
+	
+	/**
+	 * Takes the critters one species' capacity chooses out of the 
+	 * environment and the population.
+	 */
+	private void cull(Environment environment, CarryingCapacity capacity, 
+		Population population, boolean isZombie)
+	{
+		int count = capacity.choose(environment, population, 
+			ALifeRandom.getRandomNumberGenerator());
+		for (int i=0; i<count; i++)
+		{
+			Phenotype critter = capacity.getCulled(i, population);
+			int x = critter.getXloc();
+			int y = critter.getYloc();
+			if (isZombie)
+			{
+				environment.subtractZombiePhenotype(critter, x, y);
+				environment.subtractZombie(x, y);
+			}
+			else
+			{
+				environment.subtractHumanPhenotype(critter, x, y);
+				environment.subtractHuman(x, y);
+			}
+			if (scheduler != null)
+			{
+				scheduler.remove(critter);
+			}
+
+			events.fireDied(critter);
+			if (pool != null)
+			{
+				pool.bury(critter, true);
+			}
+		}
+		capacity.removeCulled(population);
+	}
+	
+	/**
+	 * Gives the critters that died this tick back to the phenotype pool,
+	 * to be reused by the next tick's births and conversions. Call it 
+	 * once the tick is over.
+	 */
+	public void recycleDead()
+	{
+		if (pool != null)
+		{
+			pool.recycle();
+		}
+	}
+	
 	/**
 	 * This will check for a human at the human's new position. If the humans collide,
 	 * they may breed. 
@@ -845,7 +1336,7 @@ public class Interaction
 	 * 
 	 * @param population is the human population that may increase if they breed.
 	 */
-	private static void checkHuman(Environment environment, Phenotype critter, Population population)
+	private void checkHuman(Environment environment, Phenotype critter, Population population)
 	{
 		//sets the crossover probability.
 		double crossoverProb = (.8);
@@ -857,12 +1348,27 @@ public class Interaction
 		//Check if it will cross over
 		if (random.nextDouble()< crossoverProb)
 		{
-			//check if there is a human at the new location
-			if (environment.getHuman(critter.getXloc(), critter.getYloc())>0)
+			//check if there is a human at the new location that has not moved
+			//yet this tick, humans that moved already are on their way elsewhere
+			Phenotype parent2 = null;
+			ArrayList here = environment.getHumanPhenotypes(critter.getXloc(), critter.getYloc());
+			for (int i=here.size()-1; i>=0 && parent2==null; i--)
 			{
-				//if there is, get the parent.
-				Phenotype parent2 = 
-					environment.getHumanPhenotype(critter.getXloc(), critter.getYloc());
+				Phenotype other = (Phenotype)here.get(i);
+				if (other != critter && other.getMoveTick() != tick)
+				{
+					parent2 = other;
+				}
+			}
+			
+			//with a breeding service the child is born at the end of the tick
+			if (parent2 != null && breeding != null)
+			{
+				breeding.meet(critter, parent2);
+			}
+			else if (parent2 != null)
+			{
+				long breedStart = phaseTimer.start();
 				
 				//create a new crossover.
 				HumanCrossover hc = 
@@ -877,13 +1383,27 @@ public class Interaction
 				Chromosome[] spawn = hc.performOperation(parents);
 				if(spawn != null)
 				{
-					Phenotype pheno = new Phenotype(spawn[0], critter.getXloc(),critter.getYloc(),25);
+					Phenotype pheno;
+					if (pool != null)
+					{
+						pheno = pool.takeHuman(spawn[0], critter.getXloc(),critter.getYloc(),25);
+					}
+					else
+					{
+						pheno = new Phenotype(spawn[0], critter.getXloc(),critter.getYloc(),25);
+					}
 				
 					population.add(pheno);
+					statistics.countBirth();
+					events.fireBred(critter, parent2, pheno);
 					environment.addHuman(critter.getXloc(),critter.getYloc());
 					environment.addHumanPhenotype(pheno, critter.getXloc(),critter.getYloc());
+					if (scheduler != null)
+					{
+						scheduler.add(pheno, false);
+					}
 				}
-				
+				phaseTimer.stop(PhaseTimer.BREEDING, breedStart);
 			}
 		}
 		
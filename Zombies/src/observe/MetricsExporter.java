@@ -0,0 +1,298 @@
+package observe;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Metrics Exporter class
+ * appends one CSV row per tick to a file. Each row holds the tick, the
+ * sizes of both populations, the births, duels won by each side and food
+ * eaten during the tick, the mean and max strength and fitness of the
+ * humans and the number of distinct human genomes.
+ *
+ * The simulation thread only copies the numbers out of a TickStatistics
+ * into a fixed ring of slots. A background thread turns the slots into
+ * text and writes them through a FileChannel in large blocks. Neither side
+ * allocates per row, and the simulation thread never waits on the disk: if
+ * the writer falls so far behind that the ring is full, the row is dropped
+ * and counted instead.
+ */
+public class MetricsExporter implements Runnable
+{
+	//the columns of the file
+	private static final String HEADER = "tick,humans,zombies,births," +
+		"duels_won_by_humans,duels_won_by_zombies,food_eaten," +
+		"mean_strength,max_strength,mean_fitness,max_fitness,distinct_genomes\n";
+
+	//the number of numbers in each row
+	private static final int FIELDS = 12;
+
+	//the number of rows the ring can hold, must be a power of two
+	private static final int RING_SIZE = 1024;
+
+	//how long the writer sleeps when there is nothing to write
+	private static final long IDLE_NANOS = 1000000L;
+
+	//the rows waiting to be written, FIELDS numbers per row
+	private double[] ring = new double[RING_SIZE * FIELDS];
+
+	//the number of rows put in the ring and taken out of it. Only the
+	//simulation thread moves head and only the writer moves tail.
+	private AtomicLong head = new AtomicLong(0);
+	private AtomicLong tail = new AtomicLong(0);
+
+	//rows that did not fit in the ring
+	private long droppedRows = 0;
+
+	//the file being written
+	private FileChannel channel;
+
+	//text waiting to be written to the channel
+	private ByteBuffer out = ByteBuffer.allocateDirect(64 * 1024);
+
+	//scratch space for the digits of a number
+	private byte[] digits = new byte[20];
+
+	private volatile boolean running = true;
+	private volatile IOException writeProblem = null;
+	private Thread writer;
+
+	/**
+	 * Opens the file (creating it if needed) and starts the writer
+	 * thread. The column names are written if the file is empty.
+	 *
+	 * @param file - the file rows are appended to.
+	 * @throws IOException - if the file can not be opened.
+	 */
+	public MetricsExporter(File file) throws IOException
+	{
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+			StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+		if (channel.size() == 0)
+		{
+			for (int i=0; i<HEADER.length(); i++)
+			{
+				out.put((byte)HEADER.charAt(i));
+			}
+		}
+
+		writer = new Thread(this, "metrics exporter");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Queues a row made from the statistics of a finished tick.
+	 *
+	 * @param statistics - the statistics of the tick.
+	 * @return - true if the row was queued, false if the ring was full
+	 * and the row was dropped.
+	 */
+	public boolean append(TickStatistics statistics)
+	{
+		long row = head.get();
+		if (row - tail.get() >= RING_SIZE)
+		{
+			droppedRows++;
+			return false;
+		}
+
+		int slot = (int)(row & (RING_SIZE - 1)) * FIELDS;
+		ring[slot] = statistics.getTick();
+		ring[slot + 1] = statistics.getHumanPopulationSize();
+		ring[slot + 2] = statistics.getZombiePopulationSize();
+		ring[slot + 3] = statistics.getBirths();
+		ring[slot + 4] = statistics.getDuelsWonByHumans();
+		ring[slot + 5] = statistics.getDuelsWonByZombies();
+		ring[slot + 6] = statistics.getFoodEaten();
+		ring[slot + 7] = statistics.getMeanStrength();
+		ring[slot + 8] = statistics.getMaxStrength();
+		ring[slot + 9] = statistics.getMeanFitness();
+		ring[slot + 10] = statistics.getMaxFitness();
+		ring[slot + 11] = statistics.getDistinctGenomes();
+
+		//publishes the row to the writer
+		head.lazySet(row + 1);
+		return true;
+	}
+
+	/**
+	 * The writer thread. Turns queued rows into text and writes them.
+	 */
+	public void run()
+	{
+		try
+		{
+			while (running)
+			{
+				if (!drain())
+				{
+					flush();
+					LockSupport.parkNanos(IDLE_NANOS);
+				}
+			}
+
+			//writes whatever was queued before close was called
+			drain();
+			flush();
+		}
+		catch (IOException e)
+		{
+			writeProblem = e;
+		}
+	}
+
+	/**
+	 * Writes every queued row into the text buffer.
+	 * @return - true if there was anything to write.
+	 */
+	private boolean drain() throws IOException
+	{
+		long row = tail.get();
+		long end = head.get();
+		if (row == end)
+		{
+			return false;
+		}
+
+		for ( ; row < end; row++)
+		{
+			//a row is at most about 20 characters a field
+			if (out.remaining() < FIELDS * 24)
+			{
+				flush();
+			}
+
+			int slot = (int)(row & (RING_SIZE - 1)) * FIELDS;
+			for (int i=0; i<FIELDS; i++)
+			{
+				double value = ring[slot + i];
+				if (i >= 7 && i <= 10)
+				{
+					putDecimal(value);
+				}
+				else
+				{
+					putWhole((long)value);
+				}
+
+				if (i < FIELDS - 1)
+				{
+					out.put((byte)',');
+				}
+			}
+			out.put((byte)'\n');
+
+			//hands the slot back to the simulation thread
+			tail.lazySet(row + 1);
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the text buffer to the file.
+	 */
+	private void flush() throws IOException
+	{
+		out.flip();
+		while (out.hasRemaining())
+		{
+			channel.write(out);
+		}
+		out.clear();
+	}
+
+	/**
+	 * Writes a whole number as text.
+	 */
+	private void putWhole(long value)
+	{
+		if (value < 0)
+		{
+			out.put((byte)'-');
+			value = -value;
+		}
+
+		int count = 0;
+		do
+		{
+			digits[count] = (byte)('0' + (value % 10));
+			value /= 10;
+			count++;
+		}
+		while (value > 0);
+
+		while (count > 0)
+		{
+			count--;
+			out.put(digits[count]);
+		}
+	}
+
+	/**
+	 * Writes a number as text with four decimal places.
+	 */
+	private void putDecimal(double value)
+	{
+		if (Double.isNaN(value) || Double.isInfinite(value)
+			|| Math.abs(value) >= 1e14)
+		{
+			putWhole((long)value);
+			return;
+		}
+
+		long scaled = Math.round(value * 10000);
+		if (scaled < 0)
+		{
+			out.put((byte)'-');
+			scaled = -scaled;
+		}
+
+		putWhole(scaled / 10000);
+		out.put((byte)'.');
+		long fraction = scaled % 10000;
+		for (long place=1000; place>0; place/=10)
+		{
+			out.put((byte)('0' + (fraction / place) % 10));
+		}
+	}
+
+	/**
+	 * Returns the number of rows dropped because the ring was full.
+	 */
+	public long getDroppedRows()
+	{
+		return droppedRows;
+	}
+
+	/**
+	 * Writes every queued row, stops the writer thread and closes the file.
+	 *
+	 * @throws IOException - if any of the writes failed.
+	 */
+	public void close() throws IOException
+	{
+		running = false;
+		LockSupport.unpark(writer);
+		try
+		{
+			writer.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		channel.close();
+
+		if (writeProblem != null)
+		{
+			throw writeProblem;
+		}
+	}
+}
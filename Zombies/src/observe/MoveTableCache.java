@@ -0,0 +1,114 @@
+package observe;
+
+import java.util.HashMap;
+
+import chromosome.Chromosome;
+
+/**
+ * Move Table Cache class
+ * keeps the compiled moves of every genome seen so far. A critter's moves
+ * only depend on its chromosome and on which of the 8 cells around it are
+ * empty, so each genome's network only has to be run for the 256 ways
+ * those cells can be filled, once, and every critter with the same genome
+ * (a clone, a child with no crossover or mutation, a migrant coming back)
+ * shares the table.
+ *
+ * The tables are keyed by copies of the chromosomes, so a chromosome
+ * changed in place after its table was made does not change the key. To
+ * keep the memory bounded, the cache is emptied when it grows past its
+ * capacity; critters keep the tables they already have.
+ */
+public class MoveTableCache
+{
+	//the tables, by chromosome
+	private HashMap tables = new HashMap();
+
+	//the number of genomes the cache holds before it is emptied
+	private int capacity;
+
+	//the number of tables made, and the number of times one was shared
+	private long compiled = 0;
+	private long shared = 0;
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param capacity - the number of genomes kept before the cache is
+	 * emptied.
+	 */
+	public MoveTableCache(int capacity)
+	{
+		if (capacity < 1)
+		{
+			throw new IllegalArgumentException("The capacity must be positive.");
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Finds the table of a genome.
+	 *
+	 * @param chromosome - the genome.
+	 * @return - its table, or null if it has not been compiled.
+	 */
+	public byte[] get(Chromosome chromosome)
+	{
+		byte[] table = (byte[])tables.get(chromosome);
+		if (table != null)
+		{
+			shared++;
+		}
+		return table;
+	}
+
+	/**
+	 * Keeps the table of a genome.
+	 *
+	 * @param chromosome - a copy of the genome that will not be changed.
+	 * @param table - its moves, indexed by which cells are not empty.
+	 * @return - the table kept for the genome.
+	 */
+	public byte[] put(Chromosome chromosome, byte[] table)
+	{
+		if (tables.size() >= capacity)
+		{
+			tables.clear();
+		}
+		tables.put(chromosome, table);
+		compiled++;
+		return table;
+	}
+
+	/**
+	 * Returns the number of genomes held.
+	 */
+	public int size()
+	{
+		return tables.size();
+	}
+
+	/**
+	 * Forgets every table.
+	 */
+	public void clear()
+	{
+		tables.clear();
+	}
+
+	/**
+	 * Returns the number of tables made so far.
+	 */
+	public long getCompiled()
+	{
+		return compiled;
+	}
+
+	/**
+	 * Returns the number of times a table was shared with another critter
+	 * with the same genome.
+	 */
+	public long getShared()
+	{
+		return shared;
+	}
+}
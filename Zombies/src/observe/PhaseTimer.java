@@ -0,0 +1,413 @@
+package observe;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import jdk.jfr.EventType;
+
+/**
+ * Phase Timer class
+ * records how long each phase of a generation takes. The simulation
+ * marks the start of a phase with start and its end with stop (or lap,
+ * which also starts the next phase), and the time between is added to
+ * a histogram for that phase.
+ *
+ * Each histogram keeps 8 buckets for every power of two of nanoseconds,
+ * so a recorded time is off by at most an eighth and the whole run fits
+ * in a few kilobytes no matter how long it is. Recording is two calls to
+ * System.nanoTime and a few array increments. A disabled timer returns
+ * from every method straight away.
+ *
+ * The settle phase covers the work done once every critter has moved:
+ * the batched births and duels, the carrying capacity culls and the
+ * recycling of the dead. The duel and breeding phases are timed inside
+ * Interaction and are part of other phases, so they should not be added
+ * to them: duels fought and children born as the critters move are part
+ * of the zombie and human phases, and batched ones are part of the
+ * settle phase. The numbers are published through JMX (see
+ * PhaseTimerMBean), printed every so many generations, and sent to Java
+ * Flight Recorder as a GenerationEvent when a recording is running.
+ *
+ * The timer is written by the simulation thread only. JMX readers may
+ * see numbers from a generation that is not finished yet.
+ */
+public class PhaseTimer implements PhaseTimerMBean
+{
+	//the phases of a generation
+	public static final int FOOD = 0;
+	public static final int GRID = 1;
+	public static final int DISPLAY = 2;
+	public static final int ZOMBIES = 3;
+	public static final int HUMANS = 4;
+	public static final int DUELS = 5;
+	public static final int BREEDING = 6;
+	public static final int SETTLE = 7;
+	public static final int NUM_PHASES = 8;
+
+	private static final String[] PHASE_NAMES = {"food", "grid", "display",
+		"zombies", "humans", "duels", "breeding", "settle"};
+
+	//times below this many nanoseconds each get their own bucket, above
+	//it every power of two is split into SUB_BUCKETS buckets
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+	private static final int NUM_BUCKETS = LINEAR_LIMIT + (62 - SUB_BITS) * SUB_BUCKETS;
+
+	//used to check whether a flight recording wants generation events
+	private static final EventType GENERATION_EVENT =
+		EventType.getEventType(GenerationEvent.class);
+
+	private boolean enabled;
+
+	//print a summary every this many generations, 0 for never
+	private int summaryInterval;
+
+	private long generations = 0;
+
+	//one histogram of times for each phase
+	private long[][] buckets = new long[NUM_PHASES][NUM_BUCKETS];
+	private long[] counts = new long[NUM_PHASES];
+	private long[] totals = new long[NUM_PHASES];
+	private long[] maxima = new long[NUM_PHASES];
+
+	//the time spent in each phase during the current generation
+	private long[] generationTotals = new long[NUM_PHASES];
+
+	/**
+	 * Creates a phase timer.
+	 *
+	 * @param enabled - false for a timer that records nothing.
+	 * @param summaryInterval - print a summary every this many
+	 * generations, or 0 to never print one.
+	 */
+	public PhaseTimer(boolean enabled, int summaryInterval)
+	{
+		if (summaryInterval < 0)
+		{
+			throw new IllegalArgumentException("The summary interval can not be negative.");
+		}
+		this.enabled = enabled;
+		this.summaryInterval = summaryInterval;
+	}
+
+	/**
+	 * Marks the start of a phase.
+	 *
+	 * @return - the time to pass to stop or lap when the phase ends.
+	 */
+	public long start()
+	{
+		if (!enabled)
+		{
+			return 0;
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Marks the end of a phase.
+	 *
+	 * @param phase - the phase that ended.
+	 * @param startTime - the time start returned when the phase began.
+	 */
+	public void stop(int phase, long startTime)
+	{
+		if (!enabled)
+		{
+			return;
+		}
+		record(phase, System.nanoTime() - startTime);
+	}
+
+	/**
+	 * Marks the end of a phase and the start of the next.
+	 *
+	 * @param phase - the phase that ended.
+	 * @param startTime - the time the phase began.
+	 * @return - the time to pass when the next phase ends.
+	 */
+	public long lap(int phase, long startTime)
+	{
+		if (!enabled)
+		{
+			return 0;
+		}
+		long now = System.nanoTime();
+		record(phase, now - startTime);
+		return now;
+	}
+
+	/**
+	 * Adds a time to the histogram of a phase.
+	 *
+	 * @param phase - the phase that took the time.
+	 * @param nanos - how long it took.
+	 */
+	public void record(int phase, long nanos)
+	{
+		if (!enabled)
+		{
+			return;
+		}
+		if (nanos < 0)
+		{
+			nanos = 0;
+		}
+		buckets[phase][bucketIndex(nanos)]++;
+		counts[phase]++;
+		totals[phase] += nanos;
+		generationTotals[phase] += nanos;
+		if (nanos > maxima[phase])
+		{
+			maxima[phase] = nanos;
+		}
+	}
+
+	/**
+	 * Marks the end of a generation. Prints the summary if it is due and
+	 * sends the generation's times to the flight recorder if it is
+	 * recording them.
+	 */
+	public void endGeneration()
+	{
+		if (!enabled)
+		{
+			return;
+		}
+		generations++;
+
+		if (GENERATION_EVENT.isEnabled())
+		{
+			GenerationEvent event = new GenerationEvent();
+			event.generation = generations;
+			event.foodNanos = generationTotals[FOOD];
+			event.gridNanos = generationTotals[GRID];
+			event.displayNanos = generationTotals[DISPLAY];
+			event.zombieNanos = generationTotals[ZOMBIES];
+			event.humanNanos = generationTotals[HUMANS];
+			event.duelNanos = generationTotals[DUELS];
+			event.breedingNanos = generationTotals[BREEDING];
+			event.settleNanos = generationTotals[SETTLE];
+			event.commit();
+		}
+		Arrays.fill(generationTotals, 0L);
+
+		if (summaryInterval > 0 && generations % summaryInterval == 0)
+		{
+			System.out.println("PHASE TIMES AFTER GENERATION " + generations);
+			System.out.print(getSummary());
+		}
+	}
+
+	/**
+	 * Publishes the timer through the platform MBean server as
+	 * observe:type=PhaseTimer. A failure is printed, not thrown, since
+	 * the simulation runs fine without it.
+	 */
+	public void register()
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("observe:type=PhaseTimer");
+			if (server.isRegistered(name))
+			{
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+		}
+		catch (JMException e)
+		{
+			System.out.println("Phase timer not published: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the bucket a time belongs in.
+	 */
+	static int bucketIndex(long nanos)
+	{
+		if (nanos < LINEAR_LIMIT)
+		{
+			return (int)nanos;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+		int shift = magnitude - SUB_BITS;
+		int sub = (int)(nanos >>> shift) - SUB_BUCKETS;
+		return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Returns the largest time that belongs in a bucket.
+	 */
+	static long bucketTop(int index)
+	{
+		if (index < LINEAR_LIMIT)
+		{
+			return index;
+		}
+		int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+		long sub = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+	}
+
+	/**
+	 * Returns the time that the given fraction of a phase's times are
+	 * at or below, to within the width of a bucket.
+	 *
+	 * @param phase - the phase.
+	 * @param fraction - between 0 and 1, for example 0.99.
+	 */
+	public long getPercentileNanos(int phase, double fraction)
+	{
+		if (fraction < 0 || fraction > 1)
+		{
+			throw new IllegalArgumentException("The fraction must be between 0 and 1.");
+		}
+		if (counts[phase] == 0)
+		{
+			return 0;
+		}
+
+		long wanted = (long)Math.ceil(fraction * counts[phase]);
+		if (wanted < 1)
+		{
+			wanted = 1;
+		}
+		long seen = 0;
+		for (int i=0; i<NUM_BUCKETS; i++)
+		{
+			seen += buckets[phase][i];
+			if (seen >= wanted)
+			{
+				return Math.min(bucketTop(i), maxima[phase]);
+			}
+		}
+		return maxima[phase];
+	}
+
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Turns recording on or off. The times already recorded are kept.
+	 */
+	public void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+	}
+
+	public long getGenerations()
+	{
+		return generations;
+	}
+
+	public String[] getPhaseNames()
+	{
+		return PHASE_NAMES.clone();
+	}
+
+	public long[] getCounts()
+	{
+		return counts.clone();
+	}
+
+	public long[] getTotalNanos()
+	{
+		return totals.clone();
+	}
+
+	public long[] getMeanNanos()
+	{
+		long[] means = new long[NUM_PHASES];
+		for (int i=0; i<NUM_PHASES; i++)
+		{
+			if (counts[i] > 0)
+			{
+				means[i] = totals[i] / counts[i];
+			}
+		}
+		return means;
+	}
+
+	public long[] getMedianNanos()
+	{
+		long[] medians = new long[NUM_PHASES];
+		for (int i=0; i<NUM_PHASES; i++)
+		{
+			medians[i] = getPercentileNanos(i, 0.5);
+		}
+		return medians;
+	}
+
+	public long[] getPercentile99Nanos()
+	{
+		long[] percentiles = new long[NUM_PHASES];
+		for (int i=0; i<NUM_PHASES; i++)
+		{
+			percentiles[i] = getPercentileNanos(i, 0.99);
+		}
+		return percentiles;
+	}
+
+	public long[] getMaxNanos()
+	{
+		return maxima.clone();
+	}
+
+	public String getSummary()
+	{
+		//the duel and breeding times are already part of the zombie,
+		//human or settle times, so they are left out of the share total
+		long total = 0;
+		for (int i=0; i<NUM_PHASES; i++)
+		{
+			if (i != DUELS && i != BREEDING)
+			{
+				total += totals[i];
+			}
+		}
+
+		StringBuilder summary = new StringBuilder();
+		summary.append(String.format("%-10s %10s %12s %12s %12s %12s %7s%n", "phase",
+			"count", "mean us", "median us", "p99 us", "max us", "share"));
+		for (int i=0; i<NUM_PHASES; i++)
+		{
+			double share = 0;
+			if (total > 0)
+			{
+				share = 100.0 * totals[i] / total;
+			}
+			long mean = 0;
+			if (counts[i] > 0)
+			{
+				mean = totals[i] / counts[i];
+			}
+			summary.append(String.format("%-10s %10d %12.1f %12.1f %12.1f %12.1f %6.1f%%%n",
+				PHASE_NAMES[i], counts[i], mean / 1000.0,
+				getPercentileNanos(i, 0.5) / 1000.0, getPercentileNanos(i, 0.99) / 1000.0,
+				maxima[i] / 1000.0, share));
+		}
+		return summary.toString();
+	}
+
+	public void reset()
+	{
+		for (int i=0; i<NUM_PHASES; i++)
+		{
+			Arrays.fill(buckets[i], 0L);
+		}
+		Arrays.fill(counts, 0L);
+		Arrays.fill(totals, 0L);
+		Arrays.fill(maxima, 0L);
+		Arrays.fill(generationTotals, 0L);
+		generations = 0;
+	}
+}
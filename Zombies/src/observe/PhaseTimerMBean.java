@@ -0,0 +1,66 @@
+package observe;
+
+/**
+ * Phase Timer MBean interface, the view of a PhaseTimer that is
+ * published through JMX so a running simulation can be watched from
+ * jconsole or any other JMX client. All the times are in nanoseconds
+ * and every array has one entry per phase, in the order of
+ * getPhaseNames.
+ */
+public interface PhaseTimerMBean
+{
+	/**
+	 * @return - true if the timer is recording.
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * @return - the number of generations that have finished.
+	 */
+	public long getGenerations();
+
+	/**
+	 * @return - the name of each phase.
+	 */
+	public String[] getPhaseNames();
+
+	/**
+	 * @return - the number of times each phase was timed.
+	 */
+	public long[] getCounts();
+
+	/**
+	 * @return - the total time spent in each phase.
+	 */
+	public long[] getTotalNanos();
+
+	/**
+	 * @return - the mean time of each phase.
+	 */
+	public long[] getMeanNanos();
+
+	/**
+	 * @return - the median time of each phase.
+	 */
+	public long[] getMedianNanos();
+
+	/**
+	 * @return - the 99th percentile time of each phase.
+	 */
+	public long[] getPercentile99Nanos();
+
+	/**
+	 * @return - the longest time of each phase.
+	 */
+	public long[] getMaxNanos();
+
+	/**
+	 * @return - a table of every phase, as printed by the periodic summary.
+	 */
+	public String getSummary();
+
+	/**
+	 * Forgets every recorded time.
+	 */
+	public void reset();
+}
@@ -0,0 +1,220 @@
+package observe;
+
+import critter.Phenotype;
+
+/**
+ * Simulation Events class
+ * passes what happens to the critters during a tick (moves, meals,
+ * births, duels and deaths) on to whatever has subscribed, such as
+ * monitoring, lineage tracking or rendering, without those having to be
+ * part of Interaction. Each kind of event has its own listener type and
+ * its listeners are kept in a plain array, which is only replaced when a
+ * listener is added. Firing an event is a loop over that array, so with
+ * nothing subscribed it costs next to nothing and allocates nothing.
+ *
+ * Listeners should be added before the simulation starts, and are called
+ * on the simulation's thread in the middle of the tick, so they must not
+ * change the environment or the populations.
+ */
+public class SimulationEvents
+{
+	/**
+	 * Told each time a critter moves.
+	 */
+	public interface MoveListener
+	{
+		/**
+		 * @param critter - the critter, already at its new cell.
+		 * @param fromX - the x coordinate it moved from.
+		 * @param fromY - the y coordinate it moved from.
+		 */
+		void moved(Phenotype critter, int fromX, int fromY);
+	}
+
+	/**
+	 * Told each time a human eats.
+	 */
+	public interface FoodListener
+	{
+		/**
+		 * @param critter - the human.
+		 * @param amount - the pieces of food it ate.
+		 */
+		void ate(Phenotype critter, int amount);
+	}
+
+	/**
+	 * Told each time a child is born.
+	 */
+	public interface BirthListener
+	{
+		/**
+		 * @param dad - the parent that moved onto the other's cell.
+		 * @param mom - the other parent.
+		 * @param child - the child, already in the population.
+		 */
+		void bred(Phenotype dad, Phenotype mom, Phenotype child);
+	}
+
+	/**
+	 * Told each time a zombie and a human fight.
+	 */
+	public interface DuelListener
+	{
+		/**
+		 * @param zombie - the zombie.
+		 * @param human - the human.
+		 * @param humanWon - true if the human won and the zombie dies, false
+		 * if the human is turned.
+		 */
+		void duelled(Phenotype zombie, Phenotype human, boolean humanWon);
+	}
+
+	/**
+	 * Told each time a critter is taken out of the simulation.
+	 */
+	public interface DeathListener
+	{
+		/**
+		 * @param critter - the critter, already out of its population.
+		 */
+		void died(Phenotype critter);
+	}
+
+	private MoveListener[] moveListeners = new MoveListener[0];
+	private FoodListener[] foodListeners = new FoodListener[0];
+	private BirthListener[] birthListeners = new BirthListener[0];
+	private DuelListener[] duelListeners = new DuelListener[0];
+	private DeathListener[] deathListeners = new DeathListener[0];
+
+	/**
+	 * Subscribes a listener to moves.
+	 */
+	public void addMoveListener(MoveListener listener)
+	{
+		check(listener);
+		MoveListener[] bigger = new MoveListener[moveListeners.length + 1];
+		System.arraycopy(moveListeners, 0, bigger, 0, moveListeners.length);
+		bigger[moveListeners.length] = listener;
+		moveListeners = bigger;
+	}
+
+	/**
+	 * Subscribes a listener to meals.
+	 */
+	public void addFoodListener(FoodListener listener)
+	{
+		check(listener);
+		FoodListener[] bigger = new FoodListener[foodListeners.length + 1];
+		System.arraycopy(foodListeners, 0, bigger, 0, foodListeners.length);
+		bigger[foodListeners.length] = listener;
+		foodListeners = bigger;
+	}
+
+	/**
+	 * Subscribes a listener to births.
+	 */
+	public void addBirthListener(BirthListener listener)
+	{
+		check(listener);
+		BirthListener[] bigger = new BirthListener[birthListeners.length + 1];
+		System.arraycopy(birthListeners, 0, bigger, 0, birthListeners.length);
+		bigger[birthListeners.length] = listener;
+		birthListeners = bigger;
+	}
+
+	/**
+	 * Subscribes a listener to duels.
+	 */
+	public void addDuelListener(DuelListener listener)
+	{
+		check(listener);
+		DuelListener[] bigger = new DuelListener[duelListeners.length + 1];
+		System.arraycopy(duelListeners, 0, bigger, 0, duelListeners.length);
+		bigger[duelListeners.length] = listener;
+		duelListeners = bigger;
+	}
+
+	/**
+	 * Subscribes a listener to deaths.
+	 */
+	public void addDeathListener(DeathListener listener)
+	{
+		check(listener);
+		DeathListener[] bigger = new DeathListener[deathListeners.length + 1];
+		System.arraycopy(deathListeners, 0, bigger, 0, deathListeners.length);
+		bigger[deathListeners.length] = listener;
+		deathListeners = bigger;
+	}
+
+	/**
+	 * Tells the move listeners a critter moved.
+	 */
+	public void fireMoved(Phenotype critter, int fromX, int fromY)
+	{
+		MoveListener[] listeners = moveListeners;
+		for (int i=0; i<listeners.length; i++)
+		{
+			listeners[i].moved(critter, fromX, fromY);
+		}
+	}
+
+	/**
+	 * Tells the food listeners a human ate.
+	 */
+	public void fireAte(Phenotype critter, int amount)
+	{
+		FoodListener[] listeners = foodListeners;
+		for (int i=0; i<listeners.length; i++)
+		{
+			listeners[i].ate(critter, amount);
+		}
+	}
+
+	/**
+	 * Tells the birth listeners a child was born.
+	 */
+	public void fireBred(Phenotype dad, Phenotype mom, Phenotype child)
+	{
+		BirthListener[] listeners = birthListeners;
+		for (int i=0; i<listeners.length; i++)
+		{
+			listeners[i].bred(dad, mom, child);
+		}
+	}
+
+	/**
+	 * Tells the duel listeners a zombie and a human fought.
+	 */
+	public void fireDuelled(Phenotype zombie, Phenotype human, boolean humanWon)
+	{
+		DuelListener[] listeners = duelListeners;
+		for (int i=0; i<listeners.length; i++)
+		{
+			listeners[i].duelled(zombie, human, humanWon);
+		}
+	}
+
+	/**
+	 * Tells the death listeners a critter was taken out.
+	 */
+	public void fireDied(Phenotype critter)
+	{
+		DeathListener[] listeners = deathListeners;
+		for (int i=0; i<listeners.length; i++)
+		{
+			listeners[i].died(critter);
+		}
+	}
+
+	/**
+	 * Makes sure a listener is not null
+	 */
+	private static void check(Object listener)
+	{
+		if (listener == null)
+		{
+			throw new IllegalArgumentException("The listener can not be null.");
+		}
+	}
+}
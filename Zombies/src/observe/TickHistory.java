@@ -0,0 +1,257 @@
+package observe;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tick History class
+ * keeps the last few thousand ticks' numbers (the sizes of both
+ * populations, the mean strength of the humans, the births, duels won by
+ * each side and food eaten) for windows, exporters and tests to look at
+ * while the simulation runs. The history is a ring of a fixed number of
+ * rows, so it takes the same memory however long the run is: once it is
+ * full each new tick takes the place of the oldest.
+ *
+ * Only the simulation thread writes, and it never waits for anyone. Any
+ * number of other threads can read at the same time without locks. Each
+ * row has a sequence number that is odd while the row is being written
+ * and is changed again once it is done. A reader reads the sequence
+ * number, the row, then the sequence number again, and only keeps the
+ * row if the number did not change, so it never sees half of one tick
+ * and half of another. A reader that falls behind by more than the size
+ * of the ring simply misses the rows that were written over.
+ */
+public class TickHistory
+{
+	//the numbers in each row
+	public static final int TICK = 0;
+	public static final int HUMANS = 1;
+	public static final int ZOMBIES = 2;
+	public static final int MEAN_STRENGTH = 3;
+	public static final int BIRTHS = 4;
+	public static final int DUELS_WON_BY_HUMANS = 5;
+	public static final int DUELS_WON_BY_ZOMBIES = 6;
+	public static final int FOOD_EATEN = 7;
+	public static final int FIELDS = 8;
+
+	//the number of rows, a power of two
+	private int capacity;
+	private int mask;
+
+	//the rows, FIELDS numbers each, doubles kept as their bits
+	private AtomicLongArray rows;
+
+	//for each row, twice the number of the tick it holds, plus one
+	//while it is being written
+	private AtomicLongArray sequence;
+
+	//the number of rows written so far, moved only by the writer
+	private AtomicLong count = new AtomicLong(0);
+
+	/**
+	 * Creates an empty history.
+	 *
+	 * @param capacity - the number of rows kept, rounded up to a power
+	 * of two.
+	 */
+	public TickHistory(int capacity)
+	{
+		if (capacity < 1)
+		{
+			throw new IllegalArgumentException("The capacity must be positive.");
+		}
+		this.capacity = 1;
+		while (this.capacity < capacity)
+		{
+			this.capacity *= 2;
+		}
+		mask = this.capacity - 1;
+
+		rows = new AtomicLongArray(this.capacity * FIELDS);
+		sequence = new AtomicLongArray(this.capacity);
+		for (int i=0; i<this.capacity; i++)
+		{
+			//no row has been written to any slot yet
+			sequence.set(i, -2);
+		}
+	}
+
+	/**
+	 * Adds a row made from the statistics of a finished tick, taking the
+	 * place of the oldest row if the history is full. Only the
+	 * simulation thread may call this. The statistics should have been
+	 * measured.
+	 *
+	 * @param statistics - the statistics of the tick.
+	 */
+	public void record(TickStatistics statistics)
+	{
+		long index = count.get();
+		int slot = (int)(index & mask);
+		int base = slot * FIELDS;
+
+		//marks the row as being written
+		sequence.set(slot, 2 * index + 1);
+
+		rows.lazySet(base + TICK, statistics.getTick());
+		rows.lazySet(base + HUMANS, statistics.getHumanPopulationSize());
+		rows.lazySet(base + ZOMBIES, statistics.getZombiePopulationSize());
+		rows.lazySet(base + MEAN_STRENGTH,
+			Double.doubleToRawLongBits(statistics.getMeanStrength()));
+		rows.lazySet(base + BIRTHS, statistics.getBirths());
+		rows.lazySet(base + DUELS_WON_BY_HUMANS, statistics.getDuelsWonByHumans());
+		rows.lazySet(base + DUELS_WON_BY_ZOMBIES, statistics.getDuelsWonByZombies());
+		rows.lazySet(base + FOOD_EATEN, statistics.getFoodEaten());
+
+		//publishes the row
+		sequence.set(slot, 2 * index);
+		count.lazySet(index + 1);
+	}
+
+	/**
+	 * Reads a row. Never blocks.
+	 *
+	 * @param index - the row, counting from 0 for the first one ever
+	 * written.
+	 * @param out - filled with the row's FIELDS numbers, indexed by TICK,
+	 * HUMANS and so on.
+	 * @return - true if the row was read, false if it has not been
+	 * written yet or has already been written over.
+	 */
+	public boolean read(long index, double[] out)
+	{
+		if (index < 0)
+		{
+			return false;
+		}
+		int slot = (int)(index & mask);
+		int base = slot * FIELDS;
+
+		if (sequence.get(slot) != 2 * index)
+		{
+			return false;
+		}
+		for (int i=0; i<FIELDS; i++)
+		{
+			long bits = rows.get(base + i);
+			if (i == MEAN_STRENGTH)
+			{
+				out[i] = Double.longBitsToDouble(bits);
+			}
+			else
+			{
+				out[i] = bits;
+			}
+		}
+
+		//the writer may have started on the slot while it was being read
+		return sequence.get(slot) == 2 * index;
+	}
+
+	/**
+	 * Reads the newest row. Never blocks.
+	 *
+	 * @param out - filled with the row's FIELDS numbers.
+	 * @return - the index of the row read, or -1 if there is none yet.
+	 */
+	public long readLatest(double[] out)
+	{
+		while (true)
+		{
+			long index = count.get() - 1;
+			if (index < 0)
+			{
+				return -1;
+			}
+			if (read(index, out))
+			{
+				return index;
+			}
+			//the writer moved on while the row was being read, so there
+			//is a newer one to try
+		}
+	}
+
+	/**
+	 * Returns the number of rows written so far, including the ones
+	 * written over.
+	 */
+	public long getCount()
+	{
+		return count.get();
+	}
+
+	/**
+	 * Returns the number of rows kept.
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Creates a reader that starts at the oldest row still kept. Each
+	 * reader belongs to one thread.
+	 */
+	public Reader newReader()
+	{
+		return new Reader();
+	}
+
+	/**
+	 * Reader class
+	 * goes through the history one row at a time, remembering where it
+	 * is. If it falls so far behind that rows are written over before it
+	 * gets to them, it skips ahead and counts the rows it missed.
+	 */
+	public class Reader
+	{
+		private long next;
+		private long missed = 0;
+
+		private Reader()
+		{
+			next = Math.max(0, count.get() - capacity);
+		}
+
+		/**
+		 * Reads the next row if there is one. Never blocks.
+		 *
+		 * @param out - filled with the row's FIELDS numbers.
+		 * @return - true if a row was read, false if there is no new row.
+		 */
+		public boolean next(double[] out)
+		{
+			while (true)
+			{
+				long written = count.get();
+				if (next >= written)
+				{
+					return false;
+				}
+
+				//skips the rows that have been written over
+				if (next < written - capacity)
+				{
+					missed += written - capacity - next;
+					next = written - capacity;
+				}
+
+				if (read(next, out))
+				{
+					next++;
+					return true;
+				}
+				//the row was written over while it was being read
+			}
+		}
+
+		/**
+		 * Returns the number of rows this reader has missed.
+		 */
+		public long getMissed()
+		{
+			return missed;
+		}
+	}
+}
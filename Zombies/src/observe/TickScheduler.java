@@ -0,0 +1,576 @@
+package observe;
+
+import critter.Phenotype;
+import data.Environment;
+
+/**
+ * Tick Scheduler class
+ * lets critters with nothing around them sleep instead of being moved
+ * every tick. A human sleeps when there is no food, human or zombie
+ * within the sensor radius of it, and a zombie when there is no human.
+ * Its network is then fed nothing but zeros, so every tick it would make
+ * the same move, the one it makes on an empty neighbourhood. A sleeping
+ * critter is left where it fell asleep in the Environment and costs
+ * nothing until it is woken, which happens when
+ *
+ *   - any cell within the sensor radius of it changes (food appears or
+ *     is eaten, a critter arrives or leaves), found from the
+ *     Environment's record of changed cells, or
+ *   - its timer runs out: every critter sleeps for at most the maximum
+ *     sleep, so it gets a chance to look again. Nothing in the tick acts
+ *     on a critter's strength running out, so the timer does not depend
+ *     on it.
+ *
+ * On waking it catches up on the ticks it slept: it loses a point of
+ * strength for each, and is moved that many steps along its empty
+ * neighbourhood move. What it would have met on the way is not seen,
+ * and the move listeners are not told, so the maximum sleep should stay
+ * short.
+ *
+ * The timers are kept in a timing wheel, an array of lists indexed by
+ * the tick they run out on (modulo the size of the wheel), so setting
+ * and firing a timer takes constant time. Sleepers are also kept in a
+ * list per cell, so a change only looks at the sleepers in the cells
+ * around it. Both lists are linked through int arrays indexed by the
+ * sleepers' ids, so the scheduler does not allocate while it runs.
+ *
+ * The awake humans and zombies are kept in a list each, in the order
+ * they joined, and only those are gone through each tick. A critter that
+ * falls asleep or dies leaves a gap, and the gaps are closed up at the
+ * start of the next tick. Every critter that comes into the simulation
+ * has to be added.
+ *
+ * Each tick call beginTick, then go through the awake critters, putting
+ * the ones isQuiet is true for to sleep and moving the rest.
+ */
+public class TickScheduler
+{
+	//no id, the end of a list
+	private static final int NONE = -1;
+
+	//the step of each move, from 0 (top left) clockwise to 7 (left)
+	private static final int[] MOVE_X = {-1, 0, 1, 1, 1, 0, -1, -1};
+	private static final int[] MOVE_Y = {-1, -1, -1, 0, 1, 1, 1, 0};
+
+	private int width;
+	private int length;
+	private int radius;
+	private int maxSleep;
+
+	//the awake critters, with gaps where some have left
+	private Phenotype[] awakeHumans = new Phenotype[64];
+	private int awakeHumanCount = 0;
+	private Phenotype[] awakeZombies = new Phenotype[64];
+	private int awakeZombieCount = 0;
+
+	//the sleepers, by id
+	private Phenotype[] sleepers = new Phenotype[64];
+	private boolean[] sleepZombie = new boolean[64];
+	private int[] sleepCell = new int[64];
+	private int[] sleepTick = new int[64];
+	private int[] sleepMove = new int[64];
+	private int[] wakeTick = new int[64];
+
+	//the list of sleepers in each cell
+	private int[] cellHead;
+	private int[] cellNext = new int[64];
+	private int[] cellPrev = new int[64];
+
+	//the timing wheel, a list of sleepers for each slot
+	private int[] wheelHead;
+	private int wheelMask;
+	private int[] wheelNext = new int[64];
+	private int[] wheelPrev = new int[64];
+
+	//ids that are not in use
+	private int[] freeIds = new int[64];
+	private int freeCount = 0;
+	private int highWater = 0;
+
+	private int sleeping = 0;
+	private long wakeups = 0;
+
+	/**
+	 * Creates a scheduler for an environment of the given size.
+	 *
+	 * @param width - the number of columns.
+	 * @param length - the number of rows.
+	 * @param radius - how many cells away critters can sense, at least 1.
+	 * @param maxSleep - the most ticks a critter sleeps before it is woken.
+	 */
+	public TickScheduler(int width, int length, int radius, int maxSleep)
+	{
+		if (width < 1 || length < 1 || maxSleep < 1)
+		{
+			throw new IllegalArgumentException("The size and the maximum sleep " +
+				"must be positive.");
+		}
+		if (radius < 1 || 2 * radius + 1 > width || 2 * radius + 1 > length)
+		{
+			throw new IllegalArgumentException("The sensor square must fit in the grid.");
+		}
+		this.width = width;
+		this.length = length;
+		this.radius = radius;
+		this.maxSleep = maxSleep;
+
+		cellHead = new int[width * length];
+		for (int i=0; i<cellHead.length; i++)
+		{
+			cellHead[i] = NONE;
+		}
+
+		//big enough that no timer goes all the way round the wheel
+		int slots = 1;
+		while (slots <= maxSleep)
+		{
+			slots *= 2;
+		}
+		wheelHead = new int[slots];
+		wheelMask = slots - 1;
+		for (int i=0; i<slots; i++)
+		{
+			wheelHead[i] = NONE;
+		}
+	}
+
+	/**
+	 * Adds a critter that has come into the simulation, awake, to the end
+	 * of its list.
+	 *
+	 * @param critter - the critter, in the environment.
+	 * @param isZombie - true if the critter is a zombie.
+	 */
+	public void add(Phenotype critter, boolean isZombie)
+	{
+		if (isAsleep(critter) || critter.getAwakeIndex() != NONE)
+		{
+			throw new IllegalArgumentException("The critter is already scheduled.");
+		}
+		if (isZombie)
+		{
+			if (awakeZombieCount == awakeZombies.length)
+			{
+				Phenotype[] bigger = new Phenotype[2 * awakeZombieCount];
+				System.arraycopy(awakeZombies, 0, bigger, 0, awakeZombieCount);
+				awakeZombies = bigger;
+			}
+			critter.setAwakeIndex(awakeZombieCount);
+			awakeZombies[awakeZombieCount] = critter;
+			awakeZombieCount++;
+		}
+		else
+		{
+			if (awakeHumanCount == awakeHumans.length)
+			{
+				Phenotype[] bigger = new Phenotype[2 * awakeHumanCount];
+				System.arraycopy(awakeHumans, 0, bigger, 0, awakeHumanCount);
+				awakeHumans = bigger;
+			}
+			critter.setAwakeIndex(awakeHumanCount);
+			awakeHumans[awakeHumanCount] = critter;
+			awakeHumanCount++;
+		}
+	}
+
+	/**
+	 * Returns the length of the list of awake humans or zombies, gaps
+	 * included. Critters added while the list is gone through are put at
+	 * the end, so the length should be read again on every step.
+	 *
+	 * @param isZombie - true for the zombies.
+	 */
+	public int getAwakeCount(boolean isZombie)
+	{
+		if (isZombie)
+		{
+			return awakeZombieCount;
+		}
+		return awakeHumanCount;
+	}
+
+	/**
+	 * Returns an awake human or zombie.
+	 *
+	 * @param index - from 0 to getAwakeCount(isZombie)-1.
+	 * @param isZombie - true for the zombies.
+	 * @return - the critter, or null if the place is a gap.
+	 */
+	public Phenotype getAwake(int index, boolean isZombie)
+	{
+		if (isZombie)
+		{
+			return awakeZombies[index];
+		}
+		return awakeHumans[index];
+	}
+
+	/**
+	 * Closes up the gaps in the awake lists, then wakes the critters whose
+	 * timer runs out this tick and the ones whose neighbourhood changed
+	 * since the environment's record of changes was last cleared. The
+	 * steps the woken critters catch up on are recorded as changes too,
+	 * and may wake others. The record is left for the caller to clear.
+	 *
+	 * @param environment - the environment, recording its changes.
+	 * @param tick - the tick that is starting.
+	 */
+	public void beginTick(Environment environment, int tick)
+	{
+		awakeHumanCount = compact(awakeHumans, awakeHumanCount);
+		awakeZombieCount = compact(awakeZombies, awakeZombieCount);
+
+		int id = wheelHead[tick & wheelMask];
+		while (id != NONE)
+		{
+			int next = wheelNext[id];
+			if (wakeTick[id] <= tick)
+			{
+				wake(id, environment, tick);
+			}
+			id = next;
+		}
+
+		for (int i=0; i<environment.getChangedCount(); i++)
+		{
+			int cell = environment.getChangedCell(i);
+			int x = cell / length;
+			int y = cell % length;
+			for (int dx=-radius; dx<=radius; dx++)
+			{
+				int nx = wrap(x + dx, width);
+				for (int dy=-radius; dy<=radius; dy++)
+				{
+					id = cellHead[nx * length + wrap(y + dy, length)];
+					while (id != NONE)
+					{
+						int next = cellNext[id];
+						wake(id, environment, tick);
+						id = next;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Wakes every sleeper, for example before the critters are saved.
+	 *
+	 * @param environment - the environment.
+	 * @param tick - the next tick to be run.
+	 */
+	public void wakeAll(Environment environment, int tick)
+	{
+		for (int id=0; id<highWater; id++)
+		{
+			if (sleepers[id] != null)
+			{
+				wake(id, environment, tick);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the critter is asleep.
+	 */
+	public boolean isAsleep(Phenotype critter)
+	{
+		return critter.getSchedulerId() != NONE;
+	}
+
+	/**
+	 * Returns true if nothing the critter reacts to is within the sensor
+	 * radius of it: for a human no food, human or zombie, for a zombie no
+	 * human. The critter itself is in the environment and is not counted.
+	 *
+	 * @param environment - the environment.
+	 * @param critter - the critter.
+	 * @param isZombie - true if the critter is a zombie.
+	 */
+	public boolean isQuiet(Environment environment, Phenotype critter, boolean isZombie)
+	{
+		int[][] food = environment.getFoodEnvironment();
+		int[][] humans = environment.getHumanEnvironment();
+		int[][] zombies = environment.getZombieEnvironment();
+		int x = critter.getXloc();
+		int y = critter.getYloc();
+
+		for (int dx=-radius; dx<=radius; dx++)
+		{
+			int nx = wrap(x + dx, width);
+			for (int dy=-radius; dy<=radius; dy++)
+			{
+				int ny = wrap(y + dy, length);
+				int self = 0;
+				if (!isZombie && dx == 0 && dy == 0)
+				{
+					self = 1;
+				}
+				if (humans[nx][ny] > self)
+				{
+					return false;
+				}
+				if (!isZombie && (food[nx][ny] != 0 || zombies[nx][ny] != 0))
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Puts an awake critter to sleep where it stands, in place of moving
+	 * it this tick.
+	 *
+	 * @param critter - the critter, awake and in the environment.
+	 * @param tick - the current tick.
+	 * @param move - the move it makes on an empty neighbourhood, from 0
+	 * (top left) clockwise to 7 (left).
+	 */
+	public void sleep(Phenotype critter, int tick, int move)
+	{
+		if (isAsleep(critter) || critter.getAwakeIndex() == NONE)
+		{
+			throw new IllegalArgumentException("The critter is not awake.");
+		}
+		boolean isZombie = leaveAwake(critter);
+
+		int id = newId();
+		critter.setSchedulerId(id);
+		sleepers[id] = critter;
+		sleepZombie[id] = isZombie;
+		sleepTick[id] = tick;
+		sleepMove[id] = move;
+		sleeping++;
+
+		//links it into its cell's list
+		int cell = critter.getXloc() * length + critter.getYloc();
+		sleepCell[id] = cell;
+		cellPrev[id] = NONE;
+		cellNext[id] = cellHead[cell];
+		if (cellHead[cell] != NONE)
+		{
+			cellPrev[cellHead[cell]] = id;
+		}
+		cellHead[cell] = id;
+
+		//and sets its timer
+		wakeTick[id] = tick + maxSleep;
+		int slot = wakeTick[id] & wheelMask;
+		wheelPrev[id] = NONE;
+		wheelNext[id] = wheelHead[slot];
+		if (wheelHead[slot] != NONE)
+		{
+			wheelPrev[wheelHead[slot]] = id;
+		}
+		wheelHead[slot] = id;
+	}
+
+	/**
+	 * Forgets a critter that has been taken out of the simulation, for
+	 * example a human turned into a zombie. A sleeper is taken out where
+	 * it fell asleep, without catching up.
+	 *
+	 * @param critter - the critter, asleep or awake.
+	 */
+	public void remove(Phenotype critter)
+	{
+		int id = critter.getSchedulerId();
+		if (id != NONE)
+		{
+			unlink(id);
+		}
+		else if (critter.getAwakeIndex() != NONE)
+		{
+			leaveAwake(critter);
+		}
+	}
+
+	/**
+	 * Wakes a sleeper, catches it up on the ticks it slept and adds it to
+	 * the end of its awake list.
+	 */
+	private void wake(int id, Environment environment, int tick)
+	{
+		Phenotype critter = sleepers[id];
+		boolean isZombie = sleepZombie[id];
+		int ticks = tick - sleepTick[id];
+		int move = sleepMove[id];
+		unlink(id);
+		wakeups++;
+
+		critter.setStrength(critter.getStrength() - ticks);
+		int x = critter.getXloc();
+		int y = critter.getYloc();
+		critter.setXloc(wrap((x + ticks * MOVE_X[move]) % width, width));
+		critter.setYloc(wrap((y + ticks * MOVE_Y[move]) % length, length));
+		if (isZombie)
+		{
+			environment.moveZombie(critter, x, y);
+		}
+		else
+		{
+			environment.moveHuman(critter, x, y);
+		}
+		add(critter, isZombie);
+	}
+
+	/**
+	 * Leaves a gap in the awake list where a critter was.
+	 * @return - true if it was on the zombies' list.
+	 */
+	private boolean leaveAwake(Phenotype critter)
+	{
+		int index = critter.getAwakeIndex();
+		critter.setAwakeIndex(NONE);
+		if (index < awakeZombieCount && awakeZombies[index] == critter)
+		{
+			awakeZombies[index] = null;
+			return true;
+		}
+		awakeHumans[index] = null;
+		return false;
+	}
+
+	/**
+	 * Closes up the gaps in an awake list, keeping its order.
+	 * @return - the new length.
+	 */
+	private static int compact(Phenotype[] awake, int count)
+	{
+		int kept = 0;
+		for (int i=0; i<count; i++)
+		{
+			if (awake[i] != null)
+			{
+				if (kept != i)
+				{
+					awake[kept] = awake[i];
+					awake[i] = null;
+					awake[kept].setAwakeIndex(kept);
+				}
+				kept++;
+			}
+		}
+		return kept;
+	}
+
+	/**
+	 * Takes a sleeper out of both lists and frees its id.
+	 */
+	private void unlink(int id)
+	{
+		int cell = sleepCell[id];
+		if (cellPrev[id] != NONE)
+		{
+			cellNext[cellPrev[id]] = cellNext[id];
+		}
+		else
+		{
+			cellHead[cell] = cellNext[id];
+		}
+		if (cellNext[id] != NONE)
+		{
+			cellPrev[cellNext[id]] = cellPrev[id];
+		}
+
+		int slot = wakeTick[id] & wheelMask;
+		if (wheelPrev[id] != NONE)
+		{
+			wheelNext[wheelPrev[id]] = wheelNext[id];
+		}
+		else
+		{
+			wheelHead[slot] = wheelNext[id];
+		}
+		if (wheelNext[id] != NONE)
+		{
+			wheelPrev[wheelNext[id]] = wheelPrev[id];
+		}
+
+		sleepers[id].setSchedulerId(NONE);
+		sleepers[id] = null;
+		freeIds[freeCount] = id;
+		freeCount++;
+		sleeping--;
+	}
+
+	/**
+	 * Returns an unused id, growing the arrays if they are full.
+	 */
+	private int newId()
+	{
+		if (freeCount > 0)
+		{
+			freeCount--;
+			return freeIds[freeCount];
+		}
+
+		if (highWater == sleepers.length)
+		{
+			int size = 2 * sleepers.length;
+			Phenotype[] biggerSleepers = new Phenotype[size];
+			System.arraycopy(sleepers, 0, biggerSleepers, 0, highWater);
+			sleepers = biggerSleepers;
+			boolean[] biggerZombie = new boolean[size];
+			System.arraycopy(sleepZombie, 0, biggerZombie, 0, highWater);
+			sleepZombie = biggerZombie;
+			sleepCell = grow(sleepCell, size);
+			sleepTick = grow(sleepTick, size);
+			sleepMove = grow(sleepMove, size);
+			wakeTick = grow(wakeTick, size);
+			cellNext = grow(cellNext, size);
+			cellPrev = grow(cellPrev, size);
+			wheelNext = grow(wheelNext, size);
+			wheelPrev = grow(wheelPrev, size);
+			freeIds = grow(freeIds, size);
+		}
+		highWater++;
+		return highWater - 1;
+	}
+
+	private static int[] grow(int[] array, int size)
+	{
+		int[] bigger = new int[size];
+		System.arraycopy(array, 0, bigger, 0, array.length);
+		return bigger;
+	}
+
+	private static int wrap(int value, int size)
+	{
+		if (value < 0)
+		{
+			return value + size;
+		}
+		if (value >= size)
+		{
+			return value - size;
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the number of critters asleep.
+	 */
+	public int getSleeping()
+	{
+		return sleeping;
+	}
+
+	/**
+	 * Returns the number of times a critter has been woken.
+	 */
+	public long getWakeups()
+	{
+		return wakeups;
+	}
+
+	/**
+	 * Returns the most ticks a critter sleeps.
+	 */
+	public int getMaxSleep()
+	{
+		return maxSleep;
+	}
+}
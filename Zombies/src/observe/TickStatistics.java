@@ -0,0 +1,300 @@
+package observe;
+
+import java.util.Arrays;
+
+import chromosome.BitArrayChromosome;
+import chromosome.Chromosome;
+import critter.Phenotype;
+import critter.Population;
+
+/**
+ * Tick Statistics class
+ * holds the numbers that describe one tick of the simulation. The
+ * Interaction class counts the events as they happen (births, duels and
+ * food eaten) and measure fills in the sizes of the two populations and
+ * the strength, fitness and genome diversity of the humans once the tick
+ * is over. Nothing is allocated from one tick to the next once the
+ * table used for counting distinct genomes is big enough, so one instance
+ * can be reused for the whole run.
+ */
+public class TickStatistics
+{
+	//the tick these numbers are for
+	private int tick;
+
+	//events counted by Interaction during the tick
+	private int births;
+	private int duelsWonByHumans;
+	private int duelsWonByZombies;
+	private int foodEaten;
+
+	//measured at the end of the tick
+	private int humanPopulationSize;
+	private int zombiePopulationSize;
+	private double meanStrength;
+	private double maxStrength;
+	private double meanFitness;
+	private double maxFitness;
+	private int distinctGenomes;
+
+	//open addressing table of genome hashes, used to count the
+	//distinct genomes. Zero marks an empty entry.
+	private long[] genomeTable = new long[64];
+
+	/**
+	 * Clears the event counts, ready for the next tick.
+	 */
+	public void reset()
+	{
+		births = 0;
+		duelsWonByHumans = 0;
+		duelsWonByZombies = 0;
+		foodEaten = 0;
+	}
+
+	/**
+	 * Records that a child was born.
+	 */
+	public void countBirth()
+	{
+		births++;
+	}
+
+	/**
+	 * Records the outcome of a duel.
+	 * @param humanWon - true if the human won the duel.
+	 */
+	public void countDuel(boolean humanWon)
+	{
+		if (humanWon)
+		{
+			duelsWonByHumans++;
+		}
+		else
+		{
+			duelsWonByZombies++;
+		}
+	}
+
+	/**
+	 * Records food that was eaten.
+	 * @param amount - the number of food items eaten.
+	 */
+	public void countFood(int amount)
+	{
+		foodEaten += amount;
+	}
+
+	/**
+	 * Measures the populations at the end of a tick. The strength,
+	 * fitness and diversity numbers are taken over the humans, the
+	 * population that evolves.
+	 *
+	 * @param tick - the tick that has just finished.
+	 * @param humanPop - the human population.
+	 * @param zombiePop - the zombie population.
+	 */
+	public void measure(int tick, Population humanPop, Population zombiePop)
+	{
+		this.tick = tick;
+		this.humanPopulationSize = humanPop.size();
+		this.zombiePopulationSize = zombiePop.size();
+
+		double totalStrength = 0;
+		double totalFitness = 0;
+		maxStrength = 0;
+		maxFitness = 0;
+
+		int size = humanPop.size();
+		clearGenomeTable(size);
+		distinctGenomes = 0;
+
+		for (int i=0; i<size; i++)
+		{
+			Phenotype human = humanPop.getPhenotype(i);
+			double strength = human.getStrength();
+			double fitness = human.getFitness();
+
+			totalStrength += strength;
+			totalFitness += fitness;
+			if (i == 0 || strength > maxStrength)
+			{
+				maxStrength = strength;
+			}
+			if (i == 0 || fitness > maxFitness)
+			{
+				maxFitness = fitness;
+			}
+
+			if (addGenome(human.getChromosome()))
+			{
+				distinctGenomes++;
+			}
+		}
+
+		if (size > 0)
+		{
+			meanStrength = totalStrength / size;
+			meanFitness = totalFitness / size;
+		}
+		else
+		{
+			meanStrength = 0;
+			meanFitness = 0;
+		}
+	}
+
+	/**
+	 * Empties the genome table, growing it so it stays at most half full.
+	 */
+	private void clearGenomeTable(int numGenomes)
+	{
+		int needed = genomeTable.length;
+		while (needed < 2 * numGenomes)
+		{
+			needed *= 2;
+		}
+
+		if (needed != genomeTable.length)
+		{
+			genomeTable = new long[needed];
+		}
+		else
+		{
+			Arrays.fill(genomeTable, 0L);
+		}
+	}
+
+	/**
+	 * Adds the chromosome's hash to the genome table.
+	 * @return - true if no genome with the same hash was in the table.
+	 */
+	private boolean addGenome(Chromosome chromosome)
+	{
+		long hash;
+		if (chromosome instanceof BitArrayChromosome)
+		{
+			hash = ((BitArrayChromosome)chromosome).longHashCode();
+		}
+		else
+		{
+			hash = chromosome.hashCode();
+		}
+
+		//zero marks an empty entry so it can not be stored itself
+		if (hash == 0L)
+		{
+			hash = 1L;
+		}
+
+		int mask = genomeTable.length - 1;
+		int index = (int)(hash ^ (hash >>> 32)) & mask;
+		while (genomeTable[index] != 0L)
+		{
+			if (genomeTable[index] == hash)
+			{
+				return false;
+			}
+			index = (index + 1) & mask;
+		}
+		genomeTable[index] = hash;
+		return true;
+	}
+
+	/**
+	 * Returns the tick these numbers are for.
+	 */
+	public int getTick()
+	{
+		return tick;
+	}
+
+	/**
+	 * Returns the number of children born during the tick.
+	 */
+	public int getBirths()
+	{
+		return births;
+	}
+
+	/**
+	 * Returns the number of duels the humans won during the tick.
+	 */
+	public int getDuelsWonByHumans()
+	{
+		return duelsWonByHumans;
+	}
+
+	/**
+	 * Returns the number of duels the zombies won during the tick.
+	 */
+	public int getDuelsWonByZombies()
+	{
+		return duelsWonByZombies;
+	}
+
+	/**
+	 * Returns the number of food items eaten during the tick.
+	 */
+	public int getFoodEaten()
+	{
+		return foodEaten;
+	}
+
+	/**
+	 * Returns the number of humans at the end of the tick.
+	 */
+	public int getHumanPopulationSize()
+	{
+		return humanPopulationSize;
+	}
+
+	/**
+	 * Returns the number of zombies at the end of the tick.
+	 */
+	public int getZombiePopulationSize()
+	{
+		return zombiePopulationSize;
+	}
+
+	/**
+	 * Returns the mean strength of the humans.
+	 */
+	public double getMeanStrength()
+	{
+		return meanStrength;
+	}
+
+	/**
+	 * Returns the strength of the strongest human.
+	 */
+	public double getMaxStrength()
+	{
+		return maxStrength;
+	}
+
+	/**
+	 * Returns the mean fitness of the humans.
+	 */
+	public double getMeanFitness()
+	{
+		return meanFitness;
+	}
+
+	/**
+	 * Returns the fitness of the fittest human.
+	 */
+	public double getMaxFitness()
+	{
+		return maxFitness;
+	}
+
+	/**
+	 * Returns the number of different genomes among the humans,
+	 * counted by their 64-bit content hashes.
+	 */
+	public int getDistinctGenomes()
+	{
+		return distinctGenomes;
+	}
+}
@@ -1,12 +1,14 @@
 package observe;
 
-import java.util.*;
+import critter.Phenotype;
 /**
  * Zombie Mutation
+ * subscribes to the duels of the simulation through SimulationEvents.
+ * It does not change anything yet.
  */
-public class ZombieMutation implements Observer 
+public class ZombieMutation implements SimulationEvents.DuelListener
 {
-	public void update(Observable observable, Object object)
+	public void duelled(Phenotype zombie, Phenotype human, boolean humanWon)
 	{
 		
 		